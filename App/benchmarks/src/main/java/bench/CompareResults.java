@@ -0,0 +1,101 @@
+package bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Compares two JMH result files written with {@code -rf json}, from this
+ * module or from the service's REST benchmark:
+ * <pre>
+ *   java -cp target/benchmarks.jar bench.CompareResults before.json after.json [threshold%]
+ * </pre>
+ * Results are matched by benchmark and parameters. One is a regression
+ * when it got worse by more than the threshold (default 10%) and the
+ * two error intervals don't overlap. Worse means lower for throughput
+ * and higher for the time modes. Exits with 1 if anything regressed,
+ * so a script can fail on it.
+ */
+public final class CompareResults {
+    private CompareResults() { }
+
+    private static final class Result {
+        final String mode, unit;
+        final double score, error;
+
+        Result(JsonNode n) {
+            mode = n.get("mode").asText();
+            JsonNode metric = n.get("primaryMetric");
+            unit = metric.get("scoreUnit").asText();
+            score = metric.get("score").asDouble();
+            // "NaN" when there were too few iterations for an interval
+            double e = metric.path("scoreError").asDouble(Double.NaN);
+            error = Double.isNaN(e) ? 0 : e;
+        }
+
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: CompareResults before.json after.json [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Result> before = read(new File(args[0]));
+        Map<String, Result> after = read(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s%n", "benchmark", "before", "after", "change");
+        for (Map.Entry<String, Result> e : after.entrySet()) {
+            Result a = e.getValue(), b = before.get(e.getKey());
+            if (b == null) {
+                System.out.printf("%-70s %14s %14s%n", e.getKey(), "-", format(a));
+                continue;
+            }
+            double change = (a.score - b.score) / b.score * 100;
+            double worse = a.higherIsBetter() ? -change : change;
+            boolean separate = a.higherIsBetter()
+                ? a.score + a.error < b.score - b.error
+                : a.score - a.error > b.score + b.error;
+            boolean regressed = worse > threshold && separate;
+            if (regressed) regressions++;
+            System.out.printf("%-70s %14s %14s %+7.1f%%%s%n", e.getKey(), format(b), format(a), change,
+                regressed ? "  REGRESSION" : worse < -threshold ? "  improved" : "");
+        }
+        for (String key : before.keySet()) {
+            if (!after.containsKey(key)) System.out.printf("%-70s %14s %14s%n", key, format(before.get(key)), "-");
+        }
+        System.out.printf("%d regression(s) beyond %.0f%%%n", regressions, threshold);
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /** Results keyed by short benchmark name plus sorted parameters. */
+    private static Map<String, Result> read(File file) throws IOException {
+        Map<String, Result> out = new TreeMap<>();
+        for (JsonNode n : new ObjectMapper().readTree(file)) {
+            String name = n.get("benchmark").asText();
+            // keep Class.method
+            int dot = name.lastIndexOf('.', name.lastIndexOf('.') - 1);
+            StringBuilder key = new StringBuilder(name.substring(dot + 1));
+            JsonNode params = n.get("params");
+            if (params != null) {
+                SortedMap<String, String> sorted = new TreeMap<>();
+                params.fields().forEachRemaining(p -> sorted.put(p.getKey(), p.getValue().asText()));
+                key.append(sorted);
+            }
+            key.append(' ').append(n.get("mode").asText());
+            out.put(key.toString(), new Result(n));
+        }
+        return out;
+    }
+
+    private static String format(Result r) {
+        return String.format("%.3g %s", r.score, r.unit);
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import model.Item;
+import model.Money;
+import model.Purchase;
+import model.PurchaseManager;
+import org.openjdk.jmh.annotations.*;
+import util.ExportUtil;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CSV export throughput in rows per second. Output goes to a discarding
+ * stream so only formatting, encoding and compression are measured.
+ * {@code printf} is the per-row {@code PrintWriter.printf} export this
+ * replaced; {@code streaming} and {@code streamingGzip} are
+ * {@link ExportUtil#exportToCSV(PurchaseManager, OutputStream)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CsvExportBenchmark {
+    static final int ROWS = 100_000;
+    private static final String[] ROOMMATES = {"Colby", "Khanh", "Jehosh", "Casey"};
+
+    private PurchaseManager manager;
+
+    @Setup
+    public void setUp() {
+        manager = new PurchaseManager();
+        Random rnd = new Random(42);
+        long day = 86_400_000L;
+        for (int rows = 0; rows < ROWS; ) {
+            Purchase p = new Purchase(ROOMMATES[rnd.nextInt(4)],
+                rnd.nextInt(10) == 0 ? "Costco, \"Warehouse\"" : "Safeway",
+                new Date(1_600_000_000_000L + rnd.nextInt(1500) * day), 0);
+            int items = Math.min(1 + rnd.nextInt(5), ROWS - rows);
+            long total = 0;
+            for (int i = 0; i < items; i++, rows++) {
+                Map<String, Double> splits = new HashMap<>();
+                int people = 1 + rnd.nextInt(4);
+                for (int k = 0; k < people; k++) splits.put(ROOMMATES[k], 1.0 / people);
+                Item it = new Item("item " + rows, 50 + rnd.nextInt(5_000), 0.0825, splits);
+                p.addItem(it);
+                total += it.getTotalCents();
+            }
+            p.setTotalCents(total);
+            manager.addPurchase(p);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void printf() {
+        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(OutputStream.nullOutputStream()))) {
+            pw.println("Date,Buyer,Store,Description,Cost,TaxRate,Total,SplitMap");
+            SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+            for (Purchase p : manager.getPurchases()) {
+                String date = df.format(p.getDate());
+                for (Item it : p.getItems()) {
+                    pw.printf("%s,%s,%s,\"%s\",%.2f,%.2f,%.2f,\"%s\"%n",
+                        date, p.getBuyer(), p.getStore(), it.getDescription(),
+                        it.getCost(), it.getTaxRate(), Money.toDouble(it.getTotalCents()),
+                        it.getSplits().toString());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void streaming() throws IOException {
+        ExportUtil.exportToCSV(manager, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void streamingGzip() throws IOException {
+        ExportUtil.exportToCSV(manager,
+            new GZIPOutputStream(OutputStream.nullOutputStream(), 1 << 16));
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import model.BalanceLedger;
+import model.PurchaseManager;
+import model.Settlement;
+import model.SettlementStrategy;
+import org.openjdk.jmh.annotations.*;
+import util.ExportUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Summary tab and the two exports on generated ledgers.
+ * {@code summary} is what MainApp's computeSettlement does for a range:
+ * balances from the running ledger, settled and printed.
+ * {@code summaryFromScratch} does the same from a full scan, which is the
+ * cost the running ledger saves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LedgerBenchmark {
+    @Param({"4", "12"})
+    public int roommates;
+
+    @Param({"10000", "100000"})
+    public int purchases;
+
+    @Param({"3"})
+    public int itemsPerPurchase;
+
+    @Param({"ALL", "RANDOM"})
+    public LedgerGenerator.Splits splits;
+
+    private PurchaseManager manager;
+    private Date from, to;
+    private File summaryFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        manager = new LedgerGenerator().roommates(roommates).purchases(purchases)
+            .itemsPerPurchase(itemsPerPurchase).splits(splits).generate();
+        // the middle half of the history
+        BalanceLedger ledger = manager.getLedger();
+        long first = ledger.getFirstDate().getTime(), last = ledger.getLastDate().getTime();
+        from = new Date(first + (last - first) / 4);
+        to = new Date(last - (last - first) / 4);
+        summaryFile = File.createTempFile("summary", ".txt");
+        summaryFile.deleteOnExit();
+    }
+
+    @Benchmark
+    public String summary() {
+        Map<String, Long> net = manager.getLedger().getBalances(from, to);
+        return Settlement.describe(Settlement.settle(net, SettlementStrategy.MIN_TRANSFERS));
+    }
+
+    @Benchmark
+    public String summaryFromScratch() {
+        Map<String, Long> net = BalanceLedger.compute(manager, from, to);
+        return Settlement.describe(Settlement.settle(net, SettlementStrategy.MIN_TRANSFERS));
+    }
+
+    @Benchmark
+    public void exportSummary() throws IOException {
+        ExportUtil.exportSummary(manager, summaryFile);
+    }
+
+    @Benchmark
+    public void exportCsv() throws IOException {
+        ExportUtil.exportToCSV(manager, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,118 @@
+package bench;
+
+import model.BalanceLedger;
+import model.Item;
+import model.Purchase;
+import model.PurchaseManager;
+
+import java.util.*;
+
+/**
+ * Randomized consistency check for {@link BalanceLedger}. Each seed
+ * generates a small ledger, builds its balances, then applies a run of
+ * adds, edits, removals and roommate changes through PurchaseManager,
+ * asserting {@link BalanceLedger#verify()} after every step and
+ * comparing a random date range against a full scan. Runs in this
+ * module's test phase, or by hand:
+ * <pre>
+ *   java -cp target/benchmarks.jar bench.LedgerCheck [seeds] [steps]
+ * </pre>
+ * Throws on the first disagreement, naming the seed and step.
+ */
+public final class LedgerCheck {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long START = 1_704_067_200_000L; // 2024-01-01
+    private static final int DAYS = 90;
+
+    private LedgerCheck() { }
+
+    public static void main(String[] args) {
+        int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        for (int seed = 0; seed < seeds; seed++) {
+            run(seed, steps);
+        }
+        System.out.println("BalanceLedger agreed with a full recompute over "
+            + seeds + " seeds x " + steps + " steps");
+    }
+
+    private static void run(long seed, int steps) {
+        PurchaseManager m = new LedgerGenerator().roommates(5).purchases(200).days(DAYS)
+            .splits(LedgerGenerator.Splits.RANDOM).seed(seed).generate();
+        BalanceLedger ledger = m.getLedger();
+        check(ledger, m, seed, -1, "initial build");
+        Random rnd = new Random(seed);
+        int added = 0;
+        for (int step = 0; step < steps; step++) {
+            List<Purchase> all = m.getPurchases();
+            int op = rnd.nextInt(20);
+            String what;
+            if (op < 8 || all.isEmpty()) {
+                m.addPurchase(purchase(m, rnd));
+                what = "add";
+            } else if (op < 14) {
+                int i = rnd.nextInt(all.size());
+                m.setPurchase(i, purchase(m, rnd));
+                what = "edit " + i;
+            } else if (op < 18) {
+                int i = rnd.nextInt(all.size());
+                m.removePurchase(i);
+                what = "remove " + i;
+            } else if (op < 19 && m.getRoommates().size() > 2) {
+                String name = m.getRoommates().get(rnd.nextInt(m.getRoommates().size()));
+                m.removeRoommate(name);
+                what = "removeRoommate " + name;
+            } else {
+                String name = "late" + added++;
+                m.addRoommate(name);
+                what = "addRoommate " + name;
+            }
+            check(ledger, m, seed, step, what);
+        }
+    }
+
+    private static void check(BalanceLedger ledger, PurchaseManager m, long seed, int step, String what) {
+        if (!ledger.verify()) {
+            throw new IllegalStateException("seed " + seed + " step " + step + " (" + what
+                + "): running balances disagree with a full recompute");
+        }
+        Random rnd = new Random(seed * 31 + step);
+        Date from = new Date(START + rnd.nextInt(DAYS) * DAY);
+        Date to = new Date(from.getTime() + rnd.nextInt(DAYS) * DAY);
+        Map<String, Long> fresh = BalanceLedger.compute(m, from, to);
+        Map<String, Long> running = ledger.getBalances(from, to);
+        Set<String> names = new HashSet<>(fresh.keySet());
+        names.addAll(running.keySet());
+        for (String name : names) {
+            if (fresh.getOrDefault(name, 0L).longValue() != running.getOrDefault(name, 0L).longValue()) {
+                throw new IllegalStateException("seed " + seed + " step " + step + " (" + what
+                    + "): " + name + " over " + from + ".." + to + " is " + running.get(name)
+                    + ", full scan says " + fresh.get(name));
+            }
+        }
+    }
+
+    /** A purchase among the current roommates; one in ten is undated. */
+    private static Purchase purchase(PurchaseManager m, Random rnd) {
+        List<String> names = m.getRoommates();
+        String buyer = names.get(rnd.nextInt(names.size()));
+        Date date = rnd.nextInt(10) == 0 ? null : new Date(START + rnd.nextInt(DAYS) * DAY);
+        Purchase p = new Purchase(buyer, "Check", date, 0);
+        long total = 0;
+        for (int i = 1 + rnd.nextInt(3); i > 0; i--) {
+            Map<String, Double> split = new HashMap<>();
+            for (String r : names) {
+                if (rnd.nextBoolean()) split.put(r, 1.0 + rnd.nextInt(3));
+            }
+            if (split.isEmpty()) split.put(buyer, 1.0);
+            double sum = 0;
+            for (double w : split.values()) sum += w;
+            for (Map.Entry<String, Double> e : split.entrySet()) e.setValue(e.getValue() / sum);
+            Item it = new Item("item", 1 + rnd.nextInt(10_000), rnd.nextInt(4) == 0 ? 0.0825 : 0, split);
+            p.addItem(it);
+            total += it.getTotalCents();
+        }
+        p.setTotalCents(total);
+        return p;
+    }
+}
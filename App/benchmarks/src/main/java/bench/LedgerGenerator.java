@@ -0,0 +1,118 @@
+package bench;
+
+import model.Item;
+import model.Purchase;
+import model.PurchaseManager;
+
+import java.util.*;
+
+/**
+ * Synthetic purchase histories for the benchmarks. The same settings and
+ * seed always give the same ledger, so runs on different days compare.
+ * <pre>
+ *   PurchaseManager m = new LedgerGenerator().roommates(8).purchases(100_000)
+ *       .itemsPerPurchase(3).splits(LedgerGenerator.Splits.RANDOM).generate();
+ * </pre>
+ */
+public final class LedgerGenerator {
+    /** Who each item is split between. */
+    public enum Splits {
+        /** Everyone, evenly. */
+        ALL,
+        /** The buyer and one other roommate, half each. */
+        PAIR,
+        /** A random non-empty group, with random weights. */
+        RANDOM,
+        /** Only the buyer, so nobody owes anything. */
+        SOLO
+    }
+
+    private static final String[] NAMES = {"Colby", "Khanh", "Jehosh", "Casey"};
+    private static final String[] STORES = {"Safeway", "Costco", "Trader Joe's", "Target", "PG&E"};
+    private static final String[] DESCRIPTIONS = {
+        "milk", "eggs", "bread", "rice", "coffee", "paper towels", "dish soap", "rent", "power", "internet"
+    };
+    private static final long DAY = 86_400_000L;
+    private static final long START = 1_600_000_000_000L;
+
+    private int roommates = 4;
+    private int purchases = 10_000;
+    private int itemsPerPurchase = 3;
+    private Splits splits = Splits.RANDOM;
+    private int days = 1500;
+    private long seed = 42;
+
+    public LedgerGenerator roommates(int n) { roommates = n; return this; }
+    public LedgerGenerator purchases(int n) { purchases = n; return this; }
+    /** Average; each purchase gets between 1 and {@code 2n - 1} items. */
+    public LedgerGenerator itemsPerPurchase(int n) { itemsPerPurchase = n; return this; }
+    public LedgerGenerator splits(Splits s) { splits = s; return this; }
+    /** Purchases are dated uniformly over this many days. */
+    public LedgerGenerator days(int n) { days = n; return this; }
+    public LedgerGenerator seed(long s) { seed = s; return this; }
+
+    /** The {@code i}th roommate's name: the usual four, then roommate5, roommate6, ... */
+    public static String roommate(int i) {
+        return i < NAMES.length ? NAMES[i] : "roommate" + (i + 1);
+    }
+
+    public PurchaseManager generate() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < roommates; i++) names.add(roommate(i));
+        PurchaseManager m = new PurchaseManager(new ArrayList<>(purchases), names);
+        Random rnd = new Random(seed);
+        Map<String, Double> split = new HashMap<>();
+        for (int n = 0; n < purchases; n++) {
+            int buyer = rnd.nextInt(roommates);
+            Purchase p = new Purchase(names.get(buyer), STORES[rnd.nextInt(STORES.length)],
+                new Date(START + rnd.nextInt(days) * DAY), 0);
+            int items = 1 + rnd.nextInt(2 * itemsPerPurchase - 1);
+            long total = 0;
+            for (int i = 0; i < items; i++) {
+                fillSplit(split, names, buyer, rnd);
+                Item it = new Item(DESCRIPTIONS[rnd.nextInt(DESCRIPTIONS.length)],
+                    50 + rnd.nextInt(5_000), rnd.nextInt(4) == 0 ? 0.0825 : 0, split);
+                p.addItem(it);
+                total += it.getTotalCents();
+            }
+            p.setTotalCents(total);
+            m.addPurchase(p);
+        }
+        return m;
+    }
+
+    private void fillSplit(Map<String, Double> split, List<String> names, int buyer, Random rnd) {
+        split.clear();
+        switch (splits) {
+            case ALL:
+                for (String r : names) split.put(r, 1.0 / names.size());
+                break;
+            case PAIR:
+                if (names.size() == 1) {
+                    split.put(names.get(buyer), 1.0);
+                    break;
+                }
+                int other = rnd.nextInt(names.size() - 1);
+                if (other >= buyer) other++;
+                split.put(names.get(buyer), 0.5);
+                split.put(names.get(other), 0.5);
+                break;
+            case RANDOM:
+                double[] w = new double[names.size()];
+                double sum = 0;
+                for (int i = 0; i < w.length; i++) {
+                    if (rnd.nextBoolean()) sum += w[i] = 1 + rnd.nextInt(3);
+                }
+                if (sum == 0) {
+                    w[buyer] = sum = 1;
+                }
+                for (int i = 0; i < w.length; i++) {
+                    if (w[i] > 0) split.put(names.get(i), w[i] / sum);
+                }
+                break;
+            case SOLO:
+                split.put(names.get(buyer), 1.0);
+                break;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import model.BalanceLedger;
+import model.Item;
+import model.Purchase;
+import model.PurchaseManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-history balance recompute, {@link BalanceLedger#compute} against
+ * {@link BalanceLedger#computeParallel} on pools of 1 to 8 workers.
+ * Compare each thread count with {@code serial} at the same size, and
+ * only read the scaling on a machine with at least that many cores. The
+ * 10^7-item history needs about 3 GB of heap; run
+ * {@code -p items=100000,1000000} on smaller machines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class ParallelBalanceBenchmark {
+    private static final String[] ROOMMATES = {"Colby", "Khanh", "Jehosh", "Casey", "Riley", "Sam"};
+    private static final String[] DESCRIPTIONS = {"milk", "eggs", "rent", "power", "soap", "rice"};
+
+    @Param({"100000", "1000000", "10000000"})
+    public int items;
+
+    @Param({"serial", "1", "2", "4", "8"})
+    public String threads;
+
+    private PurchaseManager manager;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        manager = new PurchaseManager();
+        for (String r : ROOMMATES) manager.addRoommate(r);
+        Random rnd = new Random(42);
+        long day = 86_400_000L;
+        Map<String, Double> splits = new HashMap<>();
+        for (int made = 0; made < items; ) {
+            Purchase p = new Purchase(ROOMMATES[rnd.nextInt(ROOMMATES.length)], "Safeway",
+                new Date(1_600_000_000_000L + rnd.nextInt(1500) * day), 0);
+            int n = Math.min(1 + rnd.nextInt(5), items - made);
+            long total = 0;
+            for (int i = 0; i < n; i++, made++) {
+                splits.clear();
+                int people = 1 + rnd.nextInt(ROOMMATES.length);
+                for (int k = 0; k < people; k++) splits.put(ROOMMATES[k], 1.0 / people);
+                Item it = new Item(DESCRIPTIONS[rnd.nextInt(DESCRIPTIONS.length)],
+                    50 + rnd.nextInt(5_000), 0.0825, splits);
+                p.addItem(it);
+                total += it.getTotalCents();
+            }
+            p.setTotalCents(total);
+            manager.addPurchase(p);
+        }
+        if (!threads.equals("serial")) {
+            pool = new ForkJoinPool(Integer.parseInt(threads));
+            Map<String, Long> serial = BalanceLedger.compute(manager, null, null);
+            Map<String, Long> parallel = BalanceLedger.computeParallel(manager, null, null, pool);
+            if (!new ArrayList<>(serial.entrySet()).equals(new ArrayList<>(parallel.entrySet()))) {
+                throw new IllegalStateException("parallel " + parallel + " != serial " + serial);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    @Benchmark
+    public Map<String, Long> fullRecompute() {
+        return pool == null
+            ? BalanceLedger.compute(manager, null, null)
+            : BalanceLedger.computeParallel(manager, null, null, pool);
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import model.Purchase;
+import model.PurchaseManager;
+import org.openjdk.jmh.annotations.*;
+import util.DataStore;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link DataStore} on a generated ledger. The forked JVM points the
+ * store at {@code target/datastore-bench} (relative to where the jar is
+ * run), so a real {@code purchases.dat} in the working directory is
+ * never touched.
+ * <ul>
+ *   <li>{@code snapshot}: a full snapshot write</li>
+ *   <li>{@code load}: open the snapshot, which decodes purchase headers only</li>
+ *   <li>{@code loadAndRead}: open it and decode every item too</li>
+ *   <li>{@code saveEdit}: one edited purchase journaled, the usual save</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Droommate.data=target/datastore-bench")
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    @Param({"10000", "100000"})
+    public int purchases;
+
+    private PurchaseManager first, second;
+    private boolean flip;
+    /** Loaded from disk, so saves append to its journal. */
+    private PurchaseManager attached;
+    private int edit;
+
+    @Setup
+    public void setUp() throws IOException {
+        Files.createDirectories(Paths.get(System.getProperty("roommate.data")));
+        LedgerGenerator gen = new LedgerGenerator().purchases(purchases);
+        first = gen.generate();
+        second = gen.seed(7).generate();
+        DataStore.save(first);
+        attached = DataStore.load();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(Paths.get(System.getProperty("roommate.data")))) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    /** Alternates two managers: saving one the store isn't tracking always writes a snapshot. */
+    @Benchmark
+    public void snapshot() throws IOException {
+        flip = !flip;
+        DataStore.save(flip ? first : second);
+    }
+
+    @Benchmark
+    public PurchaseManager load() throws IOException {
+        attached = DataStore.load();
+        return attached;
+    }
+
+    @Benchmark
+    public long loadAndRead() throws IOException {
+        attached = DataStore.load();
+        long items = 0;
+        for (Purchase p : attached.getPurchases()) items += p.getItems().size();
+        return items;
+    }
+
+    @Benchmark
+    public void saveEdit() throws IOException {
+        int i = edit++ % attached.getPurchases().size();
+        Purchase old = attached.getPurchases().get(i);
+        Purchase p = new Purchase(old.getBuyer(), old.getStore(), old.getDate(), old.getTotalCents() + 1);
+        p.setItems(old.getItems());
+        attached.setPurchase(i, p);
+        DataStore.save(attached);
+    }
+}
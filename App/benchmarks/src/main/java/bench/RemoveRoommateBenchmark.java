@@ -0,0 +1,40 @@
+package bench;
+
+import model.PurchaseManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PurchaseManager#removeRoommate}, which strips the roommate from
+ * every split in the history. It can only run once per ledger, so each
+ * iteration is a single call on a freshly generated one; the balances
+ * are built first so the ledger's per-item deltas are part of what is timed.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RemoveRoommateBenchmark {
+    @Param({"10000", "100000"})
+    public int purchases;
+
+    @Param({"ALL", "PAIR"})
+    public LedgerGenerator.Splits splits;
+
+    private PurchaseManager manager;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        manager = new LedgerGenerator().roommates(6).purchases(purchases).splits(splits).generate();
+        manager.getLedger().getBalances();
+    }
+
+    @Benchmark
+    public long removeRoommate() {
+        manager.removeRoommate(LedgerGenerator.roommate(1));
+        return manager.getLedger().getBalance(LedgerGenerator.roommate(0));
+    }
+}
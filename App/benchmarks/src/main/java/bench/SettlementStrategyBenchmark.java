@@ -0,0 +1,56 @@
+package bench;
+
+import model.SettlementStrategy;
+import model.Transfer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runtime of each settlement strategy as the group grows. Balances are
+ * random whole-dollar amounts rounded so that zero-sum subsets actually
+ * occur, which is what gives the exact solver something to find.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SettlementStrategyBenchmark {
+    @Param({"4", "8", "12", "16", "20"})
+    public int groupSize;
+
+    @Param({"GREEDY", "LARGEST_FIRST", "MIN_TRANSFERS"})
+    public String strategy;
+
+    private SettlementStrategy solver;
+    private String[] names;
+    private long[] cents;
+
+    @Setup
+    public void setUp() {
+        switch (strategy) {
+            case "GREEDY":        solver = SettlementStrategy.GREEDY; break;
+            case "LARGEST_FIRST": solver = SettlementStrategy.LARGEST_FIRST; break;
+            default:              solver = SettlementStrategy.MIN_TRANSFERS; break;
+        }
+        Random rnd = new Random(42);
+        names = new String[groupSize];
+        cents = new long[groupSize];
+        long sum = 0;
+        for (int i = 0; i < groupSize; i++) {
+            names[i] = "roommate" + i;
+            cents[i] = (rnd.nextInt(201) - 100) * 100L;
+            sum += cents[i];
+        }
+        cents[groupSize - 1] -= sum;
+    }
+
+    @Benchmark
+    public List<Transfer> settle() {
+        return solver.settle(names, cents);
+    }
+}
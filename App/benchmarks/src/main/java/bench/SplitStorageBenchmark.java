@@ -0,0 +1,116 @@
+package bench;
+
+import model.Item;
+import model.Purchase;
+import model.PurchaseManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Split storage: the id/ratio arrays in {@link Item} against the
+ * {@code HashMap<String, Double>} every item used to carry.
+ * <p>
+ * The JMH part times a pass over every split of every item, the loop a
+ * balance rebuild runs. {@link #main} prints the retained heap of both
+ * layouts, measured with JOL:
+ * <pre>
+ *   java -cp target/benchmarks.jar bench.SplitStorageBenchmark 50000
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SplitStorageBenchmark {
+    private static final String[] ROOMMATES = {"Colby", "Khanh", "Jehosh", "Casey"};
+
+    @Param({"50000"})
+    public int items;
+
+    private List<Item> compact;
+    private List<Map<String, Double>> maps;
+
+    @Setup
+    public void setUp() {
+        compact = compactItems(items);
+        maps = mapSplits(compact);
+    }
+
+    @Benchmark
+    public double iterateArrays() {
+        double sum = 0;
+        for (Item it : compact) {
+            for (int i = 0; i < it.splitCount(); i++) sum += it.splitRatio(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double iterateMaps() {
+        double sum = 0;
+        for (Map<String, Double> splits : maps) {
+            for (Map.Entry<String, Double> e : splits.entrySet()) sum += e.getValue();
+        }
+        return sum;
+    }
+
+    /** Items held by a manager, so their splits share its dictionary. */
+    static List<Item> compactItems(int n) {
+        PurchaseManager m = new PurchaseManager();
+        Random rnd = new Random(42);
+        List<Item> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int people = 1 + rnd.nextInt(ROOMMATES.length);
+            Map<String, Double> splits = new HashMap<>();
+            for (int k = 0; k < people; k++) splits.put(ROOMMATES[k], 1.0 / people);
+            Item it = new Item("item " + i, 100 + rnd.nextInt(10_000), 0.08, splits);
+            Purchase p = new Purchase(ROOMMATES[0], "store", new Date(), it.getTotalCents());
+            p.addItem(it);
+            m.addPurchase(p);
+            out.add(it);
+        }
+        return out;
+    }
+
+    /** The same splits in the old one-HashMap-per-item layout. */
+    static List<Map<String, Double>> mapSplits(List<Item> items) {
+        List<Map<String, Double>> out = new ArrayList<>(items.size());
+        for (Item it : items) out.add(new HashMap<>(it.getSplits()));
+        return out;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        List<Item> compact = compactItems(n);
+        List<Map<String, Double>> maps = mapSplits(compact);
+
+        // count only the split storage: ids + ratios vs the map graph
+        List<Object> arrays = new ArrayList<>(n * 2);
+        for (Item it : compact) {
+            int[] ids = new int[it.splitCount()];
+            double[] ratios = new double[it.splitCount()];
+            arrays.add(ids);
+            arrays.add(ratios);
+        }
+        long arrayBytes = GraphLayout.parseInstance(arrays.toArray()).totalSize();
+        long mapBytes = GraphLayout.parseInstance(maps.toArray()).totalSize();
+        // the containers themselves are measurement scaffolding
+        long scaffold = GraphLayout.parseInstance((Object) new Object[n * 2]).totalSize();
+        long mapScaffold = GraphLayout.parseInstance((Object) new Object[n]).totalSize();
+        arrayBytes -= scaffold;
+        mapBytes -= mapScaffold;
+
+        System.out.printf("%d items, split storage only%n", n);
+        System.out.printf("  HashMap<String, Double>: %,12d bytes (%.1f per item)%n",
+            mapBytes, (double) mapBytes / n);
+        System.out.printf("  int[] ids + double[]:    %,12d bytes (%.1f per item)%n",
+            arrayBytes, (double) arrayBytes / n);
+        System.out.printf("  whole Item graphs (new): %,12d bytes%n",
+            GraphLayout.parseInstance(compact.toArray()).totalSize());
+    }
+}
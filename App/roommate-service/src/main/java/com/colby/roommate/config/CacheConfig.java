@@ -0,0 +1,55 @@
+package com.colby.roommate.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Read-through caches in front of H2. Clients poll far more than they
+ * write, so single purchases, listing pages and balance results are kept
+ * in size-bounded Caffeine caches, invalidated after each commit by
+ * {@link CacheInvalidator}. Hit, miss and eviction counts are published
+ * as the {@code cache.*} metrics under {@code /actuator/metrics}.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    /** One purchase graph by id. */
+    public static final String PURCHASES = "purchases";
+    /** Whole {@code GET /api/purchases} responses by query. */
+    public static final String PURCHASE_PAGES = "purchasePages";
+    /** Balances and settlement reports by date range. */
+    public static final String BALANCES = "balances";
+    public static final String SETTLEMENTS = "settlements";
+
+    @Bean
+    CacheManager cacheManager() {
+        SimpleCacheManager manager = new SimpleCacheManager();
+        manager.setCaches(List.of(
+            cache(PURCHASES, 10_000),
+            // a page holds up to 500 purchases, so far fewer of them
+            cache(PURCHASE_PAGES, 500),
+            cache(BALANCES, 200),
+            cache(SETTLEMENTS, 200)));
+        return manager;
+    }
+
+    private static GuardedCache cache(String name, long maximumSize) {
+        return new GuardedCache(new CaffeineCache(name,
+            Caffeine.newBuilder().maximumSize(maximumSize).recordStats().build()));
+    }
+
+    /** Lets the actuator read Caffeine's statistics through the wrapper. */
+    @Bean
+    CacheMeterBinderProvider<GuardedCache> guardedCacheMeterBinderProvider() {
+        return (cache, tags) -> new CaffeineCacheMetrics<>(cache.getNativeCache(), cache.getName(), tags);
+    }
+}
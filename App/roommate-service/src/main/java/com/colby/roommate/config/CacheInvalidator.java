@@ -0,0 +1,93 @@
+package com.colby.roommate.config;
+
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.model.PurchaseChange;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Evicts cached reads once a purchase write has committed: the purchase
+ * itself by id, and every listing page and balance result, since any of
+ * them may include it.
+ * <p>
+ * It listens to Hibernate's post-commit events, which run before the
+ * writing request returns, so the client that wrote never reads its old
+ * data. Two entities are watched: {@link PurchaseChange}, which every
+ * write service inserts for the purchases it touched (an item-only edit
+ * bumps the purchase version without an update event), and
+ * {@link Purchase}, which also covers writes made straight through the
+ * repository.
+ */
+@Component
+public class CacheInvalidator implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final org.springframework.cache.Cache purchases, pages, balances, settlements;
+
+    public CacheInvalidator(EntityManagerFactory emf, CacheManager caches) {
+        this.emf = emf;
+        this.purchases = cache(caches, CacheConfig.PURCHASES);
+        this.pages = cache(caches, CacheConfig.PURCHASE_PAGES);
+        this.balances = cache(caches, CacheConfig.BALANCES);
+        this.settlements = cache(caches, CacheConfig.SETTLEMENTS);
+    }
+
+    private static org.springframework.cache.Cache cache(CacheManager caches, String name) {
+        return Objects.requireNonNull(caches.getCache(name), name);
+    }
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry().requireService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof PurchaseChange c) {
+            evict(c.getPurchaseId());
+        } else if (event.getEntity() instanceof Purchase) {
+            evict(event.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Purchase) evict(event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Purchase) evict(event.getId());
+    }
+
+    // nothing was committed, so nothing cached can be stale
+    @Override public void onPostInsertCommitFailed(PostInsertEvent event) { }
+    @Override public void onPostUpdateCommitFailed(PostUpdateEvent event) { }
+    @Override public void onPostDeleteCommitFailed(PostDeleteEvent event) { }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == Purchase.class || type == PurchaseChange.class;
+    }
+
+    private void evict(Object id) {
+        purchases.evict(id);
+        pages.clear();
+        balances.clear();
+        settlements.clear();
+    }
+}
@@ -0,0 +1,78 @@
+package com.colby.roommate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache that never stores a value loaded before an invalidation.
+ * <p>
+ * Read-through caching has one stale-read race: a reader misses, loads
+ * the old row, a writer commits and evicts, and then the reader puts the
+ * old row back, where it stays until the next write. Here every eviction
+ * first bumps a generation; a miss remembers the generation it started
+ * in, and the put that follows it on the same thread is dropped if the
+ * generation has moved. The check and the put are two steps, so the
+ * generation is read again after the put, and the entry is dropped if an
+ * eviction got in between. Generations are per cache, not per key, so a
+ * write also skips caching any load that overlapped it. Writes are rare
+ * next to reads, so that costs little.
+ */
+public class GuardedCache implements org.springframework.cache.Cache {
+    private final CaffeineCache delegate;
+    private final AtomicLong generation = new AtomicLong();
+    /** Generation at this thread's last miss, until its put. */
+    private final ThreadLocal<Long> missedAt = new ThreadLocal<>();
+
+    public GuardedCache(CaffeineCache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override public String getName() { return delegate.getName(); }
+
+    @Override public Cache<Object, Object> getNativeCache() { return delegate.getNativeCache(); }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        long gen = generation.get();
+        ValueWrapper value = delegate.get(key);
+        if (value == null) missedAt.set(gen);
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        return value == null ? null : type.cast(value.get());
+    }
+
+    /** Loads under the cache's per-key lock, which eviction of that key waits for. */
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return delegate.get(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Long since = missedAt.get();
+        missedAt.remove();
+        if (since != null && since != generation.get()) return;
+        delegate.put(key, value);
+        // an eviction after the check but before the put would miss this value
+        if (since != null && since != generation.get()) delegate.evict(key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        generation.incrementAndGet();
+        delegate.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        generation.incrementAndGet();
+        delegate.clear();
+    }
+}
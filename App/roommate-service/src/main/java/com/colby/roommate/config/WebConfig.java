@@ -0,0 +1,23 @@
+package com.colby.roommate.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+@Configuration
+public class WebConfig {
+    /**
+     * ETags for the collection GETs, hashed from the response body, so a
+     * poller whose data has not changed gets a bodiless 304. Single
+     * purchases carry their version as ETag instead. The paths are exact:
+     * the filter buffers the whole body, which streaming endpoints must avoid.
+     */
+    @Bean
+    FilterRegistrationBean<ShallowEtagHeaderFilter> collectionEtags() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> reg =
+            new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        reg.addUrlPatterns("/api/purchases", "/api/balances", "/api/settlement");
+        return reg;
+    }
+}
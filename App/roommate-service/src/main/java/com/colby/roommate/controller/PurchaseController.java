@@ -1,25 +1,248 @@
 package com.colby.roommate.controller;
 
+import com.colby.roommate.config.CacheConfig;
 import com.colby.roommate.model.Purchase;
-import com.colby.roommate.repo.PurchaseRepository;
+import com.colby.roommate.service.BulkWriteService;
+import com.colby.roommate.service.ChangeLog;
+import com.colby.roommate.service.ChangeStream;
+import com.colby.roommate.service.CsvImportService;
+import com.colby.roommate.service.PurchaseWriteService;
+import com.colby.roommate.service.PurchaseQueryService;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.OptimisticLockException;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
 import java.util.List;
+import java.util.Set;
+
+import static com.colby.roommate.repo.PurchaseSpecs.*;
 
 @RestController
 @RequestMapping("/api/purchases")
 public class PurchaseController {
-  private final PurchaseRepository repo;
-  public PurchaseController(PurchaseRepository repo) { this.repo = repo; }
+  static final int MAX_PAGE_SIZE = 500;
+  private static final Set<String> SORTABLE = Set.of("date", "id", "buyer", "store", "totalCost");
+
+  private final PurchaseQueryService queries;
+  private final PurchaseWriteService writes;
+  private final ChangeLog changes;
+  private final ChangeStream stream;
+  private final BulkWriteService bulk;
+  private final CsvImportService importer;
+  public PurchaseController(PurchaseQueryService queries,
+                            PurchaseWriteService writes, ChangeLog changes, ChangeStream stream,
+                            BulkWriteService bulk, CsvImportService importer) {
+    this.queries = queries;
+    this.writes = writes;
+    this.changes = changes;
+    this.stream = stream;
+    this.bulk = bulk;
+    this.importer = importer;
+  }
+
+  /**
+   * Filtered listing, newest first by default. Ties are broken by id so
+   * the order is total. With {@code cursor} (date sort only) the page is
+   * found by seeking on the (date, id) index rather than by offset.
+   * Responses are cached by query until the next purchase write.
+   */
+  @Cacheable(cacheNames = CacheConfig.PURCHASE_PAGES,
+      key = "{#buyer, #store, #from, #to, #page, #size, #sort, #cursor}")
+  @GetMapping PurchasePage list(
+      @RequestParam(required = false) String buyer,
+      @RequestParam(required = false) String store,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+      @RequestParam(defaultValue = "0") int page,
+      @RequestParam(defaultValue = "50") int size,
+      @RequestParam(defaultValue = "date,desc") String sort,
+      @RequestParam(required = false) String cursor) {
+    if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+      throw badRequest("page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE);
+    }
+    String[] by = sort.split(",", 2);
+    String property = by[0].trim();
+    if (!SORTABLE.contains(property)) throw badRequest("cannot sort by " + property);
+    Sort.Direction dir = by.length > 1
+        ? Sort.Direction.fromOptionalString(by[1].trim()).orElseThrow(() -> badRequest("bad sort " + sort))
+        : Sort.Direction.ASC;
+    Sort order = property.equals("id") ? Sort.by(dir, "id") : Sort.by(dir, property, "id");
+    boolean byDate = property.equals("date");
+
+    Specification<Purchase> filter = Specification.allOf(buyer(buyer), store(store), from(from), to(to));
+    long total;
+    List<Purchase> rows;
+    boolean more;
+    if (cursor != null) {
+      if (!byDate) throw badRequest("cursor requires sort=date");
+      Specification<Purchase> seek = decodeCursor(cursor, dir.isDescending());
+      rows = queries.first(filter.and(seek), order, size + 1);
+      more = rows.size() > size;
+      if (more) rows = rows.subList(0, size);
+      total = queries.count(filter);
+    } else {
+      Page<Purchase> result = queries.page(filter, PageRequest.of(page, size, order));
+      rows = result.getContent();
+      more = result.hasNext();
+      total = result.getTotalElements();
+    }
+    String next = byDate && more ? encodeCursor(rows.get(rows.size() - 1)) : null;
+    return new PurchasePage(rows, cursor == null ? page : null, size, total, next);
+  }
+
+  /**
+   * One purchase, tagged with its version. The graph is usually cached,
+   * so a matching If-None-Match is answered 304 without a query.
+   */
+  @GetMapping("/{id}") ResponseEntity<Purchase> one(@PathVariable Long id, WebRequest request) {
+    Purchase p = queries.one(id).orElseThrow(() -> notFound(id));
+    if (request.checkNotModified(etag(p.getVersion()))) return null;
+    return ResponseEntity.ok().eTag(etag(p.getVersion())).body(p);
+  }
 
-  @GetMapping List<Purchase> all()       { return repo.findAll(); }
-  @PostMapping Purchase create(@RequestBody Purchase p) { return repo.save(p); }
-  @PutMapping("/{id}") Purchase update(
+  @PostMapping Purchase create(@RequestBody Purchase p) { return writes.create(p); }
+  /** Creates every purchase in one transaction; returns the new ids in order. */
+  @PostMapping("/bulk") List<Long> createAll(@RequestBody List<Purchase> purchases) {
+    try {
+      return bulk.insertAll(purchases);
+    } catch (IllegalArgumentException e) {
+      throw badRequest(e.getMessage());
+    }
+  }
+  /** Full replace; the body's version must be current. Prefer PATCH. */
+  @PutMapping("/{id}") ResponseEntity<Purchase> update(
       @PathVariable Long id, @RequestBody Purchase p) {
-    p.setId(id);
-    return repo.save(p);
+    try {
+      Purchase saved = writes.replace(id, p);
+      return ResponseEntity.ok().eTag(etag(saved.getVersion())).body(saved);
+    } catch (EntityNotFoundException e) {
+      throw notFound(id);
+    }
+  }
+
+  /**
+   * Changes only the fields and items named in the body. The expected
+   * version comes from the body or else from If-Match.
+   */
+  @PatchMapping("/{id}") ResponseEntity<Purchase> patch(
+      @PathVariable Long id, @RequestBody PurchaseWriteService.Patch patch,
+      @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+    Long version = patch.getVersion();
+    if (version == null && ifMatch != null) {
+      try {
+        version = Long.parseLong(ifMatch.replace("W/", "").replace("\"", "").trim());
+      } catch (NumberFormatException e) {
+        throw badRequest("bad If-Match " + ifMatch);
+      }
+    }
+    if (version == null) throw badRequest("version or If-Match required");
+    try {
+      Purchase p = writes.patch(id, version, patch);
+      return ResponseEntity.ok().eTag(etag(p.getVersion())).body(p);
+    } catch (EntityNotFoundException e) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+    }
   }
+
+  // merge reports a stale version directly as the JPA exception
+  @ExceptionHandler({ObjectOptimisticLockingFailureException.class, OptimisticLockException.class})
+  ResponseEntity<ProblemDetail> conflict(RuntimeException e) {
+    return ResponseEntity.status(HttpStatus.CONFLICT).body(ProblemDetail.forStatusAndDetail(
+        HttpStatus.CONFLICT, "purchase was changed by someone else; reload and retry"));
+  }
+
   @DeleteMapping("/{id}") void delete(@PathVariable Long id) {
-    repo.deleteById(id);
+    writes.delete(id);
+  }
+
+  /**
+   * Replication feed: what changed after log position {@code since}.
+   * Start from 0 and keep passing back {@code cursor} while {@code more}.
+   */
+  @GetMapping("/changes") ChangeLog.Changes changes(
+      @RequestParam(defaultValue = "0") long since,
+      @RequestParam(defaultValue = "" + ChangeLog.MAX_CHANGES) int limit) {
+    if (limit < 1 || limit > ChangeLog.MAX_CHANGES) {
+      throw badRequest("limit must be between 1 and " + ChangeLog.MAX_CHANGES);
+    }
+    return changes.since(since, limit);
+  }
+
+  /**
+   * The same feed pushed live as Server-Sent Events: each {@code changes}
+   * event carries one page, with its cursor as the event id. Resumes after
+   * {@code Last-Event-ID} on reconnect, else after {@code since}; with
+   * neither, starts at the current head.
+   */
+  @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  SseEmitter stream(
+      @RequestParam(required = false) Long since,
+      @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+    return stream.subscribe(lastEventId != null ? lastEventId : since);
+  }
+
+  /** Bulk import in the desktop CSV export layout; TSV with the tab-separated type. */
+  @PostMapping(path = "/import",
+      consumes = {"text/csv", "text/tab-separated-values", "text/plain"})
+  CsvImportService.ImportResult importCsv(
+      InputStream body,
+      @RequestHeader(value = "Content-Type", defaultValue = "text/csv") String type)
+      throws IOException {
+    char delimiter = type.startsWith("text/tab-separated-values") ? '\t' : ',';
+    try {
+      return importer.importCsv(body, delimiter);
+    } catch (IllegalArgumentException e) {
+      throw badRequest(e.getMessage());
+    }
+  }
+
+  /** Opaque to clients: base64url of {@code yyyy-MM-dd:id}, date empty when null. */
+  private static String encodeCursor(Purchase last) {
+    String date = last.getDate() == null ? ""
+        : new java.sql.Date(last.getDate().getTime()).toLocalDate().toString();
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString((date + ":" + last.getId()).getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static Specification<Purchase> decodeCursor(String cursor, boolean descending) {
+    try {
+      String s = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+      int colon = s.indexOf(':');
+      LocalDate date = colon == 0 ? null : LocalDate.parse(s.substring(0, colon));
+      return after(date, Long.parseLong(s.substring(colon + 1)), descending);
+    } catch (RuntimeException e) {
+      throw badRequest("bad cursor");
+    }
+  }
+
+  private static String etag(long version) {
+    return "\"" + version + "\"";
+  }
+
+  private static ResponseStatusException notFound(Long id) {
+    return new ResponseStatusException(HttpStatus.NOT_FOUND, "no purchase " + id);
+  }
+
+  private static ResponseStatusException badRequest(String message) {
+    return new ResponseStatusException(HttpStatus.BAD_REQUEST, message);
   }
 }
@@ -0,0 +1,34 @@
+package com.colby.roommate.controller;
+
+import com.colby.roommate.model.Purchase;
+
+import java.util.List;
+
+/**
+ * One page of the purchase listing. {@code nextCursor} is set while more
+ * rows follow in date order; passing it back as {@code cursor} seeks
+ * straight to the next page instead of skipping {@code page * size} rows.
+ * Cursor pages have no page number.
+ */
+public class PurchasePage {
+    private final List<Purchase> content;
+    private final Integer page;
+    private final int size;
+    private final long totalElements;
+    private final String nextCursor;
+
+    PurchasePage(List<Purchase> content, Integer page, int size, long totalElements, String nextCursor) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Purchase> getContent() { return content; }
+    public Integer getPage() { return page; }
+    public int getSize() { return size; }
+    public long getTotalElements() { return totalElements; }
+    public long getTotalPages() { return (totalElements + size - 1) / size; }
+    public String getNextCursor() { return nextCursor; }
+}
@@ -0,0 +1,27 @@
+package com.colby.roommate.controller;
+
+import com.colby.roommate.service.SettlementService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+public class SettlementController {
+  private final SettlementService settlements;
+  public SettlementController(SettlementService settlements) { this.settlements = settlements; }
+
+  @GetMapping("/balances") List<SettlementService.Balance> balances(
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+    return settlements.balances(from, to);
+  }
+
+  @GetMapping("/settlement") SettlementService.Report settlement(
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+    return settlements.settle(from, to);
+  }
+}
@@ -0,0 +1,21 @@
+package com.colby.roommate.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Interns roommate names as they are read, so thousands of splits share a
+ * handful of String instances instead of one per row.
+ */
+@Converter
+public class InternedNameConverter implements AttributeConverter<String, String> {
+    @Override
+    public String convertToDatabaseColumn(String name) {
+        return name;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String column) {
+        return column == null ? null : column.intern();
+    }
+}
@@ -1,30 +1,37 @@
 package com.colby.roommate.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
-import java.util.HashMap;
-import java.util.Map;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
+import java.util.*;
 
 /**
  * JPA entity representing a line‐item in a purchase.
+ * <p>
+ * Splits are kept as a list of {@link Split} rows; {@link #getSplits()}
+ * presents them as the name-to-ratio map the JSON API has always used.
  */
 @Entity
+@DynamicUpdate
 public class Item {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq")
+    @SequenceGenerator(name = "item_seq", sequenceName = "item_seq", allocationSize = Purchase.ID_ALLOCATION)
     private Long id;
 
     private String description;
     private double cost;
     private double taxRate;
 
+    // lazy loads outside PurchaseQueryService come in batches, not one per item
+    @BatchSize(size = 64)
     @ElementCollection
     @CollectionTable(
         name = "item_splits",
         joinColumns = @JoinColumn(name = "item_id")
     )
-    @MapKeyColumn(name = "roommate")
-    @Column(name = "ratio")
-    private Map<String, Double> splits = new HashMap<>();
+    private List<Split> splits = new ArrayList<>();
 
     public Item() { }
 
@@ -32,7 +39,7 @@ public class Item {
         this.description = description;
         this.cost = cost;
         this.taxRate = taxRate;
-        this.splits = new HashMap<>(splits);
+        setSplits(splits);
     }
 
     public Long getId() { return id; }
@@ -47,8 +54,36 @@ public class Item {
     public double getTaxRate() { return taxRate; }
     public void setTaxRate(double taxRate) { this.taxRate = taxRate; }
 
-    public Map<String, Double> getSplits() { return splits; }
-    public void setSplits(Map<String, Double> splits) { this.splits = splits; }
+    /** Read-only map view of the split rows, in row order. */
+    public Map<String, Double> getSplits() {
+        return new AbstractMap<String, Double>() {
+            @Override public Set<Entry<String, Double>> entrySet() {
+                return new AbstractSet<Entry<String, Double>>() {
+                    @Override public int size() { return splits.size(); }
+
+                    @Override public Iterator<Entry<String, Double>> iterator() {
+                        Iterator<Split> it = splits.iterator();
+                        return new Iterator<Entry<String, Double>>() {
+                            @Override public boolean hasNext() { return it.hasNext(); }
+
+                            @Override public Entry<String, Double> next() {
+                                Split s = it.next();
+                                return new SimpleImmutableEntry<>(s.getRoommate(), s.getRatio());
+                            }
+                        };
+                    }
+                };
+            }
+        };
+    }
+
+    public void setSplits(Map<String, Double> splits) {
+        this.splits.clear();
+        splits.forEach((name, ratio) -> this.splits.add(new Split(name, ratio)));
+    }
+
+    @JsonIgnore
+    public List<Split> getSplitList() { return splits; }
 
     /** @return total cost including tax */
     public double getTotalCost() {
@@ -1,19 +1,52 @@
 package com.colby.roommate.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 /**
  * JPA entity representing a roommate purchase.
+ * <p>
+ * {@code version} is bumped on every change to the purchase or any of its
+ * items, and doubles as the ETag of {@code GET /api/purchases/{id}}.
+ * Updates write only the columns that changed.
  */
 @Entity
+@DynamicUpdate
+@Table(indexes = {
+    // listing order and keyset seek; see PurchaseController.list
+    @Index(name = "idx_purchase_date_id", columnList = "date, id"),
+    @Index(name = "idx_purchase_buyer", columnList = "buyer"),
+    // a retried create is answered with the purchase it already made
+    @Index(name = "idx_purchase_client_key", columnList = "client_key", unique = true)
+})
 public class Purchase {
+    /**
+     * Ids handed out per sequence call. Unlike IDENTITY, a pooled sequence
+     * lets Hibernate assign ids before inserting, so inserts can be batched.
+     */
+    public static final int ID_ALLOCATION = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_seq")
+    @SequenceGenerator(name = "purchase_seq", sequenceName = "purchase_seq", allocationSize = ID_ALLOCATION)
     private Long id;
 
+    // default 0 fills the column on databases that predate it
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private long version;
+
+    /**
+     * Set by a client on purchases it creates, so a create it resends
+     * after a lost response is not inserted twice. Null otherwise.
+     */
+    @Column(name = "client_key", length = 64)
+    private String clientKey;
+
     private String buyer;
     private String store;
 
@@ -22,8 +55,10 @@ public class Purchase {
 
     private double totalCost;
 
+    @BatchSize(size = 64)
     @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
-    @JoinColumn(name = "purchase_id")
+    // not null, so the key goes into the item insert instead of a later update
+    @JoinColumn(name = "purchase_id", nullable = false)
     private List<Item> items = new ArrayList<>();
 
     public Purchase() { }
@@ -38,6 +73,12 @@ public class Purchase {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public String getClientKey() { return clientKey; }
+    public void setClientKey(String clientKey) { this.clientKey = clientKey; }
+
     public String getBuyer() { return buyer; }
     public void setBuyer(String buyer) { this.buyer = buyer; }
 
@@ -53,6 +94,17 @@ public class Purchase {
     public List<Item> getItems() { return items; }
     public void setItems(List<Item> items) { this.items = items; }
 
+    /**
+     * Forgets the ids and version this purchase and its items arrived with,
+     * so persisting it inserts new rows. The client key stays. A body copied from a GET carries
+     * them, and persist would cascade onto items it takes as detached.
+     */
+    public void clearIds() {
+        id = null;
+        version = 0;
+        for (Item it : items) it.setId(null);
+    }
+
     public void addItem(Item item) { items.add(item); }
     public void removeItem(Item item) { items.remove(item); }
 }
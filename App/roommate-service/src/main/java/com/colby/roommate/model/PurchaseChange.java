@@ -0,0 +1,34 @@
+package com.colby.roommate.model;
+
+import jakarta.persistence.*;
+
+/**
+ * One row of the change log: purchase {@code purchaseId} was created or
+ * changed ({@code deleted == false}) or deleted at position {@code seq}.
+ * Clients replicate by asking for every change after the last seq they saw.
+ */
+@Entity
+@Table(name = "purchase_change")
+public class PurchaseChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "purchase_change_seq")
+    @SequenceGenerator(name = "purchase_change_seq", sequenceName = "purchase_change_seq",
+                       allocationSize = Purchase.ID_ALLOCATION)
+    private Long seq;
+
+    @Column(name = "purchase_id", nullable = false)
+    private long purchaseId;
+
+    private boolean deleted;
+
+    protected PurchaseChange() { }
+
+    public PurchaseChange(long purchaseId, boolean deleted) {
+        this.purchaseId = purchaseId;
+        this.deleted = deleted;
+    }
+
+    public Long getSeq() { return seq; }
+    public long getPurchaseId() { return purchaseId; }
+    public boolean isDeleted() { return deleted; }
+}
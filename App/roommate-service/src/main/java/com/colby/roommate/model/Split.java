@@ -0,0 +1,28 @@
+package com.colby.roommate.model;
+
+import jakarta.persistence.*;
+
+/**
+ * One roommate's share of an item, stored as a row of {@code item_splits}.
+ * The ratio is a primitive and the name is interned on load, so a split
+ * costs one small object rather than a map entry plus a boxed Double.
+ */
+@Embeddable
+public class Split {
+    @Convert(converter = InternedNameConverter.class)
+    @Column(name = "roommate", nullable = false)
+    private String roommate;
+
+    @Column(name = "ratio")
+    private double ratio;
+
+    protected Split() { }
+
+    public Split(String roommate, double ratio) {
+        this.roommate = roommate.intern();
+        this.ratio = ratio;
+    }
+
+    public String getRoommate() { return roommate; }
+    public double getRatio() { return ratio; }
+}
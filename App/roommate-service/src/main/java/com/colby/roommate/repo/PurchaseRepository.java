@@ -1,6 +1,26 @@
 package com.colby.roommate.repo;
 
+import com.colby.roommate.model.Item;
 import com.colby.roommate.model.Purchase;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 
-public interface PurchaseRepository extends JpaRepository<Purchase,Long> { }
+import java.util.Collection;
+import java.util.List;
+
+public interface PurchaseRepository
+    extends JpaRepository<Purchase,Long>, JpaSpecificationExecutor<Purchase> {
+
+    /**
+     * Initializes {@code items} on already-loaded purchases in one query.
+     * Splits cannot ride along: two fetched bags in one query multiply
+     * rows, so they come from {@link #fetchSplits}.
+     */
+    @Query("select p from Purchase p left join fetch p.items where p in :purchases")
+    List<Purchase> fetchItems(Collection<Purchase> purchases);
+
+    /** Initializes {@code splits} on already-loaded items in one query. */
+    @Query("select i from Item i left join fetch i.splits where i in :items")
+    List<Item> fetchSplits(Collection<Item> items);
+}
@@ -0,0 +1,61 @@
+package com.colby.roommate.repo;
+
+import com.colby.roommate.model.Purchase;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Query filters for {@link PurchaseRepository}. Each factory returns
+ * {@code null} for an absent argument, which {@link Specification#where}
+ * and {@code and} treat as "no restriction".
+ */
+public final class PurchaseSpecs {
+    private PurchaseSpecs() { }
+
+    public static Specification<Purchase> buyer(String buyer) {
+        return buyer == null || buyer.isBlank() ? null
+            : (root, q, cb) -> cb.equal(root.get("buyer"), buyer);
+    }
+
+    public static Specification<Purchase> store(String store) {
+        return store == null || store.isBlank() ? null
+            : (root, q, cb) -> cb.equal(root.get("store"), store);
+    }
+
+    /** Purchases dated on or after {@code from}. */
+    public static Specification<Purchase> from(LocalDate from) {
+        return from == null ? null
+            : (root, q, cb) -> cb.greaterThanOrEqualTo(root.<Date>get("date"), java.sql.Date.valueOf(from));
+    }
+
+    /** Purchases dated on or before {@code to}. */
+    public static Specification<Purchase> to(LocalDate to) {
+        return to == null ? null
+            : (root, q, cb) -> cb.lessThanOrEqualTo(root.<Date>get("date"), java.sql.Date.valueOf(to));
+    }
+
+    /**
+     * Keyset predicate: rows strictly after {@code (date, id)} in
+     * {@code ORDER BY date, id}, ascending or descending. Undated rows
+     * are ordered as H2 does by default, below every date.
+     */
+    public static Specification<Purchase> after(LocalDate date, long id, boolean descending) {
+        return (root, q, cb) -> {
+            var d = root.<Date>get("date");
+            var i = root.<Long>get("id");
+            var idAfter = descending ? cb.lessThan(i, id) : cb.greaterThan(i, id);
+            if (date == null) {
+                return descending
+                    ? cb.and(cb.isNull(d), idAfter)
+                    : cb.or(cb.isNotNull(d), cb.and(cb.isNull(d), idAfter));
+            }
+            Date day = java.sql.Date.valueOf(date);
+            var sameDay = cb.and(cb.equal(d, day), idAfter);
+            return descending
+                ? cb.or(cb.lessThan(d, day), sameDay, cb.isNull(d))
+                : cb.or(cb.greaterThan(d, day), sameDay);
+        };
+    }
+}
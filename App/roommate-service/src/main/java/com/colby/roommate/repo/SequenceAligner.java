@@ -0,0 +1,48 @@
+package com.colby.roommate.repo;
+
+import com.colby.roommate.model.Purchase;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the id sequences past ids already in the database. Databases
+ * created while ids were IDENTITY columns get fresh sequences starting at
+ * 1, and a pooled sequence hands out the block below the value it
+ * returns, so each sequence must restart above max(id) plus one block.
+ * <p>
+ * Runs while the context starts, after Hibernate has updated the schema
+ * and before the web server accepts requests. The sequence lookup is
+ * H2's information schema.
+ */
+@Component
+class SequenceAligner implements InitializingBean {
+    /** table, id column, sequence */
+    private static final String[][] SEQUENCES = {
+        {"purchase", "id", "purchase_seq"},
+        {"item", "id", "item_seq"},
+        {"purchase_change", "seq", "purchase_change_seq"}
+    };
+
+    private final JdbcTemplate jdbc;
+
+    // the factory is injected only so the schema exists before this runs
+    SequenceAligner(JdbcTemplate jdbc, EntityManagerFactory schemaReady) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        for (String[] s : SEQUENCES) {
+            Long max = jdbc.queryForObject("select coalesce(max(" + s[1] + "), 0) from " + s[0], Long.class);
+            Long next = jdbc.queryForObject(
+                "select base_value from information_schema.sequences where lower(sequence_name) = ?",
+                Long.class, s[2]);
+            long floor = max + Purchase.ID_ALLOCATION + 1;
+            if (next != null && next < floor) {
+                jdbc.execute("alter sequence " + s[2] + " restart with " + floor);
+            }
+        }
+    }
+}
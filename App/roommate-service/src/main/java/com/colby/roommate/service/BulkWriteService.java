@@ -0,0 +1,85 @@
+package com.colby.roommate.service;
+
+import com.colby.roommate.model.Purchase;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserts many purchases in one transaction. Ids come from the pooled
+ * sequences, so Hibernate groups the purchase, item and split inserts
+ * into JDBC batches of {@code hibernate.jdbc.batch_size}. The persistence
+ * context is flushed and cleared every {@link #FLUSH_EVERY} purchases to
+ * keep memory flat.
+ */
+@Service
+public class BulkWriteService {
+    /** Largest list accepted by one call. */
+    public static final int MAX_PURCHASES = 10_000;
+    static final int FLUSH_EVERY = 1_000;
+
+    private final EntityManager em;
+    private final ChangeLog changes;
+
+    public BulkWriteService(EntityManager em, ChangeLog changes) {
+        this.em = em;
+        this.changes = changes;
+    }
+
+    /**
+     * Persists {@code purchases} as new rows, ignoring any ids they carry.
+     * A purchase whose client key is already stored is not inserted again;
+     * its existing id is returned instead, so a client can resend a batch
+     * whose response it never got.
+     * @return the assigned ids, in input order
+     * @throws IllegalArgumentException if the list exceeds {@link #MAX_PURCHASES}
+     */
+    @Transactional
+    public List<Long> insertAll(List<Purchase> purchases) {
+        if (purchases.size() > MAX_PURCHASES) {
+            throw new IllegalArgumentException(
+                purchases.size() + " purchases; at most " + MAX_PURCHASES + " per call");
+        }
+        List<String> keys = new ArrayList<>();
+        for (Purchase p : purchases) {
+            if (p.getClientKey() != null) keys.add(p.getClientKey());
+        }
+        Map<String, Long> known = idsByClientKey(em, keys);
+        List<Long> ids = new ArrayList<>(purchases.size());
+        List<Long> inserted = new ArrayList<>(purchases.size());
+        for (Purchase p : purchases) {
+            Long id = p.getClientKey() == null ? null : known.get(p.getClientKey());
+            if (id == null) {
+                p.clearIds();
+                em.persist(p);
+                id = p.getId();
+                inserted.add(id);
+                if (p.getClientKey() != null) known.put(p.getClientKey(), id);
+                if (inserted.size() % FLUSH_EVERY == 0) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            ids.add(id);
+        }
+        changes.recordAll(inserted);
+        return ids;
+    }
+
+    /** Ids of the stored purchases carrying any of {@code keys}. */
+    static Map<String, Long> idsByClientKey(EntityManager em, Collection<String> keys) {
+        Map<String, Long> ids = new HashMap<>();
+        if (keys.isEmpty()) return ids;
+        em.createQuery("select p.clientKey, p.id from Purchase p where p.clientKey in :keys", Object[].class)
+            .setParameter("keys", keys)
+            .getResultList()
+            .forEach(row -> ids.put((String) row[0], (Long) row[1]));
+        return ids;
+    }
+}
@@ -0,0 +1,158 @@
+package com.colby.roommate.service;
+
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.model.PurchaseChange;
+import jakarta.persistence.EntityManager;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Change log behind {@code GET /api/purchases/changes}. Every write path
+ * records the purchases it touched in the same transaction, and a client
+ * that remembers the last seq it saw can fetch just what changed since.
+ * <p>
+ * Seqs are only useful as a cursor if they become visible in order, so a
+ * transaction that records a change holds {@link #writeLock} until it
+ * completes: a seq can then never commit after a higher one a client has
+ * already read past. That serializes writers, which is fine for one
+ * service instance over an embedded database.
+ * <p>
+ * After such a transaction commits, a {@link Committed} event is published
+ * so live subscribers can be told without polling.
+ */
+@Service
+public class ChangeLog {
+    /** Largest number of change rows read per request. */
+    public static final int MAX_CHANGES = 1000;
+
+    private final EntityManager em;
+    private final PurchaseQueryService queries;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher events;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public ChangeLog(EntityManager em, PurchaseQueryService queries, TransactionTemplate tx,
+                     ApplicationEventPublisher events) {
+        this.em = em;
+        this.queries = queries;
+        this.tx = tx;
+        this.events = events;
+    }
+
+    /** Published, on the writing thread, once recorded changes are visible. */
+    public static final class Committed {
+        static final Committed INSTANCE = new Committed();
+
+        private Committed() { }
+    }
+
+    /** One page of the log, collapsed to the latest state of each purchase. */
+    public static class Changes {
+        private final List<Purchase> upserts;
+        private final List<Long> deleted;
+        private final long cursor;
+        private final boolean more;
+
+        Changes(List<Purchase> upserts, List<Long> deleted, long cursor, boolean more) {
+            this.upserts = upserts;
+            this.deleted = deleted;
+            this.cursor = cursor;
+            this.more = more;
+        }
+
+        /** Purchases created or changed, with items and splits. */
+        public List<Purchase> getUpserts() { return upserts; }
+        public List<Long> getDeleted() { return deleted; }
+        /** Pass back as {@code since} for the next page. */
+        public long getCursor() { return cursor; }
+        /** True when the page was full and more changes follow. */
+        public boolean isMore() { return more; }
+    }
+
+    /** Must be called inside the writing transaction. */
+    public void record(long purchaseId, boolean deleted) {
+        lockUntilCompletion();
+        em.persist(new PurchaseChange(purchaseId, deleted));
+    }
+
+    public void recordAll(Collection<Long> purchaseIds) {
+        lockUntilCompletion();
+        for (long id : purchaseIds) em.persist(new PurchaseChange(id, false));
+    }
+
+    private void lockUntilCompletion() {
+        if (writeLock.isHeldByCurrentThread()) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("changes must be recorded inside a transaction");
+        }
+        writeLock.lock();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCommit() {
+                events.publishEvent(Committed.INSTANCE);
+            }
+
+            @Override public void afterCompletion(int status) {
+                writeLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Changes after {@code since}, at most {@code limit} log rows. A purchase
+     * changed several times appears once, in its current state; one that
+     * was deleted later, even past this page, is left to the page that
+     * reports the deletion.
+     */
+    @Transactional(readOnly = true)
+    public Changes since(long since, int limit) {
+        List<PurchaseChange> rows = em.createQuery(
+                "select c from PurchaseChange c where c.seq > :since order by c.seq", PurchaseChange.class)
+            .setParameter("since", since)
+            .setMaxResults(limit + 1)
+            .getResultList();
+        boolean more = rows.size() > limit;
+        if (more) rows = rows.subList(0, limit);
+
+        Map<Long, Boolean> latest = new LinkedHashMap<>();
+        for (PurchaseChange c : rows) {
+            latest.remove(c.getPurchaseId());
+            latest.put(c.getPurchaseId(), c.isDeleted());
+        }
+        List<Long> upserted = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        latest.forEach((id, gone) -> (gone ? deleted : upserted).add(id));
+        long cursor = rows.isEmpty() ? since : rows.get(rows.size() - 1).getSeq();
+        return new Changes(queries.byIds(upserted), deleted, cursor, more);
+    }
+
+    /** Seq of the newest committed change, 0 if there is none. */
+    @Transactional(readOnly = true)
+    public long head() {
+        return em.createQuery("select coalesce(max(c.seq), 0) from PurchaseChange c", Long.class)
+            .getSingleResult();
+    }
+
+    /**
+     * Gives every purchase without a log entry one, so a replica starting
+     * from zero also sees rows written before the log existed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        tx.executeWithoutResult(status -> {
+            List<Long> missing = em.createQuery(
+                    "select p.id from Purchase p where not exists"
+                    + " (select 1 from PurchaseChange c where c.purchaseId = p.id) order by p.id", Long.class)
+                .getResultList();
+            if (!missing.isEmpty()) recordAll(missing);
+        });
+    }
+}
@@ -0,0 +1,184 @@
+package com.colby.roommate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes the {@link ChangeLog} to Server-Sent Events subscribers.
+ * <p>
+ * Each event is one page of {@link ChangeLog#since}, named {@code changes},
+ * with the page's cursor as its id, so a client that reconnects with
+ * {@code Last-Event-ID} resumes exactly where it stopped. Subscribers are
+ * async requests: an idle one holds a socket and an entry in a list, not
+ * a thread.
+ * <p>
+ * All sending happens on one dispatcher thread. After a commit it reads
+ * the log once per distinct subscriber position (normally just one, the
+ * head), serializes each page once and writes it to every subscriber at
+ * that position. Commits that land while a pass is running are folded
+ * into the next one. A subscriber that falls behind, or joins with an old
+ * cursor, is caught up page by page the same way.
+ */
+@Service
+public class ChangeStream {
+    /** Subscriptions end after this long; EventSource clients reconnect and resume. */
+    static final long TIMEOUT_MS = TimeUnit.MINUTES.toMillis(30);
+    /** Comment line sent to idle subscribers so proxies and dead sockets are noticed. */
+    static final long HEARTBEAT_SECONDS = 25;
+
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> PING =
+        SseEmitter.event().comment("ping").build();
+    private static final Logger log = LoggerFactory.getLogger(ChangeStream.class);
+
+    private final ChangeLog changes;
+    private final ObjectMapper json;
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "change-stream");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean passQueued = new AtomicBoolean();
+
+    // dispatcher thread only
+    private final List<Subscriber> subscribers = new ArrayList<>();
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        long cursor;
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+
+    public ChangeStream(ChangeLog changes, ObjectMapper json) {
+        this.changes = changes;
+        this.json = json;
+        dispatcher.scheduleWithFixedDelay(this::heartbeat,
+            HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Opens a subscription that receives every change after {@code since},
+     * or only future ones when it is null.
+     */
+    public SseEmitter subscribe(Long since) {
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MS);
+        Subscriber sub = new Subscriber(emitter, since != null ? since : 0);
+        Runnable drop = () -> dispatcher.execute(() -> subscribers.remove(sub));
+        emitter.onCompletion(drop);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> drop.run());
+        dispatcher.execute(() -> {
+            // not on the request thread: with open-in-view, a query there
+            // would pin a pooled connection for the life of the stream
+            if (since == null) {
+                try {
+                    sub.cursor = changes.head();
+                } catch (RuntimeException e) {
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+            subscribers.add(sub);
+            // tells the client it is connected, and where it is
+            send(sub, SseEmitter.event().comment("since " + sub.cursor).build());
+        });
+        requestPass();
+        return emitter;
+    }
+
+    /** Number of open subscriptions. */
+    public int subscriberCount() {
+        try {
+            return dispatcher.submit(subscribers::size).get();
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    @EventListener
+    public void onCommit(ChangeLog.Committed event) {
+        requestPass();
+    }
+
+    private void requestPass() {
+        if (passQueued.compareAndSet(false, true)) dispatcher.execute(this::pass);
+    }
+
+    /** Brings every subscriber up to the head of the log. */
+    private void pass() {
+        passQueued.set(false);
+        if (subscribers.isEmpty()) return;
+        try {
+            Map<Long, List<Subscriber>> byCursor = new TreeMap<>();
+            for (Subscriber s : subscribers) {
+                byCursor.computeIfAbsent(s.cursor, c -> new ArrayList<>()).add(s);
+            }
+            for (Map.Entry<Long, List<Subscriber>> e : byCursor.entrySet()) {
+                long cursor = e.getKey();
+                ChangeLog.Changes page;
+                do {
+                    page = changes.since(cursor, ChangeLog.MAX_CHANGES);
+                    if (page.getCursor() == cursor) break;
+                    // built once: a builder appends to itself each time it is sent
+                    Set<ResponseBodyEmitter.DataWithMediaType> event = SseEmitter.event()
+                        .name("changes")
+                        .id(Long.toString(page.getCursor()))
+                        .data(json.writeValueAsString(page))
+                        .build();
+                    for (Subscriber s : e.getValue()) {
+                        if (send(s, event)) s.cursor = page.getCursor();
+                    }
+                    cursor = page.getCursor();
+                } while (page.isMore());
+            }
+        } catch (RuntimeException | JsonProcessingException e) {
+            // the next commit or heartbeat tries again
+            log.warn("Change stream pass failed", e);
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber s : new ArrayList<>(subscribers)) {
+            send(s, PING);
+        }
+        pass();
+    }
+
+    /** @return false, and the subscriber dropped, if its connection is gone */
+    private boolean send(Subscriber s, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        try {
+            s.emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(s);
+            s.emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        dispatcher.execute(() -> {
+            for (Subscriber s : subscribers) s.emitter.complete();
+            subscribers.clear();
+        });
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,263 @@
+package com.colby.roommate.service;
+
+import com.colby.roommate.model.Item;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Streams purchases in the desktop export layout
+ * ({@code Date,Buyer,Store,Description,Cost,TaxRate,Total,SplitMap}) into
+ * the repository. Consecutive rows with the same date, buyer and store
+ * become one Purchase; each batch of purchases is saved in its own
+ * transaction and then detached, so memory stays flat however long the
+ * upload is. Bad rows are skipped and reported by line.
+ */
+@Service
+public class CsvImportService {
+    /** Purchases saved per transaction. */
+    static final int BATCH_SIZE = 500;
+    static final int MAX_ERRORS = 1000;
+
+    private static final String[] COLUMNS =
+        {"Date", "Buyer", "Store", "Description", "Cost", "TaxRate", "Total", "SplitMap"};
+    private static final int DATE = 0, BUYER = 1, STORE = 2, DESCRIPTION = 3,
+                             COST = 4, TAX_RATE = 5, TOTAL = 6, SPLITS = 7;
+
+    private final PurchaseRepository repo;
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+    private final ChangeLog changes;
+
+    public CsvImportService(PurchaseRepository repo, EntityManager em, TransactionTemplate tx,
+                            ChangeLog changes) {
+        this.repo = repo;
+        this.em = em;
+        this.tx = tx;
+        this.changes = changes;
+    }
+
+    /** Outcome of an import, with at most {@link #MAX_ERRORS} error lines. */
+    public static class ImportResult {
+        private int purchases;
+        private int items;
+        private int badRows;
+        private final List<String> errors = new ArrayList<>();
+
+        public int getPurchases() { return purchases; }
+        public int getItems() { return items; }
+        public int getBadRows() { return badRows; }
+        public List<String> getErrors() { return errors; }
+
+        void error(long line, String message) {
+            badRows++;
+            if (errors.size() < MAX_ERRORS) errors.add("line " + line + ": " + message);
+        }
+    }
+
+    /**
+     * Imports UTF-8 text from {@code in}.
+     * @throws IllegalArgumentException if the header lacks a required column
+     */
+    public ImportResult importCsv(InputStream in, char delimiter) throws IOException {
+        ImportResult result = new ImportResult();
+        RecordReader records = new RecordReader(
+            new InputStreamReader(in, StandardCharsets.UTF_8), delimiter);
+        List<String> header = records.next();
+        if (header == null) return result;
+        int[] col = resolve(header);
+
+        List<Purchase> batch = new ArrayList<>(BATCH_SIZE);
+        Purchase open = null;
+        long openCents = 0;
+        List<String> row;
+        while ((row = records.next()) != null) {
+            Item item;
+            Purchase key;
+            try {
+                key = purchaseOf(row, col);
+                item = itemOf(row, col, key.getBuyer());
+            } catch (IllegalArgumentException | DateTimeException e) {
+                result.error(records.line, e.getMessage());
+                continue;
+            }
+            if (open == null || !Objects.equals(open.getDate(), key.getDate())
+                    || !open.getBuyer().equals(key.getBuyer())
+                    || !Objects.equals(open.getStore(), key.getStore())) {
+                if (open != null) {
+                    batch.add(open);
+                    if (batch.size() == BATCH_SIZE) save(batch, result);
+                }
+                open = key;
+                openCents = 0;
+            }
+            open.addItem(item);
+            openCents += cents(item.getCost()) + Math.round(cents(item.getCost()) * item.getTaxRate());
+            open.setTotalCost(openCents / 100.0);
+            result.items++;
+        }
+        if (open != null) batch.add(open);
+        save(batch, result);
+        return result;
+    }
+
+    private void save(List<Purchase> batch, ImportResult result) {
+        if (batch.isEmpty()) return;
+        tx.executeWithoutResult(status -> {
+            List<Long> ids = new ArrayList<>(batch.size());
+            for (Purchase p : repo.saveAll(batch)) ids.add(p.getId());
+            changes.recordAll(ids);
+        });
+        // the request-scoped persistence context would otherwise keep them all
+        em.clear();
+        result.purchases += batch.size();
+        batch.clear();
+    }
+
+    private static int[] resolve(List<String> header) {
+        int[] col = new int[COLUMNS.length];
+        Arrays.fill(col, -1);
+        for (int c = 0; c < COLUMNS.length; c++) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).trim().equalsIgnoreCase(COLUMNS[c])) {
+                    col[c] = i;
+                    break;
+                }
+            }
+        }
+        for (int required : new int[] {DATE, BUYER, COST}) {
+            if (col[required] < 0) {
+                throw new IllegalArgumentException("missing column " + COLUMNS[required]);
+            }
+        }
+        return col;
+    }
+
+    private static String field(List<String> row, int[] col, int which) {
+        int i = col[which];
+        return i < 0 || i >= row.size() ? "" : row.get(i).trim();
+    }
+
+    private static Purchase purchaseOf(List<String> row, int[] col) {
+        String date = field(row, col, DATE);
+        String buyer = field(row, col, BUYER);
+        if (buyer.isEmpty()) throw new IllegalArgumentException("no buyer");
+        return new Purchase(buyer, field(row, col, STORE),
+            date.isEmpty() ? null : Date.valueOf(LocalDate.parse(date)), 0);
+    }
+
+    private static Item itemOf(List<String> row, int[] col, String buyer) {
+        double cost = number(field(row, col, COST), "cost");
+        String tax = field(row, col, TAX_RATE);
+        double rate = tax.isEmpty() ? 0 : number(tax, "tax rate");
+        String total = field(row, col, TOTAL);
+        if (!total.isEmpty()) {
+            long expected = cents(cost) + Math.round(cents(cost) * rate);
+            if (Math.abs(cents(number(total, "total")) - expected) > 1) {
+                throw new IllegalArgumentException("total " + total
+                    + " does not match cost plus tax " + expected / 100.0);
+            }
+        }
+        return new Item(field(row, col, DESCRIPTION), cost, rate,
+            splits(field(row, col, SPLITS), buyer));
+    }
+
+    /** {@code {A=0.5, B=0.5}} as exported, or {@code A=0.5;B=0.5}; empty means the buyer. */
+    private static Map<String, Double> splits(String s, String buyer) {
+        if (s.startsWith("{") && s.endsWith("}")) s = s.substring(1, s.length() - 1).trim();
+        Map<String, Double> out = new LinkedHashMap<>();
+        if (s.isEmpty()) {
+            out.put(buyer, 1.0);
+            return out;
+        }
+        double sum = 0;
+        for (String part : s.split("[,;]")) {
+            int eq = part.lastIndexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("bad split \"" + part.trim() + "\"");
+            double ratio = number(part.substring(eq + 1).trim(), "split ratio");
+            out.put(part.substring(0, eq).trim(), ratio);
+            sum += ratio;
+        }
+        if (Math.abs(sum - 1) > 1e-3) {
+            throw new IllegalArgumentException("splits add up to " + sum + ", not 1");
+        }
+        return out;
+    }
+
+    private static double number(String s, String what) {
+        try {
+            return Double.parseDouble(s.replace("$", "").replace(",", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad " + what + " \"" + s + "\"");
+        }
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /** RFC 4180 records; quoted fields may hold delimiters, quotes and line breaks. */
+    private static final class RecordReader {
+        private final BufferedReader in;
+        private final char delimiter;
+        private final StringBuilder sb = new StringBuilder();
+        /** Line the last record returned started on. */
+        long line;
+        private long nextLine = 1;
+
+        RecordReader(Reader in, char delimiter) {
+            this.in = new BufferedReader(in, 1 << 16);
+            this.delimiter = delimiter;
+        }
+
+        List<String> next() throws IOException {
+            while (true) {
+                line = nextLine;
+                List<String> fields = new ArrayList<>(8);
+                sb.setLength(0);
+                boolean quoted = false, any = false;
+                int c;
+                while ((c = in.read()) >= 0) {
+                    any = true;
+                    if (quoted) {
+                        if (c == '"') {
+                            in.mark(1);
+                            if (in.read() == '"') {
+                                sb.append('"');
+                            } else {
+                                in.reset();
+                                quoted = false;
+                            }
+                        } else {
+                            if (c == '\n') nextLine++;
+                            sb.append((char) c);
+                        }
+                    } else if (c == '"' && sb.length() == 0) {
+                        quoted = true;
+                    } else if (c == delimiter) {
+                        fields.add(sb.toString());
+                        sb.setLength(0);
+                    } else if (c == '\n') {
+                        nextLine++;
+                        break;
+                    } else if (c != '\r') {
+                        sb.append((char) c);
+                    }
+                }
+                if (!any) return null;
+                fields.add(sb.toString());
+                if (fields.size() == 1 && fields.get(0).isEmpty()) continue; // blank line
+                return fields;
+            }
+        }
+    }
+}
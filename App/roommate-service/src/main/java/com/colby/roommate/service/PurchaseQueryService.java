@@ -0,0 +1,79 @@
+package com.colby.roommate.service;
+
+import com.colby.roommate.config.CacheConfig;
+import com.colby.roommate.model.Item;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads whole purchase graphs in a fixed number of statements. The
+ * purchases are selected first, with paging applied in SQL; their items
+ * and then the items' splits are each fetched with one IN query, instead
+ * of one lazy load per purchase and per item while the result is being
+ * serialized.
+ */
+@Service
+@Transactional(readOnly = true)
+public class PurchaseQueryService {
+    private final PurchaseRepository repo;
+
+    public PurchaseQueryService(PurchaseRepository repo) {
+        this.repo = repo;
+    }
+
+    /** Offset page: select, count, items, splits. */
+    public Page<Purchase> page(Specification<Purchase> filter, Pageable pageable) {
+        Page<Purchase> page = repo.findAll(filter, pageable);
+        initialize(page.getContent());
+        return page;
+    }
+
+    /** First {@code limit} matches in {@code order}: select, items, splits. */
+    public List<Purchase> first(Specification<Purchase> filter, Sort order, int limit) {
+        List<Purchase> rows = repo.findBy(filter, q -> q.sortBy(order).limit(limit).all());
+        initialize(rows);
+        return rows;
+    }
+
+    /** One purchase with its items and splits; cached until it is written. */
+    @Cacheable(cacheNames = CacheConfig.PURCHASES, key = "#id", unless = "#result == null")
+    public Optional<Purchase> one(long id) {
+        Optional<Purchase> p = repo.findById(id);
+        p.ifPresent(found -> initialize(List.of(found)));
+        return p;
+    }
+
+    /** The purchases with these ids that still exist, in id order. */
+    public List<Purchase> byIds(Collection<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        List<Purchase> rows = new ArrayList<>(repo.findAllById(ids));
+        rows.sort(Comparator.comparing(Purchase::getId));
+        initialize(rows);
+        return rows;
+    }
+
+    public long count(Specification<Purchase> filter) {
+        return repo.count(filter);
+    }
+
+    private void initialize(List<Purchase> purchases) {
+        if (purchases.isEmpty()) return;
+        repo.fetchItems(purchases);
+        List<Item> items = new ArrayList<>();
+        for (Purchase p : purchases) items.addAll(p.getItems());
+        if (!items.isEmpty()) repo.fetchSplits(items);
+    }
+}
@@ -0,0 +1,212 @@
+package com.colby.roommate.service;
+
+import com.colby.roommate.model.Item;
+import com.colby.roommate.model.Purchase;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockModeType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+/**
+ * Single-purchase writes, each recorded in the {@link ChangeLog}.
+ * <p>
+ * Updates are version-checked. A patch names only what changes: Hibernate's
+ * dirty checking then writes just those columns of just those rows, where
+ * a full replace deleted and re-inserted every item and split. Every
+ * accepted change bumps {@link Purchase#getVersion()}, item edits
+ * included, so a client holding an older version gets a conflict instead
+ * of silently overwriting someone else's edit.
+ */
+@Service
+public class PurchaseWriteService {
+    private final EntityManager em;
+    private final ChangeLog changes;
+
+    public PurchaseWriteService(EntityManager em, ChangeLog changes) {
+        this.em = em;
+        this.changes = changes;
+    }
+
+    /**
+     * Persists {@code p} as a new purchase, ignoring any ids it carries.
+     * If its client key is already stored, returns that purchase instead.
+     */
+    @Transactional
+    public Purchase create(Purchase p) {
+        if (p.getClientKey() != null) {
+            Long id = BulkWriteService.idsByClientKey(em, List.of(p.getClientKey())).get(p.getClientKey());
+            if (id != null) return em.find(Purchase.class, id);
+        }
+        p.clearIds();
+        em.persist(p);
+        changes.record(p.getId(), false);
+        return p;
+    }
+
+    /** Deleting a purchase that does not exist is a no-op. */
+    @Transactional
+    public void delete(long id) {
+        Purchase p = em.find(Purchase.class, id);
+        if (p == null) return;
+        em.remove(p);
+        changes.record(id, true);
+    }
+
+    /** Changes to a purchase; null fields are left alone. */
+    public static class Patch {
+        private Long version;
+        private String buyer;
+        private String store;
+        private Date date;
+        private Double totalCost;
+        private List<ItemPatch> items = List.of();
+        private List<Long> removeItems = List.of();
+
+        public Long getVersion() { return version; }
+        public void setVersion(Long version) { this.version = version; }
+        public String getBuyer() { return buyer; }
+        public void setBuyer(String buyer) { this.buyer = buyer; }
+        public String getStore() { return store; }
+        public void setStore(String store) { this.store = store; }
+        public Date getDate() { return date; }
+        public void setDate(Date date) { this.date = date; }
+        public Double getTotalCost() { return totalCost; }
+        public void setTotalCost(Double totalCost) { this.totalCost = totalCost; }
+        /** Items with an id are edited in place; items without one are added. */
+        public List<ItemPatch> getItems() { return items; }
+        public void setItems(List<ItemPatch> items) { this.items = items; }
+        public List<Long> getRemoveItems() { return removeItems; }
+        public void setRemoveItems(List<Long> removeItems) { this.removeItems = removeItems; }
+    }
+
+    /** Changes to one item; null fields are left alone, splits are replaced whole. */
+    public static class ItemPatch {
+        private Long id;
+        private String description;
+        private Double cost;
+        private Double taxRate;
+        private Map<String, Double> splits;
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+        public String getDescription() { return description; }
+        public void setDescription(String description) { this.description = description; }
+        public Double getCost() { return cost; }
+        public void setCost(Double cost) { this.cost = cost; }
+        public Double getTaxRate() { return taxRate; }
+        public void setTaxRate(Double taxRate) { this.taxRate = taxRate; }
+        public Map<String, Double> getSplits() { return splits; }
+        public void setSplits(Map<String, Double> splits) { this.splits = splits; }
+    }
+
+    /**
+     * Applies {@code patch} if the purchase is still at {@code expectedVersion}.
+     * @throws EntityNotFoundException if there is no such purchase or item
+     * @throws ObjectOptimisticLockingFailureException on a version mismatch
+     */
+    @Transactional
+    public Purchase patch(long id, long expectedVersion, Patch patch) {
+        Purchase p = em.find(Purchase.class, id);
+        if (p == null) throw new EntityNotFoundException("no purchase " + id);
+        if (p.getVersion() != expectedVersion) {
+            throw new ObjectOptimisticLockingFailureException(Purchase.class, id);
+        }
+        // changed: the purchase row or its item list; Hibernate bumps the version itself
+        // edited: only item rows, which the purchase version must be charged for
+        boolean changed = false, edited = false;
+        if (patch.buyer != null && !patch.buyer.equals(p.getBuyer())) {
+            p.setBuyer(patch.buyer);
+            changed = true;
+        }
+        if (patch.store != null && !patch.store.equals(p.getStore())) {
+            p.setStore(patch.store);
+            changed = true;
+        }
+        if (patch.date != null && !sameDay(patch.date, p.getDate())) {
+            p.setDate(patch.date);
+            changed = true;
+        }
+        if (patch.totalCost != null && patch.totalCost != p.getTotalCost()) {
+            p.setTotalCost(patch.totalCost);
+            changed = true;
+        }
+        if (!patch.removeItems.isEmpty()) {
+            Set<Long> gone = new HashSet<>(patch.removeItems);
+            changed |= p.getItems().removeIf(it -> gone.contains(it.getId()));
+        }
+        for (ItemPatch ip : patch.items) {
+            if (ip.id == null) changed |= add(p, ip);
+            else edited |= apply(item(p, ip.id), ip);
+        }
+        if (edited && !changed) em.lock(p, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        if (edited || changed) changes.record(id, false);
+        em.flush();
+        return p;
+    }
+
+    /**
+     * Replaces the whole purchase, for PUT. The version in {@code p} must
+     * match the stored one, and moves on by exactly one.
+     */
+    @Transactional
+    public Purchase replace(long id, Purchase p) {
+        if (em.find(Purchase.class, id) == null) throw new EntityNotFoundException("no purchase " + id);
+        p.setId(id);
+        long expected = p.getVersion();
+        Purchase merged = em.merge(p);
+        // before the flush takes the row lock, in the order patch takes them
+        changes.record(id, false);
+        em.flush();
+        // as in patch: Hibernate has bumped the version unless only item rows changed
+        if (merged.getVersion() == expected) {
+            em.lock(merged, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            em.flush();
+        }
+        return merged;
+    }
+
+    private static boolean add(Purchase p, ItemPatch ip) {
+        Map<String, Double> splits = ip.splits != null ? ip.splits : Map.of(p.getBuyer(), 1.0);
+        p.addItem(new Item(ip.description, ip.cost != null ? ip.cost : 0,
+            ip.taxRate != null ? ip.taxRate : 0, splits));
+        return true;
+    }
+
+    private static boolean apply(Item it, ItemPatch ip) {
+        boolean changed = false;
+        if (ip.description != null && !ip.description.equals(it.getDescription())) {
+            it.setDescription(ip.description);
+            changed = true;
+        }
+        if (ip.cost != null && ip.cost != it.getCost()) {
+            it.setCost(ip.cost);
+            changed = true;
+        }
+        if (ip.taxRate != null && ip.taxRate != it.getTaxRate()) {
+            it.setTaxRate(ip.taxRate);
+            changed = true;
+        }
+        // rewriting an element collection deletes and re-inserts its rows; skip when equal
+        if (ip.splits != null && !ip.splits.equals(new HashMap<>(it.getSplits()))) {
+            it.setSplits(ip.splits);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private static Item item(Purchase p, long itemId) {
+        for (Item it : p.getItems()) {
+            if (Long.valueOf(itemId).equals(it.getId())) return it;
+        }
+        throw new EntityNotFoundException("purchase " + p.getId() + " has no item " + itemId);
+    }
+
+    private static boolean sameDay(Date a, Date b) {
+        return b != null && new java.sql.Date(a.getTime()).toLocalDate()
+            .equals(new java.sql.Date(b.getTime()).toLocalDate());
+    }
+}
@@ -0,0 +1,107 @@
+package com.colby.roommate.service;
+
+import com.colby.roommate.config.CacheConfig;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Balances and settlement computed in the database. One GROUP BY over
+ * purchase, item and item_splits returns what each buyer fronted for each
+ * roommate, a table of at most roommates² rows, so no entity is loaded and
+ * the work left in Java depends only on how many roommates there are.
+ * <p>
+ * Each (buyer, roommate) amount is rounded to cents once and then credited
+ * to the buyer and debited from the roommate, so the balances always sum
+ * to zero, as the desktop ledger's do.
+ */
+@Service
+@Transactional(readOnly = true)
+public class SettlementService {
+    private final EntityManager em;
+
+    public SettlementService(EntityManager em) {
+        this.em = em;
+    }
+
+    /** One roommate's totals, in dollars. */
+    public static class Balance {
+        private final String roommate;
+        private final long paidCents;
+        private final long owedCents;
+
+        Balance(String roommate, long paidCents, long owedCents) {
+            this.roommate = roommate;
+            this.paidCents = paidCents;
+            this.owedCents = owedCents;
+        }
+
+        public String getRoommate() { return roommate; }
+        /** @return what they paid for everyone's shares, their own included */
+        public double getPaid() { return paidCents / 100.0; }
+        /** @return the sum of their own shares */
+        public double getOwed() { return owedCents / 100.0; }
+        /** @return positive when they are owed money */
+        public double getNet() { return (paidCents - owedCents) / 100.0; }
+
+        long netCents() { return paidCents - owedCents; }
+    }
+
+    public static class Report {
+        private final List<Balance> balances;
+        private final List<Transfer> transfers;
+
+        Report(List<Balance> balances, List<Transfer> transfers) {
+            this.balances = balances;
+            this.transfers = transfers;
+        }
+
+        public List<Balance> getBalances() { return balances; }
+        public List<Transfer> getTransfers() { return transfers; }
+    }
+
+    /** Balances by roommate name over purchases dated in [from, to]; either bound may be null. */
+    @Cacheable(CacheConfig.BALANCES)
+    public List<Balance> balances(LocalDate from, LocalDate to) {
+        StringBuilder jpql = new StringBuilder(
+            "select p.buyer, s.roommate, sum(i.cost * (1 + i.taxRate) * s.ratio)"
+            + " from Purchase p join p.items i join i.splits s where 1 = 1");
+        if (from != null) jpql.append(" and p.date >= :from");
+        if (to != null) jpql.append(" and p.date <= :to");
+        jpql.append(" group by p.buyer, s.roommate");
+        TypedQuery<Object[]> q = em.createQuery(jpql.toString(), Object[].class);
+        if (from != null) q.setParameter("from", java.sql.Date.valueOf(from));
+        if (to != null) q.setParameter("to", java.sql.Date.valueOf(to));
+
+        Map<String, long[]> totals = new TreeMap<>(); // name -> {paid, owed}
+        for (Object[] row : q.getResultList()) {
+            long cents = Math.round(((Number) row[2]).doubleValue() * 100);
+            totals.computeIfAbsent((String) row[0], k -> new long[2])[0] += cents;
+            totals.computeIfAbsent((String) row[1], k -> new long[2])[1] += cents;
+        }
+        List<Balance> out = new ArrayList<>(totals.size());
+        totals.forEach((name, t) -> out.add(new Balance(name, t[0], t[1])));
+        return out;
+    }
+
+    /** Balances plus the fewest transfers that settle them. */
+    @Cacheable(CacheConfig.SETTLEMENTS)
+    public Report settle(LocalDate from, LocalDate to) {
+        List<Balance> balances = balances(from, to);
+        String[] names = new String[balances.size()];
+        long[] cents = new long[names.length];
+        for (int k = 0; k < names.length; k++) {
+            names[k] = balances.get(k).getRoommate();
+            cents[k] = balances.get(k).netCents();
+        }
+        return new Report(balances, TransferSolver.solve(names, cents));
+    }
+}
@@ -0,0 +1,21 @@
+package com.colby.roommate.service;
+
+/** One settlement payment: {@code from} pays {@code to}. */
+public class Transfer {
+    private final String from;
+    private final String to;
+    private final long cents;
+
+    Transfer(String from, String to, long cents) {
+        this.from = from;
+        this.to = to;
+        this.cents = cents;
+    }
+
+    public String getFrom() { return from; }
+    public String getTo() { return to; }
+    /** @return the amount in dollars */
+    public double getAmount() { return cents / 100.0; }
+
+    long cents() { return cents; }
+}
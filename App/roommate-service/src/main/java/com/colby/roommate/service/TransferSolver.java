@@ -0,0 +1,96 @@
+package com.colby.roommate.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fewest payments that settle a set of balances; the same solver as the
+ * desktop app's {@code MinTransfersSettlement}.
+ * <p>
+ * A zero-sum group of k people settles in k - 1 payments, so the fewest
+ * payments is the number of non-zero balances minus the largest number of
+ * disjoint zero-sum groups. That comes from a DP over subsets; walking the
+ * argmax back from the full set yields the groups, and each is settled
+ * largest debt against largest credit. Past {@link #MAX_EXACT} non-zero
+ * balances the 2^n table is skipped and everyone is settled largest-first.
+ */
+final class TransferSolver {
+    static final int MAX_EXACT = 20;
+
+    private TransferSolver() { }
+
+    /** {@code cents[i]} belongs to {@code names[i]}; positive means owed money. */
+    static List<Transfer> solve(String[] names, long[] cents) {
+        long[] left = cents.clone();
+        int n = 0;
+        int[] live = new int[left.length];
+        for (int k = 0; k < left.length; k++) {
+            if (left[k] != 0) live[n++] = k;
+        }
+        List<Transfer> out = new ArrayList<>();
+        if (n > MAX_EXACT) {
+            int[] group = new int[n];
+            System.arraycopy(live, 0, group, 0, n);
+            largestFirst(names, left, group, out);
+            return out;
+        }
+
+        int full = (1 << n) - 1;
+        long[] sum = new long[full + 1];
+        byte[] best = new byte[full + 1];
+        for (int mask = 1; mask <= full; mask++) {
+            int low = Integer.numberOfTrailingZeros(mask);
+            sum[mask] = sum[mask & (mask - 1)] + left[live[low]];
+            int b = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int i = Integer.numberOfTrailingZeros(rest);
+                b = Math.max(b, best[mask ^ (1 << i)]);
+            }
+            best[mask] = (byte) (sum[mask] == 0 ? b + 1 : b);
+        }
+
+        List<int[]> groups = new ArrayList<>();
+        int mask = full, groupStart = full;
+        while (mask != 0) {
+            int next = -1;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int i = Integer.numberOfTrailingZeros(rest);
+                int m = mask ^ (1 << i);
+                if (next < 0 || best[m] > best[next]) next = m;
+            }
+            mask = next;
+            if (mask == 0 || sum[mask] == 0) {
+                groups.add(members(groupStart & ~mask, live));
+                groupStart = mask;
+            }
+        }
+        for (int g = groups.size() - 1; g >= 0; g--) {
+            largestFirst(names, left, groups.get(g), out);
+        }
+        return out;
+    }
+
+    private static void largestFirst(String[] names, long[] left, int[] group, List<Transfer> out) {
+        while (true) {
+            int d = -1, c = -1;
+            for (int k : group) {
+                if (left[k] < 0 && (d < 0 || left[k] < left[d])) d = k;
+                if (left[k] > 0 && (c < 0 || left[k] > left[c])) c = k;
+            }
+            if (d < 0 || c < 0) return;
+            long amt = Math.min(-left[d], left[c]);
+            out.add(new Transfer(names[d], names[c], amt));
+            left[d] += amt;
+            left[c] -= amt;
+        }
+    }
+
+    private static int[] members(int mask, int[] live) {
+        int[] out = new int[Integer.bitCount(mask)];
+        int k = 0;
+        for (int rest = mask; rest != 0; rest &= rest - 1) {
+            out[k++] = live[Integer.numberOfTrailingZeros(rest)];
+        }
+        return out;
+    }
+}
@@ -0,0 +1,63 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import com.colby.roommate.service.BulkWriteService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+/**
+ * Insert throughput against an H2 file database, as the service runs.
+ * Excluded from the normal build; run with
+ * <pre>
+ *   mvn -Pbenchmark test
+ * </pre>
+ */
+@Tag("benchmark")
+@SpringBootTest(classes = RoommateServiceApplication.class, properties = {
+	"spring.datasource.url=jdbc:h2:file:./target/bench/roommate",
+	"spring.jpa.properties.hibernate.generate_statistics=false"
+})
+class BulkInsertBenchmarkTests {
+
+	static final int PURCHASES = 20_000;
+	static final int PER_CALL = 5_000;
+
+	@Autowired PurchaseRepository repo;
+	@Autowired BulkWriteService bulk;
+
+	@Test
+	void insertThroughput() {
+		// warm up both paths before timing
+		oneByOne(BulkWriteTests.purchases(1_000));
+		bulk(BulkWriteTests.purchases(PER_CALL));
+
+		double single = rate(() -> oneByOne(BulkWriteTests.purchases(PURCHASES)));
+		double batched = rate(() -> bulk(BulkWriteTests.purchases(PURCHASES)));
+		System.out.printf("%,d purchases, 2 items and 3 splits each%n", PURCHASES);
+		System.out.printf("  POST /api/purchases path (save each): %,10.0f purchases/s%n", single);
+		System.out.printf("  POST /api/purchases/bulk path:        %,10.0f purchases/s (%.1fx)%n",
+			batched, batched / single);
+	}
+
+	private void oneByOne(List<Purchase> purchases) {
+		for (Purchase p : purchases) repo.save(p);
+	}
+
+	private void bulk(List<Purchase> purchases) {
+		for (int i = 0; i < purchases.size(); i += PER_CALL) {
+			bulk.insertAll(purchases.subList(i, Math.min(i + PER_CALL, purchases.size())));
+		}
+	}
+
+	private static double rate(Runnable run) {
+		long t0 = System.nanoTime();
+		run.run();
+		return PURCHASES / ((System.nanoTime() - t0) / 1e9);
+	}
+}
@@ -0,0 +1,89 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.model.Item;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import com.colby.roommate.service.BulkWriteService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = RoommateServiceApplication.class)
+@AutoConfigureMockMvc
+class BulkWriteTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired PurchaseRepository repo;
+	@Autowired BulkWriteService bulk;
+	@Autowired EntityManagerFactory emf;
+
+	static List<Purchase> purchases(int n) {
+		List<Purchase> out = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			Purchase p = new Purchase("Colby", "Safeway", Date.valueOf("2024-03-01"), 7.9);
+			p.addItem(new Item("milk", 3.5, 0, Map.of("Colby", 0.5, "Khanh", 0.5)));
+			p.addItem(new Item("eggs", 4.0, 0.1, Map.of("Khanh", 1.0)));
+			out.add(p);
+		}
+		return out;
+	}
+
+	@Test
+	void insertsAreBatched() {
+		repo.deleteAll();
+		Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		List<Long> ids = bulk.insertAll(purchases(2000));
+
+		assertEquals(2000, new HashSet<>(ids).size());
+		assertEquals(2000, repo.count());
+		// 2,000 purchases, 4,000 items and 6,000 splits one row at a time
+		// would be 12,000 statements; batches of 50 are a few hundred
+		assertTrue(stats.getPrepareStatementCount() < 500,
+			"statements: " + stats.getPrepareStatementCount());
+	}
+
+	@Test
+	void bulkEndpoint() throws Exception {
+		String body = "[{\"buyer\":\"Khanh\",\"store\":\"Target\",\"date\":\"2024-03-02\",\"totalCost\":11,"
+			+ "\"items\":[{\"description\":\"lamp\",\"cost\":10,\"taxRate\":0.1,\"splits\":{\"Jehosh\":1.0}}]},"
+			+ "{\"id\":42,\"buyer\":\"Colby\",\"store\":\"Safeway\",\"date\":\"2024-03-03\",\"totalCost\":0,\"items\":[]}]";
+		mvc.perform(post("/api/purchases/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(2));
+	}
+
+	@Test
+	void resentClientKeysAreNotInsertedTwice() {
+		repo.deleteAll();
+		List<Purchase> first = purchases(3);
+		for (int i = 0; i < 3; i++) first.get(i).setClientKey("resend-" + i);
+		List<Long> ids = bulk.insertAll(first);
+
+		List<Purchase> again = purchases(4);
+		for (int i = 0; i < 4; i++) again.get(i).setClientKey("resend-" + i);
+		List<Long> retried = bulk.insertAll(again);
+
+		assertEquals(ids, retried.subList(0, 3));
+		assertFalse(ids.contains(retried.get(3)));
+		assertEquals(4, repo.count());
+	}
+}
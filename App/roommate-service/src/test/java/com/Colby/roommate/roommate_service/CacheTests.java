@@ -0,0 +1,178 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.config.CacheConfig;
+import com.colby.roommate.config.GuardedCache;
+import com.colby.roommate.model.Item;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import com.colby.roommate.service.PurchaseQueryService;
+import com.colby.roommate.service.PurchaseWriteService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = RoommateServiceApplication.class,
+	properties = "management.endpoints.web.exposure.include=metrics")
+@AutoConfigureMockMvc
+class CacheTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired PurchaseRepository repo;
+	@Autowired PurchaseQueryService queries;
+	@Autowired PurchaseWriteService writes;
+	@Autowired EntityManagerFactory emf;
+	@Autowired ObjectMapper json;
+
+	long id;
+	long milk;
+
+	@BeforeEach
+	void seed() {
+		repo.deleteAll();
+		Purchase p = new Purchase("Colby", "Safeway", Date.valueOf("2024-03-01"), 7.9);
+		p.addItem(new Item("milk", 3.5, 0, Map.of("Colby", 0.5, "Khanh", 0.5)));
+		p.addItem(new Item("eggs", 4.0, 0.1, Map.of("Khanh", 1.0)));
+		p = repo.save(p);
+		id = p.getId();
+		milk = p.getItems().get(0).getId();
+	}
+
+	private JsonNode read(MockHttpServletRequestBuilder req) throws Exception {
+		return json.readTree(mvc.perform(req).andExpect(status().isOk())
+			.andReturn().getResponse().getContentAsString());
+	}
+
+	private void write(MockHttpServletRequestBuilder req, String body) throws Exception {
+		mvc.perform(req.contentType(MediaType.APPLICATION_JSON).content(body)).andExpect(status().isOk());
+	}
+
+	private static double net(JsonNode balances, String name) {
+		for (JsonNode b : balances) if (b.get("roommate").asText().equals(name)) return b.get("net").asDouble();
+		return 0;
+	}
+
+	@Test
+	void repeatedReadsSkipTheDatabase() throws Exception {
+		for (String url : List.of("/api/purchases/" + id, "/api/purchases?buyer=Colby", "/api/balances")) {
+			read(get(url));
+			Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+			stats.clear();
+			read(get(url));
+			assertEquals(0, stats.getPrepareStatementCount(), url);
+		}
+	}
+
+	@Test
+	void everyWriteIsVisibleToTheNextRead() throws Exception {
+		String one = "/api/purchases/" + id;
+		// fill the caches
+		read(get(one));
+		read(get("/api/purchases"));
+		assertEquals(6.15, net(read(get("/api/balances")), "Colby"), 1e-9);
+
+		// item-only edit: the version is bumped without the purchase row changing
+		write(patch(one), "{\"version\":0,\"items\":[{\"id\":" + milk + ",\"cost\":5.5}]}");
+		assertEquals(5.5, read(get(one)).get("items").get(0).get("cost").asDouble());
+		assertEquals(7.15, net(read(get("/api/balances")), "Colby"), 1e-9);
+
+		write(patch(one), "{\"version\":1,\"store\":\"Costco\"}");
+		assertEquals("Costco", read(get(one)).get("store").asText());
+		assertEquals("Costco", read(get("/api/purchases")).get("content").get(0).get("store").asText());
+
+		ObjectNode current = (ObjectNode) read(get(one));
+		current.put("buyer", "Khanh");
+		write(put(one), current.toString());
+		assertEquals(0, read(get("/api/purchases?buyer=Colby")).get("totalElements").asLong());
+		assertEquals(-2.75, net(read(get("/api/balances")), "Colby"), 1e-9);
+
+		write(post("/api/purchases"), "{\"buyer\":\"Colby\",\"store\":\"Target\",\"date\":\"2024-04-01\","
+			+ "\"totalCost\":1,\"items\":[{\"description\":\"gum\",\"cost\":1,\"taxRate\":0,\"splits\":{\"Khanh\":1.0}}]}");
+		assertEquals(1, read(get("/api/purchases?buyer=Colby")).get("totalElements").asLong());
+
+		mvc.perform(delete(one)).andExpect(status().isOk());
+		mvc.perform(get(one)).andExpect(status().isNotFound());
+		assertEquals(1, read(get("/api/purchases")).get("totalElements").asLong());
+
+		// and a write that skips the services entirely
+		repo.deleteAll();
+		assertEquals(0, read(get("/api/purchases")).get("totalElements").asLong());
+		assertEquals(0, read(get("/api/balances")).size());
+	}
+
+	/** The race the guard exists for, played out by hand. */
+	@Test
+	void loadThatOverlapsAnEvictionIsNotStored() {
+		GuardedCache cache = new GuardedCache(new CaffeineCache("t", Caffeine.newBuilder().build()));
+		assertNull(cache.get(1L));        // reader misses and loads the old row
+		cache.evict(1L);                  // writer commits and evicts
+		cache.put(1L, "old");             // reader finishes
+		assertNull(cache.get(1L));
+		cache.put(1L, "new");
+		assertEquals("new", cache.get(1L).get());
+	}
+
+	@Test
+	void concurrentReadersNeverLeaveAnOldVersionCached() throws Exception {
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService readers = Executors.newFixedThreadPool(3);
+		List<Future<?>> loops = new ArrayList<>();
+		for (int r = 0; r < 3; r++) {
+			loops.add(readers.submit(() -> {
+				while (running.get()) queries.one(id);
+				return null;
+			}));
+		}
+		try {
+			for (long v = 0; v < 40; v++) {
+				PurchaseWriteService.Patch p = new PurchaseWriteService.Patch();
+				p.setVersion(v);
+				p.setStore("store " + v);
+				writes.patch(id, v, p);
+				Purchase after = queries.one(id).orElseThrow();
+				assertEquals(v + 1, after.getVersion());
+				assertEquals("store " + v, after.getStore());
+			}
+		} finally {
+			running.set(false);
+			for (Future<?> f : loops) f.get(10, TimeUnit.SECONDS);
+			readers.shutdown();
+		}
+	}
+
+	@Test
+	void hitsAndMissesAreMetered() throws Exception {
+		read(get("/api/purchases/" + id));
+		read(get("/api/purchases/" + id));
+		String tags = "?tag=cache:" + CacheConfig.PURCHASES + "&tag=result:";
+		assertTrue(read(get("/actuator/metrics/cache.gets" + tags + "hit"))
+			.get("measurements").get(0).get("value").asDouble() >= 1);
+		assertTrue(read(get("/actuator/metrics/cache.gets" + tags + "miss"))
+			.get("measurements").get(0).get("value").asDouble() >= 1);
+		read(get("/actuator/metrics/cache.evictions?tag=cache:" + CacheConfig.PURCHASES));
+	}
+}
@@ -0,0 +1,85 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.repo.PurchaseRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = RoommateServiceApplication.class)
+@AutoConfigureMockMvc
+class ChangeFeedTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired PurchaseRepository repo;
+	@Autowired ObjectMapper json;
+
+	private JsonNode call(MockHttpServletRequestBuilder req) throws Exception {
+		return json.readTree(mvc.perform(req)
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getContentAsString());
+	}
+
+	private JsonNode changes(long since, int limit) throws Exception {
+		return call(get("/api/purchases/changes?since=" + since + "&limit=" + limit));
+	}
+
+	private static String purchase(String store) {
+		return "{\"buyer\":\"Colby\",\"store\":\"" + store + "\",\"date\":\"2024-03-01\",\"totalCost\":3.5,"
+			+ "\"items\":[{\"description\":\"milk\",\"cost\":3.5,\"taxRate\":0,\"splits\":{\"Colby\":1.0}}]}";
+	}
+
+	@Test
+	void replicaSeesOnlyWhatChanged() throws Exception {
+		// other tests share the log; catch up to its head first
+		JsonNode head = changes(0, 1000);
+		while (head.get("more").asBoolean()) head = changes(head.get("cursor").asLong(), 1000);
+		long start = head.get("cursor").asLong();
+
+		JsonNode a = call(post("/api/purchases").contentType(MediaType.APPLICATION_JSON).content(purchase("A")));
+		JsonNode bulk = call(post("/api/purchases/bulk").contentType(MediaType.APPLICATION_JSON)
+			.content("[" + purchase("B") + "," + purchase("C") + "]"));
+		long b = bulk.get(0).asLong(), c = bulk.get(1).asLong();
+
+		JsonNode first = changes(start, 1000);
+		assertEquals(3, first.get("upserts").size());
+		assertEquals("milk", first.get("upserts").get(0).get("items").get(0).get("description").asText());
+		assertFalse(first.get("more").asBoolean());
+		long cursor = first.get("cursor").asLong();
+
+		// nothing new
+		assertEquals(0, changes(cursor, 1000).get("upserts").size());
+		assertEquals(cursor, changes(cursor, 1000).get("cursor").asLong());
+
+		mvc.perform(patch("/api/purchases/" + a.get("id").asLong()).contentType(MediaType.APPLICATION_JSON)
+			.content("{\"version\":0,\"store\":\"A2\"}")).andExpect(status().isOk());
+		mvc.perform(delete("/api/purchases/" + b)).andExpect(status().isOk());
+		mvc.perform(patch("/api/purchases/" + c).contentType(MediaType.APPLICATION_JSON)
+			.content("{\"version\":0,\"store\":\"C2\"}")).andExpect(status().isOk());
+		mvc.perform(patch("/api/purchases/" + c).contentType(MediaType.APPLICATION_JSON)
+			.content("{\"version\":1,\"store\":\"C3\"}")).andExpect(status().isOk());
+
+		JsonNode delta = changes(cursor, 1000);
+		assertEquals(2, delta.get("upserts").size());
+		assertEquals("A2", delta.get("upserts").get(0).get("store").asText());
+		assertEquals("C3", delta.get("upserts").get(1).get("store").asText());
+		assertEquals(b, delta.get("deleted").get(0).asLong());
+
+		// small pages walk the same log
+		JsonNode page = changes(cursor, 2);
+		assertTrue(page.get("more").asBoolean());
+		page = changes(page.get("cursor").asLong(), 2);
+		assertFalse(page.get("more").asBoolean());
+		assertEquals("C3", page.get("upserts").get(0).get("store").asText());
+	}
+}
@@ -0,0 +1,153 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.service.ChangeLog;
+import com.colby.roommate.service.ChangeStream;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = RoommateServiceApplication.class,
+	webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChangeStreamTests {
+
+	@LocalServerPort int port;
+	@Autowired ChangeLog log;
+	@Autowired ChangeStream stream;
+	@Autowired ObjectMapper json;
+
+	private final HttpClient http = HttpClient.newHttpClient();
+	private final List<Subscription> open = new ArrayList<>();
+
+	/** A stream being read in the background; completed events land in {@link #events}. */
+	private static final class Subscription implements Flow.Subscriber<String> {
+		final BlockingQueue<String[]> events = new LinkedBlockingQueue<>();
+		private String id, name, data;
+		private Flow.Subscription upstream;
+
+		@Override public void onSubscribe(Flow.Subscription s) {
+			upstream = s;
+			s.request(Long.MAX_VALUE);
+		}
+
+		@Override public void onNext(String line) {
+			if (line.isEmpty()) {
+				if (data != null) events.add(new String[] {id, name, data});
+				name = data = null;
+			} else if (line.startsWith("id:")) {
+				id = line.substring(3);
+			} else if (line.startsWith("event:")) {
+				name = line.substring(6);
+			} else if (line.startsWith("data:")) {
+				data = line.substring(5);
+			}
+		}
+
+		@Override public void onError(Throwable t) { }
+		@Override public void onComplete() { }
+
+		String[] next() throws InterruptedException {
+			String[] e = events.poll(10, TimeUnit.SECONDS);
+			assertNotNull(e, "no event within 10s");
+			return e;
+		}
+	}
+
+	private Subscription subscribe(String query, String lastEventId) {
+		HttpRequest.Builder req = HttpRequest.newBuilder(URI.create(url("/api/purchases/stream" + query)))
+			.header("Accept", "text/event-stream");
+		if (lastEventId != null) req.header("Last-Event-ID", lastEventId);
+		Subscription sub = new Subscription();
+		http.sendAsync(req.build(), HttpResponse.BodyHandlers.fromLineSubscriber(sub));
+		open.add(sub);
+		return sub;
+	}
+
+	@AfterEach
+	void close() {
+		for (Subscription s : open) {
+			if (s.upstream != null) s.upstream.cancel();
+		}
+	}
+
+	private String url(String path) {
+		return "http://localhost:" + port + path;
+	}
+
+	private JsonNode post(String path, String body) throws Exception {
+		HttpResponse<String> r = http.send(HttpRequest.newBuilder(URI.create(url(path)))
+			.header("Content-Type", "application/json")
+			.POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, r.statusCode(), r.body());
+		return json.readTree(r.body());
+	}
+
+	private static String purchase(String store) {
+		return "{\"buyer\":\"Colby\",\"store\":\"" + store + "\",\"date\":\"2024-03-01\",\"totalCost\":1,"
+			+ "\"items\":[{\"description\":\"tea\",\"cost\":1,\"taxRate\":0,\"splits\":{\"Colby\":1.0}}]}";
+	}
+
+	private void awaitSubscribers(int n) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+		while (stream.subscriberCount() < n) {
+			assertTrue(System.nanoTime() < deadline, "only " + stream.subscriberCount() + " subscribed");
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	void pushesCommitsAndResumesFromLastEventId() throws Exception {
+		long head = log.head();
+		Subscription live = subscribe("?since=" + head, null);
+		awaitSubscribers(1);
+
+		long id = post("/api/purchases", purchase("Live")).get("id").asLong();
+		String[] e = live.next();
+		assertEquals("changes", e[1]);
+		JsonNode page = json.readTree(e[2]);
+		assertEquals(id, page.get("upserts").get(0).get("id").asLong());
+		assertEquals("tea", page.get("upserts").get(0).get("items").get(0).get("description").asText());
+		assertEquals(page.get("cursor").asText(), e[0]);
+
+		// written while nobody listens, then picked up by a reconnect
+		long missed = post("/api/purchases", purchase("Missed")).get("id").asLong();
+		live.next();
+		Subscription resumed = subscribe("", e[0]);
+		JsonNode replay = json.readTree(resumed.next()[2]);
+		assertEquals(1, replay.get("upserts").size());
+		assertEquals(missed, replay.get("upserts").get(0).get("id").asLong());
+	}
+
+	@Test
+	void idleSubscribersDoNotHoldThreads() throws Exception {
+		// more than Tomcat's 200 request threads
+		int n = 300;
+		int before = stream.subscriberCount();
+		List<Subscription> subs = new ArrayList<>();
+		for (int i = 0; i < n; i++) subs.add(subscribe("", null));
+		awaitSubscribers(before + n);
+
+		HttpResponse<String> list = http.send(HttpRequest.newBuilder(URI.create(url("/api/purchases"))).build(),
+			HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, list.statusCode());
+
+		long id = post("/api/purchases", purchase("Fanout")).get("id").asLong();
+		for (Subscription s : subs) {
+			assertEquals(id, json.readTree(s.next()[2]).get("upserts").get(0).get("id").asLong());
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.service.BulkWriteService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mixed read/write HTTP load on {@code /api/purchases}, once with Tomcat's
+ * platform thread pool and once with the {@code virtual} profile, each
+ * against a fresh H2 file database. Excluded from the normal build; run
+ * with
+ * <pre>
+ *   mvn -Pbenchmark test -Dtest=LoadBenchmarkTests [-Dload.clients=400] [-Dload.seconds=60]
+ * </pre>
+ * The virtual run needs a Java 21+ JVM and is skipped on older ones. The
+ * clients share the machine with the server, so compare the two modes
+ * with each other rather than reading the numbers as absolute.
+ */
+@Tag("benchmark")
+class LoadBenchmarkTests {
+
+	static final int CLIENTS = Integer.getInteger("load.clients", 64);
+	/** Timed seconds per mode, split across {@link #ROUNDS}. */
+	static final int SECONDS = Integer.getInteger("load.seconds", 30);
+	static final int WARMUP_SECONDS = 10;
+	static final int ROUNDS = 3;
+	/** Purchases in the database before the run. */
+	static final int SEED = 5_000;
+
+	/** Out of 100: list a page, read one purchase, else create one. */
+	static final int LIST = 75, READ_ONE = 15;
+
+	private static final class Result {
+		final String mode;
+		final long requests, errors;
+		final double seconds;
+		final long[] latencies;
+
+		Result(String mode, long requests, long errors, double seconds, long[] latencies) {
+			this.mode = mode;
+			this.requests = requests;
+			this.errors = errors;
+			this.seconds = seconds;
+			this.latencies = latencies;
+		}
+
+		double percentileMillis(double p) {
+			if (latencies.length == 0) return 0;
+			int i = (int) Math.ceil(p / 100 * latencies.length) - 1;
+			return latencies[Math.max(i, 0)] / 1e6;
+		}
+
+		static Result merge(List<Result> rounds) {
+			long requests = 0, errors = 0;
+			double seconds = 0;
+			long[] all = new long[0];
+			for (Result r : rounds) {
+				requests += r.requests;
+				errors += r.errors;
+				seconds += r.seconds;
+				int at = all.length;
+				all = Arrays.copyOf(all, at + r.latencies.length);
+				System.arraycopy(r.latencies, 0, all, at, r.latencies.length);
+			}
+			Arrays.sort(all);
+			return new Result(rounds.get(0).mode, requests, errors, seconds, all);
+		}
+
+		@Override public String toString() {
+			return String.format("  %-9s %,10.0f req/s  p50 %7.2f ms  p99 %8.2f ms  max %8.2f ms  errors %d",
+				mode, requests / seconds, percentileMillis(50), percentileMillis(99),
+				percentileMillis(100), errors);
+		}
+	}
+
+	@Test
+	void platformVersusVirtualThreads() throws Exception {
+		List<String> modes = new ArrayList<>(List.of("platform"));
+		if (Runtime.version().feature() >= 21) {
+			modes.add("virtual");
+		} else {
+			System.out.println("virtual threads need Java 21+; running on " + Runtime.version());
+		}
+		List<ConfigurableApplicationContext> apps = new ArrayList<>();
+		try {
+			List<Load> loads = new ArrayList<>();
+			for (String mode : modes) {
+				ConfigurableApplicationContext app = start(mode);
+				apps.add(app);
+				int port = app.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+				List<Long> ids = app.getBean(BulkWriteService.class).insertAll(BulkWriteTests.purchases(SEED));
+				loads.add(new Load(URI.create("http://localhost:" + port + "/api/purchases"), ids));
+			}
+			// both apps share this JVM's JIT, so warm every one first and then
+			// alternate the timed rounds; otherwise whichever runs last wins
+			for (Load load : loads) load.run("warm-up", WARMUP_SECONDS);
+			List<List<Result>> rounds = new ArrayList<>();
+			for (int i = 0; i < modes.size(); i++) rounds.add(new ArrayList<>());
+			for (int r = 0; r < ROUNDS; r++) {
+				for (int i = 0; i < modes.size(); i++) {
+					rounds.get(i).add(loads.get(i).run(modes.get(i), SECONDS / ROUNDS));
+				}
+			}
+			System.out.printf("%d clients, %ds per mode in %d rounds, %d%% list / %d%% get / %d%% create,"
+				+ " %,d purchases seeded%n",
+				CLIENTS, SECONDS, ROUNDS, LIST, READ_ONE, 100 - LIST - READ_ONE, SEED);
+			for (List<Result> r : rounds) System.out.println(Result.merge(r));
+		} finally {
+			apps.forEach(ConfigurableApplicationContext::close);
+		}
+	}
+
+	private static ConfigurableApplicationContext start(String mode) {
+		SpringApplicationBuilder builder = new SpringApplicationBuilder(RoommateServiceApplication.class)
+			.properties(
+				"server.port=0",
+				"spring.datasource.url=jdbc:h2:file:./target/load/" + mode,
+				"spring.datasource.hikari.pool-name=" + mode,
+				"spring.jpa.properties.hibernate.generate_statistics=false");
+		if (mode.equals("virtual")) builder.profiles("virtual");
+		return builder.run();
+	}
+
+	/** Closed-loop clients: each sends its next request as soon as the last one answers. */
+	private static final class Load {
+		final URI base;
+		final long[] ids;
+		final HttpClient http = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+
+		Load(URI base, List<Long> ids) {
+			this.base = base;
+			this.ids = ids.stream().mapToLong(Long::longValue).toArray();
+		}
+
+		Result run(String mode, int seconds) throws InterruptedException {
+			long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+			long[][] perClient = new long[CLIENTS][];
+			int[] counts = new int[CLIENTS];
+			AtomicInteger errors = new AtomicInteger();
+			Thread[] clients = new Thread[CLIENTS];
+			long t0 = System.nanoTime();
+			for (int c = 0; c < CLIENTS; c++) {
+				int client = c;
+				clients[c] = new Thread(() -> {
+					long[] lat = new long[1024];
+					int n = 0;
+					ThreadLocalRandom rnd = ThreadLocalRandom.current();
+					while (System.nanoTime() < deadline) {
+						HttpRequest req = next(rnd);
+						long start = System.nanoTime();
+						try {
+							int status = http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+							if (status != 200) errors.incrementAndGet();
+						} catch (Exception e) {
+							errors.incrementAndGet();
+							continue;
+						}
+						if (n == lat.length) lat = Arrays.copyOf(lat, n * 2);
+						lat[n++] = System.nanoTime() - start;
+					}
+					perClient[client] = lat;
+					counts[client] = n;
+				}, "load-" + c);
+				clients[c].start();
+			}
+			for (Thread t : clients) t.join();
+			double elapsed = (System.nanoTime() - t0) / 1e9;
+
+			int total = 0;
+			for (int n : counts) total += n;
+			long[] all = new long[total];
+			for (int c = 0, at = 0; c < CLIENTS; at += counts[c], c++) {
+				System.arraycopy(perClient[c], 0, all, at, counts[c]);
+			}
+			Arrays.sort(all);
+			return new Result(mode, total, errors.get(), elapsed, all);
+		}
+
+		private HttpRequest next(ThreadLocalRandom rnd) {
+			int op = rnd.nextInt(100);
+			if (op < LIST) {
+				String query = rnd.nextBoolean() ? "?size=50" : "?size=50&buyer=Colby&page=" + rnd.nextInt(5);
+				return HttpRequest.newBuilder(URI.create(base + query)).build();
+			}
+			if (op < LIST + READ_ONE) {
+				return HttpRequest.newBuilder(URI.create(base + "/" + ids[rnd.nextInt(ids.length)])).build();
+			}
+			return HttpRequest.newBuilder(base)
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(
+					"{\"buyer\":\"Khanh\",\"store\":\"Load\",\"date\":\"2024-05-0" + (1 + rnd.nextInt(9))
+					+ "\",\"totalCost\":2,\"items\":[{\"description\":\"soap\",\"cost\":2,\"taxRate\":0,"
+					+ "\"splits\":{\"Khanh\":0.5,\"Colby\":0.5}}]}"))
+				.build();
+		}
+	}
+}
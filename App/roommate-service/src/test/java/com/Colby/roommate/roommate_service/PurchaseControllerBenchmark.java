@@ -0,0 +1,96 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.service.BulkWriteService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Requests per second through the full MVC stack (filters, binding,
+ * caching, JSON) against an in-memory H2, without a socket in the way.
+ * Run it through {@link RestBenchmarkTests}, which writes JMH's JSON.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseControllerBenchmark {
+	static final String CREATE = "{\"buyer\":\"Khanh\",\"store\":\"Bench\",\"date\":\"2024-05-01\",\"totalCost\":2,"
+		+ "\"items\":[{\"description\":\"soap\",\"cost\":2,\"taxRate\":0,\"splits\":{\"Khanh\":0.5,\"Colby\":0.5}}]}";
+
+	/** Purchases in the database before measuring. */
+	@Param({"1000", "10000"})
+	public int seeded;
+
+	private ConfigurableApplicationContext app;
+	private MockMvc mvc;
+	private long[] ids;
+
+	@Setup
+	public void start() {
+		app = new SpringApplicationBuilder(RoommateServiceApplication.class)
+			.properties(
+				"server.port=0",
+				"spring.jpa.properties.hibernate.generate_statistics=false",
+				"logging.level.root=warn")
+			.run();
+		mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) app).build();
+		List<Long> saved = app.getBean(BulkWriteService.class).insertAll(BulkWriteTests.purchases(seeded));
+		ids = saved.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	@TearDown
+	public void stop() {
+		app.close();
+	}
+
+	private MvcResult ok(MvcResult r) {
+		if (r.getResponse().getStatus() != 200) {
+			throw new IllegalStateException(r.getRequest().getRequestURI() + " -> " + r.getResponse().getStatus());
+		}
+		return r;
+	}
+
+	@Benchmark
+	public MvcResult listPage() throws Exception {
+		return ok(mvc.perform(get("/api/purchases?size=50")).andReturn());
+	}
+
+	@Benchmark
+	public MvcResult listFiltered() throws Exception {
+		int page = ThreadLocalRandom.current().nextInt(5);
+		return ok(mvc.perform(get("/api/purchases?size=50&buyer=Colby&page=" + page)).andReturn());
+	}
+
+	@Benchmark
+	public MvcResult getOne() throws Exception {
+		long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+		return ok(mvc.perform(get("/api/purchases/" + id)).andReturn());
+	}
+
+	@Benchmark
+	public MvcResult create() throws Exception {
+		return ok(mvc.perform(post("/api/purchases").contentType(MediaType.APPLICATION_JSON).content(CREATE))
+			.andReturn());
+	}
+
+	@Benchmark
+	public MvcResult balances() throws Exception {
+		return ok(mvc.perform(get("/api/balances")).andReturn());
+	}
+}
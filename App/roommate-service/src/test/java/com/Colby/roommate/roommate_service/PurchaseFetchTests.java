@@ -0,0 +1,65 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.model.Item;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import com.colby.roommate.service.PurchaseQueryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = RoommateServiceApplication.class)
+class PurchaseFetchTests {
+
+	static final int PURCHASES = 1000;
+
+	@Autowired PurchaseRepository repo;
+	@Autowired PurchaseQueryService queries;
+	@Autowired EntityManagerFactory emf;
+	@Autowired ObjectMapper json;
+
+	@Test
+	void listingRunsInConstantStatements() throws Exception {
+		repo.deleteAll();
+		List<Purchase> all = new ArrayList<>();
+		for (int i = 0; i < PURCHASES; i++) {
+			Purchase p = new Purchase(i % 2 == 0 ? "Colby" : "Khanh", "Safeway",
+				Date.valueOf(LocalDate.of(2024, 1, 1).plusDays(i % 90)), 0);
+			p.addItem(new Item("milk", 3.5, 0, Map.of("Colby", 0.5, "Khanh", 0.5)));
+			p.addItem(new Item("eggs", 4.0, 0.1, Map.of("Jehosh", 1.0)));
+			all.add(p);
+		}
+		repo.saveAll(all);
+
+		Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		Page<Purchase> page = queries.page(Specification.allOf(),
+			PageRequest.of(0, PURCHASES, Sort.by("date", "id")));
+		// serializing outside the transaction fails on any graph left lazy
+		String body = json.writeValueAsString(page.getContent());
+
+		assertEquals(PURCHASES, page.getContent().size());
+		assertTrue(body.contains("\"Jehosh\":1.0"));
+		// purchases, count, items, splits
+		assertTrue(stats.getPrepareStatementCount() <= 4,
+			"statements: " + stats.getPrepareStatementCount());
+		assertEquals(2 * PURCHASES, page.getContent().stream().mapToInt(p -> p.getItems().size()).sum());
+	}
+}
@@ -0,0 +1,104 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = RoommateServiceApplication.class)
+@AutoConfigureMockMvc
+class PurchaseListingTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired PurchaseRepository repo;
+	@Autowired ObjectMapper json;
+
+	@BeforeEach
+	void seed() {
+		repo.deleteAll();
+		String[] buyers = {"Colby", "Khanh", "Jehosh"};
+		List<Purchase> all = new ArrayList<>();
+		for (int i = 0; i < 47; i++) {
+			// several purchases per day, so pages split inside a date
+			Date day = i == 46 ? null : Date.valueOf(LocalDate.of(2024, 1, 1).plusDays(i / 4));
+			all.add(new Purchase(buyers[i % 3], i % 2 == 0 ? "Safeway" : "Costco", day, i));
+		}
+		repo.saveAll(all);
+	}
+
+	private JsonNode page(String query) throws Exception {
+		String body = mvc.perform(get("/api/purchases?" + query))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getContentAsString();
+		return json.readTree(body);
+	}
+
+	private static List<Long> ids(JsonNode page) {
+		List<Long> out = new ArrayList<>();
+		page.get("content").forEach(p -> out.add(p.get("id").asLong()));
+		return out;
+	}
+
+	@Test
+	void offsetPagesCarryTotals() throws Exception {
+		JsonNode first = page("size=10");
+		assertEquals(47, first.get("totalElements").asLong());
+		assertEquals(5, first.get("totalPages").asLong());
+		assertEquals(10, first.get("content").size());
+		assertEquals(7, page("size=10&page=4").get("content").size());
+	}
+
+	@Test
+	void cursorWalkMatchesOffsetOrder() throws Exception {
+		for (String sort : new String[] {"date,desc", "date,asc"}) {
+			List<Long> expected = ids(page("size=500&sort=" + sort));
+			List<Long> walked = new ArrayList<>();
+			JsonNode p = page("size=7&sort=" + sort);
+			walked.addAll(ids(p));
+			while (!p.get("nextCursor").isNull()) {
+				p = page("size=7&sort=" + sort + "&cursor=" + p.get("nextCursor").asText());
+				walked.addAll(ids(p));
+				assertEquals(47, p.get("totalElements").asLong());
+			}
+			assertEquals(expected, walked, sort);
+			assertEquals(47, walked.size());
+		}
+	}
+
+	@Test
+	void filtersCombine() throws Exception {
+		JsonNode p = page("buyer=Colby&store=Safeway&from=2024-01-03&to=2024-01-08&size=500");
+		for (JsonNode row : p.get("content")) {
+			assertEquals("Colby", row.get("buyer").asText());
+			assertEquals("Safeway", row.get("store").asText());
+			String date = row.get("date").asText();
+			assertTrue(date.compareTo("2024-01-03") >= 0 && date.compareTo("2024-01-08") <= 0, date);
+		}
+		assertEquals(p.get("content").size(), p.get("totalElements").asLong());
+		assertTrue(p.get("totalElements").asLong() > 0);
+	}
+
+	@Test
+	void rejectsBadParameters() throws Exception {
+		mvc.perform(get("/api/purchases?size=0")).andExpect(status().isBadRequest());
+		mvc.perform(get("/api/purchases?sort=items")).andExpect(status().isBadRequest());
+		mvc.perform(get("/api/purchases?cursor=%21%21")).andExpect(status().isBadRequest());
+		mvc.perform(get("/api/purchases?sort=buyer&cursor=OjE")).andExpect(status().isBadRequest());
+	}
+}
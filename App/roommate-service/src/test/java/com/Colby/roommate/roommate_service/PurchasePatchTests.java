@@ -0,0 +1,176 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.model.Item;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(classes = RoommateServiceApplication.class)
+@AutoConfigureMockMvc
+class PurchasePatchTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired PurchaseRepository repo;
+	@Autowired EntityManagerFactory emf;
+
+	long id;
+	long milk;
+
+	@BeforeEach
+	void seed() {
+		repo.deleteAll();
+		Purchase p = new Purchase("Colby", "Safeway", Date.valueOf("2024-03-01"), 7.9);
+		p.addItem(new Item("milk", 3.5, 0, Map.of("Colby", 0.5, "Khanh", 0.5)));
+		p.addItem(new Item("eggs", 4.0, 0.1, Map.of("Khanh", 1.0)));
+		p = repo.save(p);
+		id = p.getId();
+		milk = p.getItems().get(0).getId();
+	}
+
+	private void send(String body, int status) throws Exception {
+		mvc.perform(patch("/api/purchases/" + id).contentType(MediaType.APPLICATION_JSON).content(body))
+			.andExpect(status().is(status));
+	}
+
+	@Test
+	void getIsTaggedWithVersion() throws Exception {
+		mvc.perform(get("/api/purchases/" + id))
+			.andExpect(status().isOk())
+			.andExpect(header().string("ETag", "\"0\""))
+			.andExpect(jsonPath("$.items.length()").value(2));
+		mvc.perform(get("/api/purchases/" + id).header("If-None-Match", "\"0\""))
+			.andExpect(status().isNotModified());
+		mvc.perform(get("/api/purchases/" + (id + 999))).andExpect(status().isNotFound());
+	}
+
+	@Test
+	void collectionGetsAnswer304WhenUnchanged() throws Exception {
+		String etag = mvc.perform(get("/api/purchases"))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getHeader("ETag");
+		assertNotNull(etag);
+		mvc.perform(get("/api/purchases").header("If-None-Match", etag))
+			.andExpect(status().isNotModified());
+		send("{\"version\":0,\"store\":\"Costco\"}", 200);
+		mvc.perform(get("/api/purchases").header("If-None-Match", etag))
+			.andExpect(status().isOk());
+	}
+
+	@Test
+	void staleVersionIsAConflict() throws Exception {
+		send("{\"version\":0,\"store\":\"Costco\"}", 200);
+		send("{\"version\":0,\"store\":\"Target\"}", 409);
+		assertEquals("Costco", repo.findById(id).orElseThrow().getStore());
+		mvc.perform(put("/api/purchases/" + id).contentType(MediaType.APPLICATION_JSON)
+				.content("{\"version\":0,\"buyer\":\"Khanh\",\"store\":\"Target\",\"items\":[]}"))
+			.andExpect(status().isConflict());
+	}
+
+	@Test
+	void itemEditTouchesOnlyThatRow() throws Exception {
+		Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		send("{\"version\":0,\"items\":[{\"id\":" + milk + ",\"cost\":3.75}]}", 200);
+		assertEquals(0, stats.getEntityDeleteCount());
+		// only the change log row
+		assertEquals(1, stats.getEntityInsertCount());
+		assertEquals(0, stats.getCollectionRecreateCount());
+		// the item row; the purchase's version bump is not an entity update
+		assertEquals(1, stats.getEntityUpdateCount());
+
+		mvc.perform(get("/api/purchases/" + id))
+			.andExpect(header().string("ETag", "\"1\""))
+			.andExpect(jsonPath("$.items[0].cost").value(3.75))
+			.andExpect(jsonPath("$.items[0].splits.Khanh").value(0.5));
+	}
+
+	@Test
+	void ifMatchSuppliesTheVersion() throws Exception {
+		mvc.perform(patch("/api/purchases/" + id).header("If-Match", "\"0\"")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"items\":[{\"description\":\"bread\",\"cost\":2.5}],\"removeItems\":[" + milk + "]}"))
+			.andExpect(status().isOk())
+			.andExpect(header().string("ETag", "\"1\""))
+			.andExpect(jsonPath("$.items.length()").value(2))
+			.andExpect(jsonPath("$.items[1].splits.Colby").value(1.0));
+		send("{\"store\":\"Costco\"}", 400);
+	}
+
+	@Test
+	void postOfACopiedPurchaseCreatesNewRows() throws Exception {
+		String copy = mvc.perform(get("/api/purchases/" + id)).andReturn().getResponse().getContentAsString();
+		mvc.perform(post("/api/purchases").contentType(MediaType.APPLICATION_JSON).content(copy))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.items.length()").value(2));
+		assertEquals(2, repo.count());
+		mvc.perform(get("/api/purchases/" + id)).andExpect(jsonPath("$.items.length()").value(2));
+	}
+
+	@Test
+	void putMovesTheVersionByOne() throws Exception {
+		String body = "{\"version\":%d,\"buyer\":\"Khanh\",\"store\":\"%s\",\"items\":[{\"id\":" + milk
+			+ ",\"description\":\"milk\",\"cost\":%s,\"taxRate\":0,\"splits\":{\"Khanh\":1.0}}]}";
+		// the purchase row changes
+		mvc.perform(put("/api/purchases/" + id).contentType(MediaType.APPLICATION_JSON)
+				.content(String.format(body, 0, "Target", "3.5")))
+			.andExpect(status().isOk())
+			.andExpect(header().string("ETag", "\"1\""));
+		// only the item row changes
+		mvc.perform(put("/api/purchases/" + id).contentType(MediaType.APPLICATION_JSON)
+				.content(String.format(body, 1, "Target", "3.75")))
+			.andExpect(status().isOk())
+			.andExpect(header().string("ETag", "\"2\""));
+		assertEquals(2, repo.findById(id).orElseThrow().getVersion());
+	}
+
+	@Test
+	void concurrentPutAndPatchDoNotDeadlock() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		try {
+			for (int v = 0; v < 20; ) {
+				String putBody = "{\"version\":" + v + ",\"buyer\":\"Khanh\",\"store\":\"Put " + v
+					+ "\",\"items\":[{\"id\":" + milk + ",\"description\":\"milk\",\"cost\":3.5,"
+					+ "\"taxRate\":0,\"splits\":{\"Khanh\":1.0}}]}";
+				String patchBody = "{\"version\":" + v + ",\"store\":\"Patch " + v + "\"}";
+				List<Future<Integer>> calls = new ArrayList<>();
+				calls.add(pool.submit(() -> mvc.perform(put("/api/purchases/" + id)
+					.contentType(MediaType.APPLICATION_JSON).content(putBody)).andReturn().getResponse().getStatus()));
+				calls.add(pool.submit(() -> mvc.perform(patch("/api/purchases/" + id)
+					.contentType(MediaType.APPLICATION_JSON).content(patchBody)).andReturn().getResponse().getStatus()));
+				int ok = 0;
+				for (Future<Integer> call : calls) {
+					int status = call.get(10, TimeUnit.SECONDS);
+					assertTrue(status == 200 || status == 409, "status " + status);
+					if (status == 200) ok++;
+				}
+				assertEquals(1, ok);
+				v = (int) repo.findById(id).orElseThrow().getVersion();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.repo.PurchaseRepository;
+import com.colby.roommate.service.ChangeStream;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.Item;
+import model.Purchase;
+import model.PurchaseManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import util.RemoteDataStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The desktop client against the running service. Each store's manager
+ * is owned by its own single thread, standing in for the EDT; a proxy in
+ * front of the service can go offline, lose or hold bulk responses.
+ */
+@SpringBootTest(classes = RoommateServiceApplication.class,
+	webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class RemoteDataStoreTests {
+
+	@LocalServerPort int port;
+	@Autowired PurchaseRepository repo;
+	@Autowired ChangeStream stream;
+	@TempDir Path dir;
+
+	private final List<Store> stores = new ArrayList<>();
+	private Proxy proxy;
+
+	/** A store, the manager it loaded and the thread that owns both. */
+	private final class Store {
+		final Path replica;
+		final ExecutorService owner = Executors.newSingleThreadExecutor();
+		final RemoteDataStore remote;
+		final PurchaseManager manager;
+
+		Store(String name, URI server) throws Exception {
+			replica = dir.resolve(name + ".replica.json");
+			remote = new RemoteDataStore(server, replica, owner);
+			manager = owner.submit(remote::load).get();
+			stores.add(this);
+		}
+
+		<T> T call(Callable<T> task) throws Exception {
+			return owner.submit(task).get(10, TimeUnit.SECONDS);
+		}
+
+		void run(Runnable task) throws Exception {
+			owner.submit(task).get(10, TimeUnit.SECONDS);
+		}
+
+		RemoteDataStore.SyncResult sync() throws Exception {
+			return remote.saveAndSync().get(20, TimeUnit.SECONDS);
+		}
+
+		List<Purchase> purchases() throws Exception {
+			return call(() -> new ArrayList<>(manager.getPurchases()));
+		}
+
+		Purchase only() throws Exception {
+			List<Purchase> all = purchases();
+			assertEquals(1, all.size(), "purchases: " + all.size());
+			return all.get(0);
+		}
+
+		void close() throws IOException {
+			remote.close();
+			remote.saveNow();
+			owner.shutdownNow();
+		}
+	}
+
+	/**
+	 * Forwards to the service, and can instead answer 503 to everything,
+	 * answer a bulk create with 502 once the service has stored it, or
+	 * hold a bulk response back until a latch opens.
+	 */
+	private final class Proxy {
+		final HttpServer server;
+		final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		volatile boolean offline;
+		volatile boolean loseBulk;
+		volatile CountDownLatch holdBulk;
+
+		Proxy() throws IOException {
+			server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			server.createContext("/", this::forward);
+			server.setExecutor(Executors.newCachedThreadPool());
+			server.start();
+		}
+
+		URI uri() {
+			return URI.create("http://localhost:" + server.getAddress().getPort() + "/");
+		}
+
+		private void forward(HttpExchange ex) throws IOException {
+			try (ex) {
+				if (offline) {
+					ex.sendResponseHeaders(503, -1);
+					return;
+				}
+				byte[] body = ex.getRequestBody().readAllBytes();
+				HttpRequest.Builder req = HttpRequest.newBuilder(
+						URI.create("http://localhost:" + port + ex.getRequestURI()))
+					.method(ex.getRequestMethod(), body.length == 0
+						? HttpRequest.BodyPublishers.noBody()
+						: HttpRequest.BodyPublishers.ofByteArray(body));
+				for (String h : List.of("Content-Type", "Accept")) {
+					String v = ex.getRequestHeaders().getFirst(h);
+					if (v != null) req.header(h, v);
+				}
+				HttpResponse<InputStream> r = client.send(req.build(), HttpResponse.BodyHandlers.ofInputStream());
+				boolean bulk = ex.getRequestURI().getPath().endsWith("/bulk");
+				if (bulk && loseBulk) {
+					r.body().readAllBytes();
+					ex.sendResponseHeaders(502, -1);
+					return;
+				}
+				CountDownLatch hold = holdBulk;
+				if (bulk && hold != null) hold.await(10, TimeUnit.SECONDS);
+				r.headers().firstValue("Content-Type").ifPresent(v -> ex.getResponseHeaders().add("Content-Type", v));
+				ex.sendResponseHeaders(r.statusCode(), 0);
+				// copied as it arrives, so the change stream stays live
+				try (InputStream in = r.body(); OutputStream out = ex.getResponseBody()) {
+					byte[] buf = new byte[8192];
+					for (int n; (n = in.read(buf)) > 0; ) {
+						out.write(buf, 0, n);
+						out.flush();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@BeforeEach
+	void start() throws IOException {
+		repo.deleteAll();
+		proxy = new Proxy();
+	}
+
+	@AfterEach
+	void stop() throws IOException {
+		for (Store s : stores) s.close();
+		proxy.server.stop(0);
+	}
+
+	private URI server() {
+		return URI.create("http://localhost:" + port + "/");
+	}
+
+	private static Purchase purchase(String store, long cents) {
+		Purchase p = new Purchase("Colby", store, new Date(), cents);
+		p.addItem(new Item("tea", cents, 0, Map.of("Colby", 0.5, "Khanh", 0.5)));
+		return p;
+	}
+
+	private void awaitSubscribers(int n) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+		while (stream.subscriberCount() < n) {
+			assertTrue(System.nanoTime() < deadline, "only " + stream.subscriberCount() + " subscribed");
+			Thread.sleep(20);
+		}
+	}
+
+	@Test
+	void createsArePushedAndTakeTheServerIds() throws Exception {
+		Store a = new Store("a", server());
+		a.run(() -> {
+			for (int i = 0; i < 3; i++) a.manager.addPurchase(purchase("Safeway " + i, 100 + i));
+		});
+		assertEquals(3, a.call(a.remote::pendingChanges));
+
+		RemoteDataStore.SyncResult r = a.sync();
+		assertEquals(3, r.pushed);
+		assertEquals(0, a.call(a.remote::pendingChanges));
+		Set<Long> ids = new HashSet<>();
+		for (Purchase p : a.purchases()) ids.add(p.getId());
+		assertFalse(ids.contains(null));
+		assertEquals(3, ids.size());
+		assertEquals(3, repo.count());
+		assertEquals(0, a.sync().pushed);
+
+		Store b = new Store("b", server());
+		b.sync();
+		Set<Long> pulled = new HashSet<>();
+		for (Purchase p : b.purchases()) pulled.add(p.getId());
+		assertEquals(ids, pulled);
+	}
+
+	@Test
+	void queuedChangesSurviveARestartWhileOffline() throws Exception {
+		proxy.offline = true;
+		Store a = new Store("a", proxy.uri());
+		a.run(() -> {
+			a.manager.addPurchase(purchase("Safeway", 100));
+			a.manager.addPurchase(purchase("Target", 200));
+			a.manager.addPurchase(purchase("Costco", 300));
+			a.manager.setPurchase(1, purchase("Target, edited", 250));
+			a.manager.removePurchase(2);
+		});
+		assertThrows(ExecutionException.class, () -> a.remote.saveAndSync().get(20, TimeUnit.SECONDS));
+		stores.remove(a);
+		a.close();
+
+		Store again = new Store("a", proxy.uri());
+		List<Purchase> queued = again.purchases();
+		assertEquals(List.of("Safeway", "Target, edited"), queued.stream().map(Purchase::getStore).toList());
+		assertEquals(2, again.call(again.remote::pendingChanges));
+
+		proxy.offline = false;
+		assertEquals(2, again.sync().pushed);
+		assertEquals(2, repo.count());
+		// the failed batch may have been stored, so it goes out once more as edits
+		assertEquals(2, again.call(again.remote::pendingChanges));
+		again.sync();
+		assertEquals(0, again.call(again.remote::pendingChanges));
+		assertEquals(2, repo.count());
+	}
+
+	@Test
+	void aLongLogIsCompactedWithoutLosingTheQueue() throws Exception {
+		proxy.offline = true;
+		Store a = new Store("a", proxy.uri());
+		// well past a megabyte of log
+		a.run(() -> {
+			for (int i = 0; i < 5000; i++) a.manager.addPurchase(purchase("Store " + i, i));
+		});
+		a.remote.saveNow();
+		assertTrue(Files.exists(a.replica), "no compacted replica");
+		assertTrue(Files.size(a.replica.resolveSibling("a.replica.log")) < 1 << 10);
+		a.run(() -> a.manager.removePurchase(0));
+		stores.remove(a);
+		a.close();
+
+		Store again = new Store("a", proxy.uri());
+		assertEquals(4999, again.purchases().size());
+		assertEquals("Store 1", again.purchases().get(0).getStore());
+		proxy.offline = false;
+		assertEquals(4999, again.sync().pushed);
+		assertEquals(4999, repo.count());
+	}
+
+	@Test
+	void aConflictingEditGivesWayToTheServerCopy() throws Exception {
+		Store a = new Store("a", server());
+		a.run(() -> a.manager.addPurchase(purchase("Safeway", 100)));
+		a.sync();
+		Store b = new Store("b", server());
+		b.sync();
+
+		b.run(() -> b.manager.setPurchase(0, purchase("Safeway, per B", 120)));
+		assertEquals(1, b.sync().pushed);
+		a.run(() -> a.manager.setPurchase(0, purchase("Safeway, per A", 130)));
+		RemoteDataStore.SyncResult r = a.sync();
+
+		assertEquals(1, r.conflicts);
+		assertEquals("Safeway, per B", a.only().getStore());
+		assertEquals(0, a.call(a.remote::pendingChanges));
+		assertEquals(b.only().getVersion(), a.only().getVersion());
+	}
+
+	@Test
+	void aLocalDeleteIsNotUndoneByAnEditPulledBeforeItIsPushed() throws Exception {
+		Store a = new Store("a", server());
+		a.run(() -> a.manager.addPurchase(purchase("Safeway", 100)));
+		a.sync();
+		Store b = new Store("b", server());
+		b.sync();
+
+		int before = stream.subscriberCount();
+		CountDownLatch pulled = new CountDownLatch(1);
+		a.remote.listen(pulled::countDown);
+		awaitSubscribers(before + 1);
+		a.run(() -> a.manager.removePurchase(0));
+		b.run(() -> b.manager.setPurchase(0, purchase("Safeway, edited", 150)));
+		b.sync();
+		assertTrue(pulled.await(10, TimeUnit.SECONDS), "edit never streamed");
+
+		assertTrue(a.purchases().isEmpty());
+		assertEquals(1, a.call(a.remote::pendingChanges));
+		a.sync();
+		assertEquals(0, repo.count());
+		b.sync();
+		assertTrue(b.purchases().isEmpty());
+	}
+
+	@Test
+	void theStreamedEchoOfAnInFlightCreateIsAdopted() throws Exception {
+		Store a = new Store("a", proxy.uri());
+		// start the stream at the head of the log
+		a.sync();
+		int before = stream.subscriberCount();
+		CountDownLatch echoed = new CountDownLatch(1);
+		a.remote.listen(echoed::countDown);
+		awaitSubscribers(before + 1);
+
+		// the bulk response only comes back once the stream has delivered the create
+		proxy.holdBulk = echoed;
+		a.run(() -> a.manager.addPurchase(purchase("Safeway", 100)));
+		a.sync();
+
+		assertEquals(0, echoed.getCount(), "echo never arrived");
+		Purchase p = a.only();
+		assertEquals(repo.findAll().get(0).getId(), p.getId());
+		assertEquals(0, a.call(a.remote::pendingChanges));
+		assertEquals(0, a.sync().pushed);
+		assertEquals(1, repo.count());
+	}
+
+	@Test
+	void aCreateStoredDespiteAFailedBatchIsNotDuplicated() throws Exception {
+		Store a = new Store("a", proxy.uri());
+		// start the stream at the head of the log
+		a.sync();
+		int before = stream.subscriberCount();
+		CountDownLatch echoed = new CountDownLatch(1);
+		a.remote.listen(echoed::countDown);
+		awaitSubscribers(before + 1);
+
+		proxy.loseBulk = true;
+		a.run(() -> a.manager.addPurchase(purchase("Safeway", 100)));
+		assertThrows(ExecutionException.class, () -> a.remote.saveAndSync().get(20, TimeUnit.SECONDS));
+		assertTrue(echoed.await(10, TimeUnit.SECONDS), "create never streamed");
+		Long id = a.only().getId();
+		assertNotNull(id);
+
+		proxy.loseBulk = false;
+		a.sync();
+		assertEquals(id, a.only().getId());
+		assertEquals(1, repo.count());
+	}
+}
@@ -0,0 +1,47 @@
+package com.Colby.roommate.roommate_service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs {@link PurchaseControllerBenchmark} under JMH and writes the
+ * results to {@code target/jmh-rest.json}. Excluded from the normal
+ * build; run with
+ * <pre>
+ *   mvn -Pbenchmark test -Dtest=RestBenchmarkTests [-Djmh.iterations=5] [-Djmh.seconds=2] [-Djmh.seeded=1000]
+ * </pre>
+ * and compare two result files with the benchmarks module's
+ * {@code bench.CompareResults}.
+ */
+@Tag("benchmark")
+class RestBenchmarkTests {
+
+	@Test
+	void purchaseControllerThroughput() throws Exception {
+		ChainedOptionsBuilder options = new OptionsBuilder()
+			.include(PurchaseControllerBenchmark.class.getName())
+			.resultFormat(ResultFormatType.JSON)
+			.result("target/jmh-rest.json");
+		Integer iterations = Integer.getInteger("jmh.iterations");
+		if (iterations != null) options.warmupIterations(iterations).measurementIterations(iterations);
+		Integer seconds = Integer.getInteger("jmh.seconds");
+		if (seconds != null) {
+			options.warmupTime(TimeValue.seconds(seconds)).measurementTime(TimeValue.seconds(seconds));
+		}
+		String seeded = System.getProperty("jmh.seeded");
+		if (seeded != null) options.param("seeded", seeded.split(","));
+
+		Collection<RunResult> results = new Runner(options.build()).run();
+		assertFalse(results.isEmpty());
+	}
+}
@@ -1,9 +1,10 @@
 package com.Colby.roommate.roommate_service;
 
+import com.colby.roommate.RoommateServiceApplication;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(classes = RoommateServiceApplication.class)
 class RoommateServiceApplicationTests {
 
 	@Test
@@ -0,0 +1,90 @@
+package com.Colby.roommate.roommate_service;
+
+import com.colby.roommate.RoommateServiceApplication;
+import com.colby.roommate.model.Item;
+import com.colby.roommate.model.Purchase;
+import com.colby.roommate.repo.PurchaseRepository;
+import com.colby.roommate.service.SettlementService;
+import com.colby.roommate.service.Transfer;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = RoommateServiceApplication.class)
+@AutoConfigureMockMvc
+class SettlementTests {
+
+	@Autowired MockMvc mvc;
+	@Autowired PurchaseRepository repo;
+	@Autowired SettlementService settlements;
+	@Autowired EntityManagerFactory emf;
+
+	@BeforeEach
+	void seed() {
+		repo.deleteAll();
+		Purchase groceries = new Purchase("Colby", "Safeway", Date.valueOf("2024-01-01"), 30);
+		groceries.addItem(new Item("food", 30, 0,
+			Map.of("Colby", 1 / 3.0, "Khanh", 1 / 3.0, "Jehosh", 1 / 3.0)));
+		Purchase lamp = new Purchase("Khanh", "Target", Date.valueOf("2024-02-01"), 11);
+		lamp.addItem(new Item("lamp", 10, 0.1, Map.of("Jehosh", 1.0)));
+		repo.saveAll(List.of(groceries, lamp));
+	}
+
+	private static Map<String, Double> net(List<SettlementService.Balance> balances) {
+		Map<String, Double> out = new LinkedHashMap<>();
+		balances.forEach(b -> out.put(b.getRoommate(), b.getNet()));
+		return out;
+	}
+
+	@Test
+	void balancesComeFromOneAggregateQuery() {
+		Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		List<SettlementService.Balance> all = settlements.balances(null, null);
+		assertEquals(1, stats.getPrepareStatementCount());
+
+		assertEquals(Map.of("Colby", 20.0, "Jehosh", -21.0, "Khanh", 1.0), net(all));
+		SettlementService.Balance colby = all.get(0);
+		assertEquals(30.0, colby.getPaid());
+		assertEquals(10.0, colby.getOwed());
+		assertEquals(Map.of("Colby", 20.0, "Jehosh", -10.0, "Khanh", -10.0),
+			net(settlements.balances(null, LocalDate.of(2024, 1, 31))));
+		assertEquals(Map.of("Jehosh", -11.0, "Khanh", 11.0),
+			net(settlements.balances(LocalDate.of(2024, 2, 1), null)));
+	}
+
+	@Test
+	void settlementUsesFewestTransfers() throws Exception {
+		List<Transfer> transfers = settlements.settle(null, null).getTransfers();
+		assertEquals(2, transfers.size());
+		assertEquals("Jehosh", transfers.get(0).getFrom());
+		assertEquals("Colby", transfers.get(0).getTo());
+		assertEquals(20.0, transfers.get(0).getAmount());
+		assertEquals(1.0, transfers.get(1).getAmount());
+
+		mvc.perform(get("/api/settlement?to=2024-01-31"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.transfers.length()").value(2))
+			.andExpect(jsonPath("$.balances[0].net").value(20.0));
+		mvc.perform(get("/api/balances"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(3));
+	}
+}
@@ -10,7 +10,7 @@ mkdir -p bin
 javac -cp "lib/*" -d bin \
   src/model/*.java \
   src/util/*.java \
-  src/app/MainApp.java
+  src/app/*.java
 
 # Launch the app
 java -cp "lib/*:bin" app.MainApp
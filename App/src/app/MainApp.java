@@ -1,23 +1,24 @@
 package app;
 
 import model.*;
+import util.CsvImporter;
 import util.DataStore;
 import util.ExportUtil;
+import util.PersistenceService;
+import util.RemoteDataStore;
 
 import javax.swing.*;
 import javax.swing.event.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
-import javax.swing.RowFilter;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.print.PrinterException;
 import java.io.File;
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.text.SimpleDateFormat;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main application window for the Roommate Expense Tracker with extended features.
@@ -34,16 +35,61 @@ public class MainApp extends JFrame {
     }
 
     private PurchaseManager manager;
-    private DefaultTableModel viewModel;
+    private PersistenceService persistence;
+    /** Set when started with {@code -Droommate.server=URL}; replaces persistence. */
+    private RemoteDataStore remote;
+    private JLabel statusLabel;
+    private PurchaseTableModel viewModel;
     private JTable viewTable;
-    private TableRowSorter<DefaultTableModel> sorter;
+    private TableRowSorter<PurchaseTableModel> sorter;
+    private JSpinner summaryFrom, summaryTo;
+    private JComboBox<SettlementStrategy> summaryStrategy;
+    private JTextArea summaryText;
+    private JPanel summaryPanel;
+    /** The inputs or the purchases changed while the Summary tab was hidden. */
+    private boolean summaryStale;
+    private JProgressBar summaryBusy;
+    private JButton summaryCancel;
+    /** The summary run in flight, if any; a newer one cancels it. */
+    private SwingWorker<String, Void> summaryTask;
+
+    private static final int SYNC_INTERVAL_MS = 30_000;
 
     public MainApp() {
         super("Roommate Expense Tracker");
-        manager = DataStore.load();
-        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        String server = System.getProperty("roommate.server");
+        try {
+            if (server != null) {
+                remote = RemoteDataStore.forServer(server, SwingUtilities::invokeLater);
+                manager = remote.load();
+            } else {
+                manager = DataStore.load();
+                persistence = new PersistenceService(manager);
+            }
+        } catch (IOException ex) {
+            // Starting with an empty ledger would overwrite the real one on
+            // the first save, so stop here and leave the files untouched.
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(
+                null, "Could not read saved purchases:\n" + ex.getMessage(),
+                "Load Failed", JOptionPane.ERROR_MESSAGE
+            );
+            System.exit(1);
+        }
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override public void windowClosing(WindowEvent e) {
+                flushAndExit();
+            }
+        });
         setSize(1000, 700);
         initUI();
+        if (remote != null) {
+            // the stream brings server changes; the timer retries queued local ones
+            new javax.swing.Timer(SYNC_INTERVAL_MS, e -> sync()).start();
+            sync();
+            remote.listen(this::refreshSummary);
+        }
     }
 
     private void initUI() {
@@ -53,6 +99,10 @@ public class MainApp extends JFrame {
         tabs.add("Summary",        createSummaryPanel());
         tabs.add("Settings",       createSettingsPanel());
         add(tabs);
+
+        statusLabel = new JLabel("All changes saved");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(2, 5, 2, 5));
+        add(statusLabel, BorderLayout.SOUTH);
     }
 
     // ----------------------------------------------------------------
@@ -105,7 +155,7 @@ public class MainApp extends JFrame {
                 Item it = (Item) value;
                 setText(
                     it.getDescription() +
-                    " ($" + String.format("%.2f", it.getTotalCost()) + ")"
+                    " ($" + Money.format(it.getTotalCents()) + ")"
                 );
                 return this;
             }
@@ -133,18 +183,13 @@ public class MainApp extends JFrame {
         south.add(saveBtn, BorderLayout.SOUTH);
         panel.add(south, BorderLayout.SOUTH);
 
-        // --- Helper: update sum using BigDecimal for internal, format only for display --- //
+        // --- Helper: update sum, exact in cents --- //
         Runnable updateSum = () -> {
-            BigDecimal sum = BigDecimal.ZERO;
+            long sum = 0;
             for (int i = 0; i < itemModel.size(); i++) {
-                sum = sum.add(BigDecimal.valueOf(
-                    itemModel.get(i).getTotalCost()
-                ));
-            }
-            // display as two-decimal string only
-            sumLabel.setText(String.format(
-                "Current sum: $%.2f", sum.doubleValue()
-            ));
+                sum += itemModel.get(i).getTotalCents();
+            }
+            sumLabel.setText("Current sum: $" + Money.format(sum));
         };
 
         // --- Actions --- //
@@ -174,35 +219,26 @@ public class MainApp extends JFrame {
         });
 
         saveBtn.addActionListener(e -> {
-            // parse total as BigDecimal
-            BigDecimal enteredTotal;
+            // parse total to cents
+            long enteredTotal;
             try {
-                enteredTotal = new BigDecimal(
-                    totalField.getText().trim()
-                );
+                enteredTotal = Money.parse(totalField.getText());
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Invalid total cost");
                 return;
             }
 
-            BigDecimal rawSum = BigDecimal.ZERO;
+            long rawSum = 0;
             for (int i = 0; i < itemModel.size(); i++) {
-                rawSum = rawSum.add(BigDecimal.valueOf(
-                    itemModel.get(i).getTotalCost()
-                ));
+                rawSum += itemModel.get(i).getTotalCents();
             }
 
             // allow tolerance of one cent
-            if (rawSum.subtract(enteredTotal)
-                      .abs()
-                      .compareTo(new BigDecimal("0.01")) > 0) {
+            if (Math.abs(rawSum - enteredTotal) > 1) {
                 JOptionPane.showMessageDialog(
                     this,
-                    String.format(
-                        "Sum mismatch: items = $%.2f, total = $%.2f",
-                        rawSum.doubleValue(),
-                        enteredTotal.doubleValue()
-                    )
+                    "Sum mismatch: items = $" + Money.format(rawSum)
+                        + ", total = $" + Money.format(enteredTotal)
                 );
                 return;
             }
@@ -211,17 +247,15 @@ public class MainApp extends JFrame {
             String store = storeField.getText().trim();
             Date date   = (Date) dateSpinner.getValue();
             Purchase p  = new Purchase(
-                buyer, store, date, enteredTotal.doubleValue()
+                buyer, store, date, enteredTotal
             );
             for (int i = 0; i < itemModel.size(); i++) {
                 p.addItem(itemModel.get(i));
             }
             manager.addPurchase(p);
-            try { DataStore.save(manager); }
-            catch (Exception ex) { ex.printStackTrace(); }
+            save();
 
             JOptionPane.showMessageDialog(this, "Saved");
-            refreshView();
             refreshSummary();
 
             // reset fields
@@ -254,7 +288,7 @@ public class MainApp extends JFrame {
 
         dlg.add(new JLabel("Cost (pre-tax):"));
         JTextField costF = new JTextField(
-            old != null ? String.valueOf(old.getCost()) : ""
+            old != null ? Money.format(old.getCostCents()) : ""
         );
         dlg.add(costF);
 
@@ -298,7 +332,7 @@ public class MainApp extends JFrame {
 
         if (old != null) {
             descF.setText(old.getDescription());
-            costF.setText(String.valueOf(old.getCost()));
+            costF.setText(Money.format(old.getCostCents()));
             taxF.setText(String.valueOf(old.getTaxRate()));
             old.getSplits().forEach((n, ratio) -> {
                 JCheckBox cb = cbs.get(n);
@@ -316,9 +350,10 @@ public class MainApp extends JFrame {
         final Item[] result = new Item[1];
         ok.addActionListener(e -> {
             String d = descF.getText().trim();
-            double c, t;
+            long c;
+            double t;
             try {
-                c = Double.parseDouble(costF.getText().trim());
+                c = Money.parse(costF.getText());
                 t = Double.parseDouble(taxF.getText().trim());
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dlg, "Invalid cost/tax");
@@ -351,12 +386,7 @@ public class MainApp extends JFrame {
     private JPanel createViewPurchasesPanel() {
         JPanel panel = new JPanel(new BorderLayout());
 
-        String[] cols = {"Date", "Buyer", "Store", "Total"};
-        viewModel = new DefaultTableModel(cols, 0) {
-            @Override public boolean isCellEditable(int r, int c) {
-                return false;
-            }
-        };
+        viewModel = new PurchaseTableModel(manager);
         viewTable = new JTable(viewModel);
         sorter   = new TableRowSorter<>(viewModel);
         viewTable.setRowSorter(sorter);
@@ -366,14 +396,17 @@ public class MainApp extends JFrame {
         JPanel north = new JPanel();
         north.add(new JLabel("Filter:"));
         JTextField filt = new JTextField(20);
+        filt.setToolTipText("Starts of words in the buyer, store, date, total or any item");
         north.add(filt);
-        filt.getDocument().addDocumentListener((SimpleDocumentListener)() -> {
-            String t = filt.getText();
-            sorter.setRowFilter(
-                t.isEmpty()
-                    ? null
-                    : RowFilter.regexFilter("(?i)" + t)
-            );
+        PurchaseSearch search = new PurchaseSearch(manager, sorter);
+        filt.getDocument().addDocumentListener(
+            (SimpleDocumentListener) () -> search.setQuery(filt.getText())
+        );
+        // index while the user is still typing the first query
+        filt.addFocusListener(new FocusAdapter() {
+            @Override public void focusGained(FocusEvent e) {
+                search.prepare();
+            }
         });
         panel.add(north, BorderLayout.NORTH);
 
@@ -385,8 +418,10 @@ public class MainApp extends JFrame {
         JPanel ctrls = new JPanel();
         JButton exp = new JButton("Export CSV");
         JButton pr  = new JButton("Print");
+        JButton imp = new JButton("Import CSV");
         JButton rem = new JButton("Remove Purchase");
         JButton edt = new JButton("Edit Purchase");
+        ctrls.add(imp);
         ctrls.add(exp);
         ctrls.add(pr);
         ctrls.add(rem);
@@ -395,20 +430,18 @@ public class MainApp extends JFrame {
 
         panel.add(south, BorderLayout.SOUTH);
 
-        refreshView();
-
         viewTable.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 int rv = viewTable.getSelectedRow();
                 if (rv >= 0) {
                     int mi = viewTable.convertRowIndexToModel(rv);
-                    Purchase pu = manager.getPurchases().get(mi);
+                    Purchase pu = viewModel.getPurchase(mi);
                     StringBuilder sb = new StringBuilder("Items:\n");
                     for (Item it : pu.getItems()) {
                         sb.append(String.format(
-                            "- %s: $%.2f, splits %s\n",
+                            "- %s: $%s, splits %s\n",
                             it.getDescription(),
-                            it.getTotalCost(),
+                            Money.format(it.getTotalCents()),
                             it.getSplits()
                         ));
                     }
@@ -420,14 +453,14 @@ public class MainApp extends JFrame {
         exp.addActionListener(e -> {
             JFileChooser fc = new JFileChooser();
             if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-                try {
-                    ExportUtil.exportToCSV(
-                      manager, fc.getSelectedFile()
-                    );
-                    JOptionPane.showMessageDialog(this, "Exported");
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
+                exportCSV(fc.getSelectedFile(), exp);
+            }
+        });
+
+        imp.addActionListener(e -> {
+            JFileChooser fc = new JFileChooser();
+            if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                importCSV(fc.getSelectedFile(), imp);
             }
         });
 
@@ -446,15 +479,19 @@ public class MainApp extends JFrame {
                 return;
             }
             int mr = viewTable.convertRowIndexToModel(row);
+            Purchase p = viewModel.getPurchase(mr);
             int choice = JOptionPane.showConfirmDialog(
                 this, "Delete this purchase?", 
                 "Confirm Delete", JOptionPane.YES_NO_OPTION
             );
             if (choice == JOptionPane.YES_OPTION) {
+                mr = rowOf(p, mr);
+                if (mr < 0) {
+                    statusLabel.setText("Purchase changed meanwhile; not deleted");
+                    return;
+                }
                 manager.removePurchase(mr);
-                try { DataStore.save(manager); }
-                catch (Exception ex) { ex.printStackTrace(); }
-                refreshView();
+                save();
                 det.setText("");
             }
         });
@@ -466,19 +503,29 @@ public class MainApp extends JFrame {
                 return;
             }
             int mr = viewTable.convertRowIndexToModel(row);
-            Purchase p = manager.getPurchases().get(mr);
-            showEditPurchaseDialog(p, viewModel, mr);
-            refreshView();
+            showEditPurchaseDialog(viewModel.getPurchase(mr), mr);
         });
 
         return panel;
     }
 
+    /**
+     * Where {@code p} sits in the manager now, or -1 once it has been
+     * removed or replaced. Synced changes keep arriving while a modal
+     * dialog is up and can shift rows, so a row taken before it opened
+     * is only a hint.
+     */
+    private int rowOf(Purchase p, int hint) {
+        java.util.List<Purchase> purchases = manager.getPurchases();
+        if (hint < purchases.size() && purchases.get(hint) == p) return hint;
+        return purchases.indexOf(p);
+    }
+
     // ----------------------------------------------------------------
     // Dialog to edit existing purchase including items
     // ----------------------------------------------------------------
     private void showEditPurchaseDialog(
-        Purchase p, DefaultTableModel model, int row
+        Purchase p, int row
     ) {
         JDialog dialog = new JDialog(this, "Edit Purchase", true);
         dialog.setSize(500, 600);
@@ -509,7 +556,7 @@ public class MainApp extends JFrame {
 
         form.add(new JLabel("Total Cost:"));
         JTextField totalF = new JTextField(
-            String.format("%.2f", p.getTotalCost())
+            Money.format(p.getTotalCents())
         );
         form.add(totalF);
 
@@ -527,7 +574,7 @@ public class MainApp extends JFrame {
                 Item it = (Item) v;
                 setText(
                     it.getDescription() +
-                    " ($" + String.format("%.2f", it.getTotalCost()) + ")"
+                    " ($" + Money.format(it.getTotalCents()) + ")"
                 );
                 return this;
             }
@@ -571,31 +618,35 @@ public class MainApp extends JFrame {
         });
 
         saveB.addActionListener(ae -> {
-            p.setBuyer((String) buyerBox.getSelectedItem());
-            p.setStore(storeF.getText().trim());
-            p.setDate((Date) dateSp.getValue());
-            double tot;
+            long tot;
             try {
-                tot = Double.parseDouble(totalF.getText().trim());
+                tot = Money.parse(totalF.getText());
             } catch(Exception ex) {
                 JOptionPane.showMessageDialog(dialog,"Invalid total cost");
                 return;
             }
-            p.getItems().clear();
+            // build a replacement so the manager can journal the edit
+            Purchase np = new Purchase(
+                (String) buyerBox.getSelectedItem(),
+                storeF.getText().trim(),
+                (Date) dateSp.getValue(),
+                tot
+            );
+            np.setId(p.getId());
+            np.setVersion(p.getVersion());
             for (int i = 0; i < im.size(); i++) {
-                p.addItem(im.get(i));
+                np.addItem(im.get(i));
             }
-            p.setTotalCost(tot);
-
-            try { DataStore.save(manager); } catch (Exception ex) { ex.printStackTrace(); }
+            int at = rowOf(p, row);
+            if (at < 0) {
+                JOptionPane.showMessageDialog(dialog,
+                    "This purchase was changed or deleted while you were editing it.");
+                dialog.dispose();
+                return;
+            }
+            manager.setPurchase(at, np);
 
-            SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-            model.setValueAt(df.format(p.getDate()), row, 0);
-            model.setValueAt(p.getBuyer(), row, 1);
-            model.setValueAt(p.getStore(), row, 2);
-            model.setValueAt(
-                String.format("%.2f", p.getTotalCost()), row, 3
-            );
+            save();
 
             dialog.dispose();
         });
@@ -610,34 +661,63 @@ public class MainApp extends JFrame {
     // ----------------------------------------------------------------
     private JPanel createSummaryPanel() {
         JPanel panel = new JPanel(new BorderLayout());
+        summaryPanel = panel;
 
-        JTextArea sum = new JTextArea();
-        sum.setEditable(false);
-        panel.add(new JScrollPane(sum), BorderLayout.CENTER);
+        summaryText = new JTextArea();
+        summaryText.setEditable(false);
+        panel.add(new JScrollPane(summaryText), BorderLayout.CENTER);
 
         JPanel top = new JPanel();
         top.add(new JLabel("From:"));
-        JSpinner f = new JSpinner(new SpinnerDateModel());
-        ((JSpinner.DateEditor)f.getEditor())
+        summaryFrom = new JSpinner(new SpinnerDateModel());
+        ((JSpinner.DateEditor)summaryFrom.getEditor())
             .getFormat().applyPattern("yyyy-MM-dd");
-        top.add(f);
+        top.add(summaryFrom);
 
         top.add(new JLabel("To:"));
-        JSpinner t = new JSpinner(new SpinnerDateModel());
-        ((JSpinner.DateEditor)t.getEditor())
+        summaryTo = new JSpinner(new SpinnerDateModel());
+        ((JSpinner.DateEditor)summaryTo.getEditor())
             .getFormat().applyPattern("yyyy-MM-dd");
-        top.add(t);
+        top.add(summaryTo);
+
+        summaryStrategy = new JComboBox<>(SettlementStrategy.values());
+        top.add(summaryStrategy);
 
         JButton g = new JButton("Generate");
         top.add(g);
+        JButton ex = new JButton("Export Summary");
+        top.add(ex);
+        summaryBusy = new JProgressBar();
+        summaryBusy.setIndeterminate(true);
+        summaryBusy.setVisible(false);
+        top.add(summaryBusy);
+        summaryCancel = new JButton("Cancel");
+        summaryCancel.setVisible(false);
+        top.add(summaryCancel);
         panel.add(top, BorderLayout.NORTH);
 
-        g.addActionListener(e ->
-            sum.setText(computeSettlement(
-                (Date)f.getValue(), (Date)t.getValue()
-            ))
-        );
-        g.doClick();
+        // any change to the inputs supersedes a run still in progress
+        summaryFrom.addChangeListener(e -> refreshSummary());
+        summaryTo.addChangeListener(e -> refreshSummary());
+        summaryStrategy.addActionListener(e -> refreshSummary());
+        g.addActionListener(e -> refreshSummary());
+        summaryCancel.addActionListener(e -> {
+            if (summaryTask != null) summaryTask.cancel(true);
+        });
+        ex.addActionListener(e -> {
+            JFileChooser fc = new JFileChooser();
+            if (fc.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                exportSummary(fc.getSelectedFile(), ex);
+            }
+        });
+        // building the ledger decodes every purchase's items, so it waits
+        // until the tab is first shown rather than slowing startup
+        summaryStale = true;
+        panel.addComponentListener(new ComponentAdapter() {
+            @Override public void componentShown(ComponentEvent e) {
+                if (summaryStale) refreshSummary();
+            }
+        });
 
         return panel;
     }
@@ -665,8 +745,7 @@ public class MainApp extends JFrame {
             if (name != null && !name.trim().isEmpty()) {
                 manager.addRoommate(name);
                 rmModel.addElement(name);
-                try { DataStore.save(manager); }
-                catch (Exception ex) { ex.printStackTrace(); }
+                save();
             }
         });
         rem.addActionListener(e -> {
@@ -674,8 +753,7 @@ public class MainApp extends JFrame {
             if (idx >= 0) {
                 String name = rmModel.remove(idx);
                 manager.removeRoommate(name);
-                try { DataStore.save(manager); }
-                catch (Exception ex) { ex.printStackTrace(); }
+                save();
             }
         });
 
@@ -685,68 +763,342 @@ public class MainApp extends JFrame {
     // ----------------------------------------------------------------
     // Helpers
     // ----------------------------------------------------------------
-    private void refreshView() {
-        viewModel.setRowCount(0);
-        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-        for (Purchase p : manager.getPurchases()) {
-            viewModel.addRow(new Object[]{
-                df.format(p.getDate()),
-                p.getBuyer(),
-                p.getStore(),
-                String.format("%.2f", p.getTotalCost())
-            });
-        }
+    /**
+     * Imports a CSV/TSV file (optionally .gz) on a background thread. Each
+     * parsed batch is added to the manager on the EDT, which also paces
+     * the parser; the progress dialog's Cancel keeps what was added so far.
+     */
+    private void importCSV(File file, JButton trigger) {
+        ProgressMonitor monitor = new ProgressMonitor(
+            this, "Importing " + file.getName(), null, 0, 100
+        );
+        monitor.setMillisToDecideToPopup(200);
+        AtomicInteger added = new AtomicInteger();
+        long size = Math.max(1, file.length());
+
+        SwingWorker<CsvImporter.Result, Void> worker = new SwingWorker<>() {
+            @Override
+            protected CsvImporter.Result doInBackground() throws Exception {
+                return CsvImporter.importFile(file, batch -> {
+                    try {
+                        SwingUtilities.invokeAndWait(() -> manager.addPurchases(batch));
+                        added.addAndGet(batch.size());
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException("Import cancelled");
+                    } catch (InvocationTargetException ex) {
+                        throw new IOException(ex.getCause());
+                    }
+                }, (chars, rows) -> {
+                    // chars track bytes closely for text, not for .gz input
+                    setProgress((int) Math.min(99, chars * 100 / size));
+                    if (monitor.isCanceled()) cancel(true);
+                });
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                trigger.setEnabled(true);
+                if (added.get() > 0) save();
+                if (isCancelled()) {
+                    statusLabel.setText("Import cancelled after " + added.get() + " purchases");
+                    return;
+                }
+                try {
+                    showImportResult(get());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(MainApp.this,
+                        "Import failed after " + added.get() + " purchases:\n"
+                            + cause.getMessage(),
+                        "Import", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(ev -> {
+            if ("progress".equals(ev.getPropertyName())) {
+                monitor.setProgress((Integer) ev.getNewValue());
+                if (monitor.isCanceled()) worker.cancel(true);
+            }
+        });
+        trigger.setEnabled(false);
+        statusLabel.setText("Importing " + file.getName() + "...");
+        worker.execute();
     }
 
-    private void refreshSummary() {
-        // no-op
+    /** Summary of an import, listing the rejected rows if there were any. */
+    private void showImportResult(CsvImporter.Result r) {
+        String summary = "Imported " + r.purchases + " purchases (" + r.items + " items).";
+        statusLabel.setText(summary);
+        if (r.badRows == 0) {
+            JOptionPane.showMessageDialog(this, summary, "Import", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (CsvImporter.RowError err : r.errors) sb.append(err).append('\n');
+        if (r.badRows > r.errors.size()) {
+            sb.append("... and ").append(r.badRows - r.errors.size()).append(" more\n");
+        }
+        JTextArea area = new JTextArea(sb.toString(), 15, 60);
+        area.setEditable(false);
+        JPanel p = new JPanel(new BorderLayout(5, 5));
+        p.add(new JLabel(summary + " Skipped " + r.badRows + " rows:"), BorderLayout.NORTH);
+        p.add(new JScrollPane(area), BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, p, "Import", JOptionPane.WARNING_MESSAGE);
     }
 
     /**
-     * Computes settlement instructions between roommates over a date range.
+     * Queues a background save and reports the outcome in the status bar.
      */
-    private String computeSettlement(Date from, Date to) {
-        Map<String, Double> net = new HashMap<>();
-        for (String r : manager.getRoommates()) {
-            net.put(r, 0.0);
+    private void save() {
+        if (remote != null) {
+            statusLabel.setText("Syncing...");
+            report(remote.saveAndSync());
+            return;
         }
-        for (Purchase p : manager.getPurchases()) {
-            if (!p.getDate().before(from) && !p.getDate().after(to)) {
-                for (Item it : p.getItems()) {
-                    for (Map.Entry<String, Double> e : it.getSplits().entrySet()) {
-                        net.put(
-                            e.getKey(),
-                            net.get(e.getKey())
-                            - e.getValue() * it.getTotalCost()
-                        );
-                    }
+        statusLabel.setText("Saving...");
+        persistence.requestSave().whenComplete((v, ex) ->
+            SwingUtilities.invokeLater(() -> {
+                if (ex != null) {
+                    ex.printStackTrace();
+                    statusLabel.setText("Save failed: " + ex.getMessage());
+                } else if (!persistence.isPending()) {
+                    statusLabel.setText("All changes saved");
                 }
-                net.put(
-                    p.getBuyer(),
-                    net.get(p.getBuyer()) + p.getTotalCost()
-                );
+            })
+        );
+    }
+
+    /** Pushes queued local edits and pulls anything the stream missed; harmless offline. */
+    private void sync() {
+        report(remote.sync());
+    }
+
+    private void report(java.util.concurrent.CompletableFuture<RemoteDataStore.SyncResult> sync) {
+        sync.whenComplete((r, ex) ->
+            SwingUtilities.invokeLater(() -> {
+                if (ex != null) {
+                    statusLabel.setText("Offline, " + remote.pendingChanges() + " changes queued");
+                    return;
+                }
+                if (r.pulled > 0) refreshSummary();
+                statusLabel.setText(r.pushed == 0 && r.pulled == 0 ? "All changes saved" : r.toString());
+            })
+        );
+    }
+
+    /** Waits for outstanding writes before closing the window. */
+    private void flushAndExit() {
+        try {
+            if (remote != null) {
+                remote.close();
+                remote.saveNow();
+            } else {
+                persistence.flush(10, java.util.concurrent.TimeUnit.SECONDS);
             }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            int choice = JOptionPane.showConfirmDialog(
+                this, "Could not save all changes:\n" + ex.getMessage()
+                    + "\nExit anyway?",
+                "Save Failed", JOptionPane.YES_NO_OPTION
+            );
+            if (choice != JOptionPane.YES_OPTION) return;
         }
-        java.util.List<String> debtors   = new java.util.ArrayList<>();
-        java.util.List<String> creditors = new java.util.ArrayList<>();
-        for (Map.Entry<String, Double> e : net.entrySet()) {
-            if (e.getValue() < -1e-2) debtors.add(e.getKey());
-            else if (e.getValue() >  1e-2) creditors.add(e.getKey());
+        dispose();
+        System.exit(0);
+    }
+
+    /**
+     * Regenerates the Summary tab for its current range and strategy.
+     * The balances and the settlement are worked out in the background,
+     * see {@link #balancesFor}. A run still in progress is
+     * cancelled, so only the latest inputs ever reach the text area.
+     * While the tab is hidden this only marks it stale for when it is
+     * next shown.
+     */
+    private void refreshSummary() {
+        if (!summaryPanel.isShowing()) {
+            summaryStale = true;
+            return;
         }
+        summaryStale = false;
+        SwingWorker<String, Void> stale = summaryTask;
+        summaryTask = null;
+        if (stale != null) stale.cancel(true);
+        java.util.function.Supplier<Map<String, Long>> net = balancesFor(
+            (Date) summaryFrom.getValue(), (Date) summaryTo.getValue()
+        );
+        SettlementStrategy strategy = (SettlementStrategy) summaryStrategy.getSelectedItem();
 
-        StringBuilder sb = new StringBuilder("Settlements:\n");
-        int i = 0, j = 0;
-        while (i < debtors.size() && j < creditors.size()) {
-            String d = debtors.get(i), c = creditors.get(j);
-            double owe = -net.get(d), cred = net.get(c);
-            double amt = Math.min(owe, cred);
-            sb.append(String.format("%s pays %s $%.3f\n", d, c, amt));
-            net.put(d, net.get(d) + amt);
-            net.put(c, net.get(c) - amt);
-            if (Math.abs(net.get(d)) < 1e-2) i++;
-            if (Math.abs(net.get(c)) < 1e-2) j++;
+        SwingWorker<String, Void> task = new SwingWorker<>() {
+            @Override
+            protected String doInBackground() {
+                return computeSettlement(net.get(), strategy);
+            }
+
+            @Override
+            protected void done() {
+                if (summaryTask != this) return;
+                summaryTask = null;
+                summaryBusy.setVisible(false);
+                summaryCancel.setVisible(false);
+                if (isCancelled()) {
+                    statusLabel.setText("Summary cancelled");
+                    return;
+                }
+                try {
+                    summaryText.setText(get());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    summaryText.setText("Could not settle: " + cause.getMessage());
+                }
+            }
+        };
+        summaryTask = task;
+        summaryBusy.setVisible(true);
+        summaryCancel.setVisible(true);
+        task.execute();
+    }
+
+    /**
+     * Net balances over {@code [from, to]}, to be fetched off the EDT. A
+     * ledger that is already built answers here in O(roommates). Before
+     * that, the ledger's first build would be a pass over the whole
+     * history on the EDT, so the purchases are copied instead and the
+     * supplier scans the copy wherever it is called.
+     */
+    private java.util.function.Supplier<Map<String, Long>> balancesFor(Date from, Date to) {
+        BalanceLedger ledger = manager.getLedger();
+        if (ledger.isBuilt()) {
+            Map<String, Long> net = ledger.getBalances(from, to);
+            return () -> net;
         }
-        return sb.toString();
+        java.util.List<Purchase> purchases = new ArrayList<>(manager.getPurchases());
+        java.util.List<String> roommates = new ArrayList<>(manager.getRoommates());
+        NameDictionary names = manager.getNames();
+        return () -> BalanceLedger.computeParallel(purchases, roommates, names, from, to);
+    }
+
+    /**
+     * Computes settlement instructions between roommates from their net
+     * balances over a date range. Safe off the EDT.
+     */
+    private static String computeSettlement(
+        Map<String, Long> net, SettlementStrategy strategy
+    ) {
+        return "Settlements:\n"
+            + Settlement.describe(Settlement.settle(net, strategy));
+    }
+
+    /**
+     * Writes every purchase to {@code file} on a background thread. The
+     * purchase list is copied first, so edits made meanwhile don't reach
+     * the file; Cancel in the progress dialog deletes what was written.
+     */
+    private void exportCSV(File file, JButton trigger) {
+        ProgressMonitor monitor = new ProgressMonitor(
+            this, "Exporting " + file.getName(), null, 0, 100
+        );
+        monitor.setMillisToDecideToPopup(200);
+        java.util.List<Purchase> purchases = new ArrayList<>(manager.getPurchases());
+
+        SwingWorker<Void, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                ExportUtil.exportToCSV(purchases, file, (written, total) ->
+                    setProgress((int) Math.min(99, written * 100L / Math.max(1, total)))
+                );
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                monitor.close();
+                trigger.setEnabled(true);
+                if (isCancelled()) {
+                    statusLabel.setText("Export cancelled");
+                    return;
+                }
+                try {
+                    get();
+                    statusLabel.setText("Exported " + purchases.size() + " purchases to " + file.getName());
+                    JOptionPane.showMessageDialog(MainApp.this, "Exported");
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(MainApp.this,
+                        "Export failed:\n" + cause.getMessage(),
+                        "Export", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(ev -> {
+            if ("progress".equals(ev.getPropertyName())) {
+                monitor.setProgress((Integer) ev.getNewValue());
+                if (monitor.isCanceled()) worker.cancel(true);
+            }
+        });
+        trigger.setEnabled(false);
+        statusLabel.setText("Exporting " + file.getName() + "...");
+        worker.execute();
+    }
+
+    /**
+     * Writes the settlement for the Summary tab's range and strategy to
+     * {@code file}. Balances, see {@link #balancesFor}, settling and
+     * writing all happen on a background thread that Cancel interrupts.
+     */
+    private void exportSummary(File file, JButton trigger) {
+        Date from = (Date) summaryFrom.getValue(), to = (Date) summaryTo.getValue();
+        java.util.function.Supplier<Map<String, Long>> net = balancesFor(from, to);
+        SettlementStrategy strategy = (SettlementStrategy) summaryStrategy.getSelectedItem();
+        ProgressMonitor monitor = new ProgressMonitor(
+            this, "Exporting summary to " + file.getName(), null, 0, 100
+        );
+        monitor.setMillisToDecideToPopup(200);
+        // the monitor only polls for Cancel when progress is set
+        javax.swing.Timer poll = new javax.swing.Timer(100, null);
+
+        SwingWorker<Void, Void> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                ExportUtil.exportSummary(net.get(), from, to, strategy, file);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                poll.stop();
+                monitor.close();
+                trigger.setEnabled(true);
+                if (isCancelled()) {
+                    file.delete();
+                    statusLabel.setText("Summary export cancelled");
+                    return;
+                }
+                try {
+                    get();
+                    statusLabel.setText("Summary exported to " + file.getName());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    cause.printStackTrace();
+                    JOptionPane.showMessageDialog(MainApp.this,
+                        "Export failed:\n" + cause.getMessage(),
+                        "Export", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        poll.addActionListener(e -> {
+            monitor.setProgress(0);
+            if (monitor.isCanceled()) worker.cancel(true);
+        });
+        trigger.setEnabled(false);
+        statusLabel.setText("Exporting summary...");
+        poll.start();
+        worker.execute();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,128 @@
+package app;
+
+import model.Purchase;
+import model.PurchaseListener;
+import model.PurchaseManager;
+import model.SearchIndex;
+
+import javax.swing.RowFilter;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.TableRowSorter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Filters the View Purchases table through a {@link SearchIndex}.
+ * <p>
+ * The index lives on one background thread; manager events are queued
+ * to it, so it follows every edit without the EDT waiting on it. Typing
+ * restarts a short timer, and only when it fires is the query run on
+ * that thread. The EDT then installs a filter that tests each row
+ * against the matched set. Results from a query that has since been
+ * replaced are dropped. Clearing the box removes the filter right away.
+ * <p>
+ * Indexing reads every purchase's items, which decodes them all, so
+ * nothing is indexed until {@link #prepare()} or the first query.
+ * All public methods are for the EDT.
+ */
+public class PurchaseSearch implements PurchaseListener {
+    private static final int DEBOUNCE_MS = 150;
+
+    private final PurchaseManager manager;
+    private final TableRowSorter<PurchaseTableModel> sorter;
+    private final SearchIndex index = new SearchIndex();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "PurchaseSearch-index");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Timer debounce = new Timer(DEBOUNCE_MS, e -> run());
+
+    private String query = "";
+    private boolean prepared;
+    /** Bumped for every query; a result is only shown if it is still current. */
+    private volatile int generation;
+
+    public PurchaseSearch(PurchaseManager manager, TableRowSorter<PurchaseTableModel> sorter) {
+        this.manager = manager;
+        this.sorter = sorter;
+        debounce.setRepeats(false);
+    }
+
+    /** Starts building the index, e.g. when the search box gets focus. */
+    public void prepare() {
+        if (prepared) return;
+        prepared = true;
+        // copy on the EDT so the build sees exactly the rows before the first event
+        List<Purchase> existing = new ArrayList<>(manager.getPurchases());
+        worker.execute(() -> existing.forEach(index::add));
+        manager.addListener(this);
+    }
+
+    public void setQuery(String text) {
+        query = text.trim();
+        if (!query.isEmpty()) prepare();
+        if (query.isEmpty()) {
+            generation++;
+            debounce.stop();
+            sorter.setRowFilter(null);
+        } else {
+            debounce.restart();
+        }
+    }
+
+    private void run() {
+        int gen = ++generation;
+        String q = query;
+        worker.execute(() -> {
+            if (gen != generation) return;
+            Set<Purchase> matches = index.search(q);
+            SwingUtilities.invokeLater(() -> {
+                if (gen != generation) return;
+                sorter.setRowFilter(matches == null ? null : new Matches(matches));
+            });
+        });
+    }
+
+    /** Re-runs an active query so rows changed under it are shown or hidden. */
+    private void changed() {
+        if (!query.isEmpty()) debounce.restart();
+    }
+
+    @Override
+    public void purchaseAdded(int index, Purchase p) {
+        worker.execute(() -> this.index.add(p));
+        changed();
+    }
+
+    @Override
+    public void purchaseUpdated(int index, Purchase old, Purchase p) {
+        worker.execute(() -> {
+            this.index.remove(old);
+            this.index.add(p);
+        });
+        changed();
+    }
+
+    @Override
+    public void purchaseRemoved(int index, Purchase p) {
+        worker.execute(() -> this.index.remove(p));
+    }
+
+    private static final class Matches extends RowFilter<PurchaseTableModel, Integer> {
+        private final Set<Purchase> matches;
+
+        Matches(Set<Purchase> matches) {
+            this.matches = matches;
+        }
+
+        @Override
+        public boolean include(Entry<? extends PurchaseTableModel, ? extends Integer> entry) {
+            return matches.contains(entry.getModel().getPurchase(entry.getIdentifier()));
+        }
+    }
+}
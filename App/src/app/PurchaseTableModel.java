@@ -0,0 +1,80 @@
+package app;
+
+import model.Money;
+import model.Purchase;
+import model.PurchaseListener;
+import model.PurchaseManager;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.SimpleDateFormat;
+import java.util.List;
+
+/**
+ * Table view of a PurchaseManager's purchases, one row per purchase in
+ * manager order.
+ * <p>
+ * Rows are read straight from the manager and formatted only when the
+ * table asks for a cell, so only visible rows are ever formatted. The
+ * model listens to the manager and fires an insert, update or delete
+ * for just the row that changed, so an edit costs the same however long
+ * the history is. Manager events must arrive on the EDT, which is where
+ * MainApp, the importer's batches and RemoteDataStore all make them.
+ */
+public class PurchaseTableModel extends AbstractTableModel implements PurchaseListener {
+    private static final long serialVersionUID = 1L;
+    private static final String[] COLUMNS = {"Date", "Buyer", "Store", "Total"};
+
+    private final PurchaseManager manager;
+    /** Only touched on the EDT. */
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+    public PurchaseTableModel(PurchaseManager manager) {
+        this.manager = manager;
+        manager.addListener(this);
+    }
+
+    /** The purchase shown at model row {@code row}. */
+    public Purchase getPurchase(int row) {
+        return purchases().get(row);
+    }
+
+    private List<Purchase> purchases() {
+        return manager.getPurchases();
+    }
+
+    @Override public int getRowCount()                { return purchases().size(); }
+    @Override public int getColumnCount()             { return COLUMNS.length; }
+    @Override public String getColumnName(int column) { return COLUMNS[column]; }
+    @Override public Class<?> getColumnClass(int c)   { return String.class; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Purchase p = getPurchase(row);
+        switch (column) {
+            case 0:  return p.getDate() == null ? "" : dateFormat.format(p.getDate());
+            case 1:  return p.getBuyer();
+            case 2:  return p.getStore();
+            case 3:  return Money.format(p.getTotalCents());
+            default: throw new IndexOutOfBoundsException("column " + column);
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // PurchaseListener
+    // ----------------------------------------------------------------
+
+    @Override
+    public void purchaseAdded(int index, Purchase p) {
+        fireTableRowsInserted(index, index);
+    }
+
+    @Override
+    public void purchaseUpdated(int index, Purchase old, Purchase p) {
+        fireTableRowsUpdated(index, index);
+    }
+
+    @Override
+    public void purchaseRemoved(int index, Purchase p) {
+        fireTableRowsDeleted(index, index);
+    }
+}
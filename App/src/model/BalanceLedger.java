@@ -0,0 +1,284 @@
+package model;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Running net balance per roommate in cents: what they paid minus their
+ * share of every item split with them. Positive means the others owe them
+ * money. Each item is divided with {@link Item#forEachShare} and the buyer
+ * is credited with exactly the shares handed out, so the balances always
+ * sum to zero and a purchase can be backed out to the cent.
+ * <p>
+ * The ledger listens to its PurchaseManager and applies each added,
+ * edited or removed purchase, and each item a removed roommate's split
+ * is stripped from, as a delta, so reading balances costs O(roommates)
+ * instead of a pass over the whole history. The same deltas
+ * are filed by day in a {@link DayIndex}, which answers any date range
+ * from two prefix sums. It is built on first use, so a lazily loaded
+ * ledger stays unread until someone asks.
+ */
+public class BalanceLedger implements PurchaseListener {
+    private final PurchaseManager manager;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private long[] net = new long[8];
+    /** Slot for each id in the manager's NameDictionary, -1 until seen. */
+    private int[] slotById = new int[0];
+    private final DayIndex byDay = new DayIndex();
+    /** Purchase dates (epoch millis) with multiplicity, for the date range. */
+    private final TreeMap<Long, Integer> dates = new TreeMap<>();
+    private boolean built;
+
+    BalanceLedger(PurchaseManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * @return net balance per person, roommates first in their listed
+     *         order, then anyone else who still appears in a split
+     */
+    public Map<String, Long> getBalances() {
+        ensureBuilt();
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (String r : manager.getRoommates()) out.put(r, net[slot(r)]);
+        for (int i = 0; i < names.size(); i++) {
+            out.putIfAbsent(names.get(i), net[i]);
+        }
+        return out;
+    }
+
+    /**
+     * Balances from purchases dated within {@code [from, to]}, compared by
+     * calendar day; either bound may be null for an open range.
+     */
+    public Map<String, Long> getBalances(Date from, Date to) {
+        ensureBuilt();
+        long[] hi = new long[names.size()];
+        long[] lo = new long[names.size()];
+        byDay.prefix(to == null ? Long.MAX_VALUE : DayIndex.epochDay(to), hi);
+        if (from != null) byDay.prefix(DayIndex.epochDay(from) - 1, lo);
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (String r : manager.getRoommates()) {
+            int i = slot(r);
+            out.put(r, i < hi.length ? hi[i] - lo[i] : 0L);
+        }
+        for (int i = 0; i < hi.length; i++) {
+            out.putIfAbsent(names.get(i), hi[i] - lo[i]);
+        }
+        return out;
+    }
+
+    /**
+     * @return true once the running totals exist, so reading balances
+     *         costs O(roommates) rather than a pass over the history
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    public long getBalance(String name) {
+        ensureBuilt();
+        Integer i = slots.get(name);
+        return i == null ? 0 : net[i];
+    }
+
+    /** @return earliest purchase date, or null with no dated purchases */
+    public Date getFirstDate() {
+        ensureBuilt();
+        return dates.isEmpty() ? null : new Date(dates.firstKey());
+    }
+
+    /** @return latest purchase date, or null with no dated purchases */
+    public Date getLastDate() {
+        ensureBuilt();
+        return dates.isEmpty() ? null : new Date(dates.lastKey());
+    }
+
+    /**
+     * Compares the running totals, and the day index over the full date
+     * range, against a full recompute.
+     * @return true if every balance agrees to the cent
+     */
+    public boolean verify() {
+        ensureBuilt();
+        Date first = getFirstDate(), last = getLastDate();
+        return agree(computeParallel(manager, null, null), getBalances())
+            && agree(computeParallel(manager, first, last), getBalances(first, last));
+    }
+
+    private static boolean agree(Map<String, Long> fresh, Map<String, Long> running) {
+        Set<String> all = new HashSet<>(fresh.keySet());
+        all.addAll(running.keySet());
+        for (String name : all) {
+            if (fresh.getOrDefault(name, 0L).longValue()
+                    != running.getOrDefault(name, 0L).longValue()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Full scan of the purchases dated within {@code [from, to]} by
+     * calendar day; either bound may be null for an open range. This is
+     * the reference the incremental totals are checked against.
+     */
+    public static Map<String, Long> compute(PurchaseManager m, Date from, Date to) {
+        BalanceLedger scratch = new BalanceLedger(m);
+        for (String r : m.getRoommates()) scratch.slot(r);
+        long lo = from == null ? Long.MIN_VALUE : DayIndex.epochDay(from);
+        long hi = to   == null ? Long.MAX_VALUE : DayIndex.epochDay(to);
+        for (Purchase p : m.getPurchases()) {
+            Date d = p.getDate();
+            if (from != null || to != null) {
+                if (d == null) continue;
+                long day = DayIndex.epochDay(d);
+                if (day < lo || day > hi) continue;
+            }
+            scratch.apply(p, 1);
+        }
+        scratch.built = true;
+        return scratch.getBalances();
+    }
+
+    /**
+     * {@link #compute} split across the common fork/join pool, for full
+     * recomputes of long histories. The result is identical to the
+     * serial scan, down to the map's order. The purchases must not change
+     * while it runs.
+     */
+    public static Map<String, Long> computeParallel(PurchaseManager m, Date from, Date to) {
+        return computeParallel(m, from, to, ForkJoinPool.commonPool());
+    }
+
+    /** {@link #computeParallel(PurchaseManager, Date, Date)} on {@code pool}. */
+    public static Map<String, Long> computeParallel(PurchaseManager m, Date from, Date to,
+                                                    ForkJoinPool pool) {
+        return computeParallel(m.getPurchases(), m.getRoommates(), m.getNames(), from, to, pool);
+    }
+
+    /**
+     * {@link #computeParallel(PurchaseManager, Date, Date)} over purchases
+     * and roommates copied out of a manager, whose dictionary is
+     * {@code dict}. The manager may go on changing on its own thread while
+     * this runs elsewhere.
+     */
+    public static Map<String, Long> computeParallel(List<Purchase> purchases, List<String> roommates,
+                                                    NameDictionary dict, Date from, Date to) {
+        return computeParallel(purchases, roommates, dict, from, to, ForkJoinPool.commonPool());
+    }
+
+    private static Map<String, Long> computeParallel(List<Purchase> purchases, List<String> roommates,
+                                                     NameDictionary dict, Date from, Date to,
+                                                     ForkJoinPool pool) {
+        BalanceScan.Partial sum = pool.invoke(new BalanceScan(purchases, dict, from, to));
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (String r : roommates) {
+            int id = dict.find(r);
+            out.put(r, id >= 0 && id < sum.net.length ? sum.net[id] : 0L);
+        }
+        for (int k = 0; k < sum.count; k++) {
+            int id = sum.order[k];
+            out.putIfAbsent(dict.name(id), sum.net[id]);
+        }
+        return out;
+    }
+
+    // ----------------------------------------------------------------
+    // PurchaseListener
+    // ----------------------------------------------------------------
+    @Override public void purchaseAdded(int index, Purchase p) {
+        if (built) apply(p, 1);
+    }
+
+    @Override public void purchaseUpdated(int index, Purchase old, Purchase p) {
+        if (built) {
+            apply(old, -1);
+            apply(p, 1);
+        }
+    }
+
+    @Override public void purchaseRemoved(int index, Purchase p) {
+        if (built) apply(p, -1);
+    }
+
+    @Override public void roommateAdded(String name) {
+        slot(name);
+    }
+
+    // ----------------------------------------------------------------
+    // Internals
+    // ----------------------------------------------------------------
+    private void ensureBuilt() {
+        if (built) return;
+        Arrays.fill(net, 0);
+        dates.clear();
+        byDay.clear();
+        for (String r : manager.getRoommates()) slot(r);
+        for (Purchase p : manager.getPurchases()) apply(p, 1);
+        built = true;
+    }
+
+    private void apply(Purchase p, int sign) {
+        boolean dated = p.getDate() != null;
+        long day = dated ? DayIndex.epochDay(p.getDate()) : 0;
+        long paid = 0;
+        for (Item it : p.getItems()) paid += postShares(it, dated, day, sign);
+        post(slot(p.getBuyer()), dated, day, sign * paid);
+        if (dated) {
+            dates.merge(p.getDate().getTime(), sign, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
+    /**
+     * Backs out ({@code sign} -1) or posts (+1) a single item of {@code p}
+     * and the buyer's credit for it, around PurchaseManager rewriting the
+     * item's splits in place. Nothing to do before the ledger is built.
+     */
+    void applyItem(Purchase p, Item it, int sign) {
+        if (!built) return;
+        boolean dated = p.getDate() != null;
+        long day = dated ? DayIndex.epochDay(p.getDate()) : 0;
+        post(slot(p.getBuyer()), dated, day, sign * postShares(it, dated, day, sign));
+    }
+
+    /** Debits each share of {@code it} with {@code sign}; returns their sum. */
+    private long postShares(Item it, boolean dated, long day, int sign) {
+        NameDictionary dict = it.names();
+        int[] ids = it.splitIds();
+        long[] shares = it.shares();
+        long paid = 0;
+        for (int k = 0; k < ids.length; k++) {
+            post(slot(dict, ids[k]), dated, day, -sign * shares[k]);
+            paid += shares[k];
+        }
+        return paid;
+    }
+
+    private void post(int slot, boolean dated, long day, long delta) {
+        net[slot] += delta;
+        if (dated) byDay.add(slot, day, delta);
+    }
+
+    /** Slot by dictionary id, skipping the name lookup for bound items. */
+    private int slot(NameDictionary dict, int id) {
+        if (dict != manager.getNames()) return slot(dict.name(id));
+        if (id >= slotById.length) {
+            int old = slotById.length;
+            slotById = Arrays.copyOf(slotById, Math.max(id + 1, old * 2));
+            Arrays.fill(slotById, old, slotById.length, -1);
+        }
+        int s = slotById[id];
+        if (s < 0) s = slotById[id] = slot(dict.name(id));
+        return s;
+    }
+
+    private int slot(String name) {
+        Integer i = slots.get(name);
+        if (i != null) return i;
+        int s = names.size();
+        slots.put(name, s);
+        names.add(name);
+        if (s == net.length) net = Arrays.copyOf(net, s * 2);
+        return s;
+    }
+}
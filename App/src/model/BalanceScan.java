@@ -0,0 +1,119 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join version of {@link BalanceLedger#compute}'s full scan. The
+ * purchase list is halved until a range is at most {@link #CHUNK}
+ * purchases, each range folds into its own {@code long[]} indexed by
+ * NameDictionary id, and the arrays are summed on the way back up.
+ * Balances are whole cents, so the sum doesn't depend on how the list
+ * was split. Each partial also keeps the order names were first seen,
+ * and merging keeps the left one's order first. That gives the same map
+ * order as the serial scan, which settlement strategies see as their
+ * input order.
+ */
+final class BalanceScan extends RecursiveTask<BalanceScan.Partial> {
+    private static final long serialVersionUID = 1L;
+
+    /** Purchases one task folds without splitting further. */
+    static final int CHUNK = 4096;
+
+    private final List<Purchase> purchases;
+    private final int start, end;
+    private final NameDictionary names;
+    private final boolean ranged;
+    private final long lo, hi;
+
+    BalanceScan(List<Purchase> purchases, NameDictionary names, Date from, Date to) {
+        this(purchases, 0, purchases.size(), names, from != null || to != null,
+            from == null ? Long.MIN_VALUE : DayIndex.epochDay(from),
+            to   == null ? Long.MAX_VALUE : DayIndex.epochDay(to));
+    }
+
+    private BalanceScan(List<Purchase> purchases, int start, int end, NameDictionary names,
+                        boolean ranged, long lo, long hi) {
+        this.purchases = purchases;
+        this.start = start;
+        this.end = end;
+        this.names = names;
+        this.ranged = ranged;
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    @Override
+    protected Partial compute() {
+        if (end - start <= CHUNK) return fold();
+        int mid = (start + end) >>> 1;
+        BalanceScan left = new BalanceScan(purchases, start, mid, names, ranged, lo, hi);
+        left.fork();
+        Partial right = new BalanceScan(purchases, mid, end, names, ranged, lo, hi).compute();
+        return left.join().merge(right);
+    }
+
+    private Partial fold() {
+        Partial out = new Partial(names.size());
+        for (int i = start; i < end; i++) {
+            Purchase p = purchases.get(i);
+            if (ranged) {
+                Date d = p.getDate();
+                if (d == null) continue;
+                long day = DayIndex.epochDay(d);
+                if (day < lo || day > hi) continue;
+            }
+            long paid = 0;
+            for (Item it : p.getItems()) {
+                NameDictionary dict = it.names();
+                int[] ids = it.splitIds();
+                long[] shares = it.shares();
+                for (int k = 0; k < ids.length; k++) {
+                    int id = dict == names ? ids[k] : names.id(dict.name(ids[k]));
+                    out.post(id, -shares[k]);
+                    paid += shares[k];
+                }
+            }
+            out.post(names.id(p.getBuyer()), paid);
+        }
+        return out;
+    }
+
+    /** Net cents by dictionary id over one range, with first-seen order. */
+    static final class Partial {
+        long[] net;
+        private boolean[] seen;
+        int[] order = new int[8];
+        int count;
+
+        Partial(int ids) {
+            net = new long[Math.max(ids, 8)];
+            seen = new boolean[net.length];
+        }
+
+        void post(int id, long delta) {
+            if (id >= net.length) {
+                int n = Math.max(id + 1, net.length * 2);
+                net = Arrays.copyOf(net, n);
+                seen = Arrays.copyOf(seen, n);
+            }
+            if (!seen[id]) {
+                seen[id] = true;
+                if (count == order.length) order = Arrays.copyOf(order, count * 2);
+                order[count++] = id;
+            }
+            net[id] += delta;
+        }
+
+        /** Folds {@code right}, which covers the range after this one, into this. */
+        Partial merge(Partial right) {
+            for (int k = 0; k < right.count; k++) {
+                int id = right.order[k];
+                post(id, right.net[id]);
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package model;
+
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Per-day balance deltas for each roommate slot, kept as Fenwick trees so
+ * a point update and a prefix sum both cost O(log days). A settlement over
+ * {@code [from, to]} is then the difference of two prefix vectors.
+ * <p>
+ * The covered day range grows by doubling whenever a purchase falls
+ * outside it.
+ */
+final class DayIndex {
+    private static final int INITIAL_DAYS = 512;
+
+    private long baseDay;
+    private int days;
+    private long[][] daily = new long[0][];
+    private long[][] tree = new long[0][];
+
+    /** Epoch day of {@code d} in the local time zone. */
+    static long epochDay(Date d) {
+        return d.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    void clear() {
+        days = 0;
+        daily = new long[0][];
+        tree = new long[0][];
+    }
+
+    void add(int slot, long day, long delta) {
+        if (days == 0) {
+            days = INITIAL_DAYS;
+            baseDay = day - days / 2;
+        }
+        if (day < baseDay || day >= baseDay + days) grow(day);
+        if (slot >= daily.length) addSlots(slot + 1);
+        int i = (int) (day - baseDay);
+        daily[slot][i] += delta;
+        long[] t = tree[slot];
+        for (int k = i + 1; k <= days; k += k & -k) t[k] += delta;
+    }
+
+    /**
+     * Fills {@code out[slot]} with the sum of every delta dated on or
+     * before {@code day}.
+     */
+    void prefix(long day, long[] out) {
+        Arrays.fill(out, 0);
+        if (days == 0 || day < baseDay) return;
+        int n = day >= baseDay + days ? days : (int) (day - baseDay + 1);
+        for (int s = 0; s < tree.length && s < out.length; s++) {
+            long[] t = tree[s];
+            long sum = 0;
+            for (int k = n; k > 0; k -= k & -k) sum += t[k];
+            out[s] = sum;
+        }
+    }
+
+    private void addSlots(int n) {
+        int old = daily.length;
+        daily = Arrays.copyOf(daily, n);
+        tree = Arrays.copyOf(tree, n);
+        for (int s = old; s < n; s++) {
+            daily[s] = new long[days];
+            tree[s] = new long[days + 1];
+        }
+    }
+
+    /** Doubles the window until it covers {@code day}, rebuilding the trees. */
+    private void grow(long day) {
+        long lo = baseDay, hi = baseDay + days;
+        while (day < lo || day >= hi) {
+            long span = hi - lo;
+            if (day < lo) lo -= span; else hi += span;
+        }
+        int newDays = (int) (hi - lo);
+        int shift = (int) (baseDay - lo);
+        for (int s = 0; s < daily.length; s++) {
+            long[] d = new long[newDays];
+            System.arraycopy(daily[s], 0, d, shift, days);
+            daily[s] = d;
+            tree[s] = build(d);
+        }
+        baseDay = lo;
+        days = newDays;
+    }
+
+    /** O(n) Fenwick construction from raw per-day values. */
+    private static long[] build(long[] d) {
+        long[] t = new long[d.length + 1];
+        for (int i = 1; i <= d.length; i++) {
+            t[i] += d[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= d.length) t[parent] += t[i];
+        }
+        return t;
+    }
+}
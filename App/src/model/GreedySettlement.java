@@ -0,0 +1,38 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The original walk: pair debtors and creditors in input order, moving to
+ * the next one whenever the current one is settled. Kept as a baseline.
+ */
+final class GreedySettlement implements SettlementStrategy {
+    @Override
+    public List<Transfer> settle(String[] names, long[] cents) {
+        long[] left = cents.clone();
+        List<Integer> debtors = new ArrayList<>();
+        List<Integer> creditors = new ArrayList<>();
+        for (int k = 0; k < left.length; k++) {
+            if (left[k] < 0) debtors.add(k);
+            else if (left[k] > 0) creditors.add(k);
+        }
+        List<Transfer> out = new ArrayList<>();
+        int i = 0, j = 0;
+        while (i < debtors.size() && j < creditors.size()) {
+            int d = debtors.get(i), c = creditors.get(j);
+            long amt = Math.min(-left[d], left[c]);
+            out.add(new Transfer(names[d], names[c], amt));
+            left[d] += amt;
+            left[c] -= amt;
+            if (left[d] == 0) i++;
+            if (left[c] == 0) j++;
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "Greedy (input order)";
+    }
+}
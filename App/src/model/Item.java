@@ -1,32 +1,75 @@
 package model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Represents a single line‐item in a Purchase.
  * Jackson will ignore any JSON fields we don’t explicitly model.
+ * <p>
+ * The cost is held in whole cents; {@link #getCost()} and
+ * {@link #setCost(double)} are the dollar view used for JSON.
+ * <p>
+ * Splits are two parallel arrays, roommate ids in a {@link NameDictionary}
+ * and their ratios, kept in name order. The arrays are replaced on every
+ * change, never written in place. {@link #getSplits()} is a live Map view
+ * over them for code that wants one.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Item implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    /** Java serialization keeps the original layout: dollars and a split map. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("id", Long.class),
+        new ObjectStreamField("description", String.class),
+        new ObjectStreamField("cost", double.class),
+        new ObjectStreamField("taxRate", double.class),
+        new ObjectStreamField("splits", Map.class),
+    };
+
+    private static final int[] NO_IDS = {};
+    private static final double[] NO_RATIOS = {};
+
     private Long id;
     private String description;
-    private double cost;
+    private long costCents;
     private double taxRate;
-    private Map<String, Double> splits = new HashMap<>();
+    private NameDictionary names = NameDictionary.DETACHED;
+    private int[] splitIds = NO_IDS;
+    private double[] splitRatios = NO_RATIOS;
 
     /** Jackson needs this. */
     public Item() { }
 
-    public Item(String description, double cost, double taxRate, Map<String, Double> splits) {
+    public Item(String description, long costCents, double taxRate, Map<String, Double> splits) {
+        this.description = description;
+        this.costCents = costCents;
+        this.taxRate = taxRate;
+        setSplits(splits);
+    }
+
+    /**
+     * Builds an item straight from split arrays, e.g. in a storage layer.
+     * The arrays are taken over, not copied; {@code splitIds} must be ids
+     * in {@code names}.
+     */
+    public Item(String description, long costCents, double taxRate,
+                NameDictionary names, int[] splitIds, double[] splitRatios) {
         this.description = description;
-        this.cost = cost;
+        this.costCents = costCents;
         this.taxRate = taxRate;
-        this.splits = new HashMap<>(splits);
+        this.names = names;
+        sortByName(names, splitIds, splitRatios);
+        this.splitIds = splitIds;
+        this.splitRatios = splitRatios;
     }
 
     public Long getId() { return id; }
@@ -35,17 +78,203 @@ public class Item implements Serializable {
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
 
-    public double getCost() { return cost; }
-    public void setCost(double cost) { this.cost = cost; }
+    @JsonIgnore public long getCostCents() { return costCents; }
+    @JsonIgnore public void setCostCents(long costCents) { this.costCents = costCents; }
+
+    /** dollar view of the cost, for JSON */
+    public double getCost() { return Money.toDouble(costCents); }
+    public void setCost(double cost) { this.costCents = Money.ofDouble(cost); }
 
     public double getTaxRate() { return taxRate; }
     public void setTaxRate(double taxRate) { this.taxRate = taxRate; }
 
-    public Map<String, Double> getSplits() { return splits; }
-    public void setSplits(Map<String, Double> splits) { this.splits = splits; }
+    /** Live view of the splits; writes through to this item. */
+    public Map<String, Double> getSplits() { return new SplitMap(); }
+
+    public void setSplits(Map<String, Double> splits) {
+        int[] ids = new int[splits.size()];
+        double[] ratios = new double[ids.length];
+        int i = 0;
+        for (Map.Entry<String, Double> e : splits.entrySet()) {
+            ids[i] = names.id(e.getKey());
+            ratios[i++] = e.getValue();
+        }
+        sortByName(names, ids, ratios);
+        splitIds = ids;
+        splitRatios = ratios;
+    }
+
+    public int splitCount() { return splitIds.length; }
+    public String splitName(int i) { return names.name(splitIds[i]); }
+    public double splitRatio(int i) { return splitRatios[i]; }
+
+    /** cost + tax in cents, the tax rounded once (not used for JSON) */
+    @JsonIgnore public long getTotalCents() {
+        return Money.withTax(costCents, taxRate);
+    }
+
+    /**
+     * Hands each roommate in the split their share of {@link #getTotalCents()},
+     * allocated with {@link Money#allocate} in name order so the same item
+     * always splits the same way and the shares add up to the total.
+     */
+    public void forEachShare(ObjLongConsumer<String> action) {
+        int[] ids = splitIds;
+        long[] shares = Money.allocate(getTotalCents(), splitRatios);
+        for (int i = 0; i < ids.length; i++) action.accept(names.name(ids[i]), shares[i]);
+    }
+
+    // ----------------------------------------------------------------
+    // Package access for the ledger and PurchaseManager
+    // ----------------------------------------------------------------
+    NameDictionary names() { return names; }
+
+    /** Shared, not copied: never modify. */
+    int[] splitIds() { return splitIds; }
+
+    /** Shares of the total, aligned with {@link #splitIds()}. */
+    long[] shares() { return Money.allocate(getTotalCents(), splitRatios); }
+
+    /** Re-expresses the split ids in {@code dict}, the holding manager's dictionary. */
+    void bindNames(NameDictionary dict) {
+        if (dict == names) return;
+        int[] ids = new int[splitIds.length];
+        for (int i = 0; i < ids.length; i++) ids[i] = dict.id(names.name(splitIds[i]));
+        names = dict;
+        splitIds = ids;
+    }
+
+    private int indexOf(Object name) {
+        if (!(name instanceof String)) return -1;
+        int id = names.find((String) name);
+        if (id < 0) return -1;
+        int[] ids = splitIds;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) return i;
+        }
+        return -1;
+    }
+
+    private Double putSplit(String name, double ratio) {
+        int i = indexOf(name);
+        if (i >= 0) {
+            double[] ratios = splitRatios.clone();
+            Double old = ratios[i];
+            ratios[i] = ratio;
+            splitRatios = ratios;
+            return old;
+        }
+        int n = splitIds.length;
+        int[] ids = Arrays.copyOf(splitIds, n + 1);
+        double[] ratios = Arrays.copyOf(splitRatios, n + 1);
+        ids[n] = names.id(name);
+        ratios[n] = ratio;
+        sortByName(names, ids, ratios);
+        splitIds = ids;
+        splitRatios = ratios;
+        return null;
+    }
+
+    private Double removeSplit(Object name) {
+        int i = indexOf(name);
+        if (i < 0) return null;
+        int n = splitIds.length;
+        int[] ids = new int[n - 1];
+        double[] ratios = new double[n - 1];
+        System.arraycopy(splitIds, 0, ids, 0, i);
+        System.arraycopy(splitIds, i + 1, ids, i, n - i - 1);
+        System.arraycopy(splitRatios, 0, ratios, 0, i);
+        System.arraycopy(splitRatios, i + 1, ratios, i, n - i - 1);
+        Double old = splitRatios[i];
+        splitIds = ids;
+        splitRatios = ratios;
+        return old;
+    }
+
+    /** Insertion sort; splits have a handful of entries. */
+    private static void sortByName(NameDictionary names, int[] ids, double[] ratios) {
+        for (int i = 1; i < ids.length; i++) {
+            int id = ids[i];
+            double r = ratios[i];
+            String name = names.name(id);
+            int j = i - 1;
+            while (j >= 0 && names.name(ids[j]).compareTo(name) > 0) {
+                ids[j + 1] = ids[j];
+                ratios[j + 1] = ratios[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            ratios[j + 1] = r;
+        }
+    }
+
+    /** Map adapter over the split arrays. */
+    private final class SplitMap extends AbstractMap<String, Double> {
+        @Override public int size() { return splitIds.length; }
+        @Override public boolean containsKey(Object k) { return indexOf(k) >= 0; }
+
+        @Override public Double get(Object k) {
+            int i = indexOf(k);
+            return i < 0 ? null : splitRatios[i];
+        }
+
+        @Override public Double put(String k, Double v) { return putSplit(k, v); }
+        @Override public Double remove(Object k) { return removeSplit(k); }
+
+        @Override public void clear() {
+            splitIds = NO_IDS;
+            splitRatios = NO_RATIOS;
+        }
+
+        @Override public Set<Entry<String, Double>> entrySet() {
+            return new AbstractSet<Entry<String, Double>>() {
+                @Override public int size() { return splitIds.length; }
+
+                @Override public Iterator<Entry<String, Double>> iterator() {
+                    int[] ids = splitIds;
+                    double[] ratios = splitRatios;
+                    return new Iterator<Entry<String, Double>>() {
+                        int next;
+                        String last;
+
+                        @Override public boolean hasNext() { return next < ids.length; }
+
+                        @Override public Entry<String, Double> next() {
+                            if (next >= ids.length) throw new NoSuchElementException();
+                            last = names.name(ids[next]);
+                            return new SimpleImmutableEntry<>(last, ratios[next++]);
+                        }
+
+                        @Override public void remove() {
+                            if (last == null) throw new IllegalStateException();
+                            removeSplit(last);
+                            last = null;
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField f = out.putFields();
+        f.put("id", id);
+        f.put("description", description);
+        f.put("cost", getCost());
+        f.put("taxRate", taxRate);
+        f.put("splits", new HashMap<>(getSplits()));
+        out.writeFields();
+    }
 
-    /** convenience—cost + tax (not used for JSON) */
-    public double getTotalCost() {
-        return cost * (1 + taxRate);
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        id = (Long) f.get("id", null);
+        description = (String) f.get("description", null);
+        costCents = Money.ofDouble(f.get("cost", 0.0));
+        taxRate = f.get("taxRate", 0.0);
+        names = NameDictionary.DETACHED;
+        Map<String, Double> splits = (Map<String, Double>) f.get("splits", null);
+        setSplits(splits == null ? Collections.emptyMap() : splits);
     }
 }
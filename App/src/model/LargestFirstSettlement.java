@@ -0,0 +1,43 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repeatedly matches the largest remaining debt with the largest remaining
+ * credit. Ties go to whoever comes first in the input.
+ */
+final class LargestFirstSettlement implements SettlementStrategy {
+    @Override
+    public List<Transfer> settle(String[] names, long[] cents) {
+        int[] all = new int[cents.length];
+        for (int k = 0; k < all.length; k++) all[k] = k;
+        List<Transfer> out = new ArrayList<>();
+        settle(names, cents.clone(), all, out);
+        return out;
+    }
+
+    /**
+     * Settles the members listed in {@code group}, updating {@code left}
+     * in place. Shared with {@link MinTransfersSettlement}.
+     */
+    static void settle(String[] names, long[] left, int[] group, List<Transfer> out) {
+        while (true) {
+            int d = -1, c = -1;
+            for (int k : group) {
+                if (left[k] < 0 && (d < 0 || left[k] < left[d])) d = k;
+                if (left[k] > 0 && (c < 0 || left[k] > left[c])) c = k;
+            }
+            if (d < 0 || c < 0) return;
+            long amt = Math.min(-left[d], left[c]);
+            out.add(new Transfer(names[d], names[c], amt));
+            left[d] += amt;
+            left[c] -= amt;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Largest first";
+    }
+}
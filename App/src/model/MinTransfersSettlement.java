@@ -0,0 +1,97 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Exact minimum number of transfers.
+ * <p>
+ * A zero-sum group of k people can always settle in k - 1 payments, so
+ * the fewest payments for n people is n minus the largest number of
+ * disjoint zero-sum groups they can be split into. That maximum comes from
+ * a DP over subsets of the people with a non-zero balance:
+ * {@code best[mask] = max over i in mask of best[mask without i]}, plus
+ * one when {@code mask} itself sums to zero. Following the argmax back
+ * from the full set gives a chain of nested zero-sum sets. Their
+ * differences are the groups, and each is settled largest-first.
+ * <p>
+ * The table has 2^n entries, so groups with more than {@link #MAX_EXACT}
+ * non-zero balances fall back to {@link LargestFirstSettlement}. Filling
+ * it checks for interruption, so a run that is no longer wanted ends
+ * with a CancellationException instead of finishing.
+ */
+final class MinTransfersSettlement implements SettlementStrategy {
+    static final int MAX_EXACT = 20;
+
+    @Override
+    public List<Transfer> settle(String[] names, long[] cents) {
+        long[] left = cents.clone();
+        int n = 0;
+        int[] live = new int[left.length];
+        for (int k = 0; k < left.length; k++) {
+            if (left[k] != 0) live[n++] = k;
+        }
+        List<Transfer> out = new ArrayList<>();
+        if (n > MAX_EXACT) {
+            int[] group = new int[n];
+            System.arraycopy(live, 0, group, 0, n);
+            LargestFirstSettlement.settle(names, left, group, out);
+            return out;
+        }
+
+        int full = (1 << n) - 1;
+        long[] sum = new long[full + 1];
+        byte[] best = new byte[full + 1];
+        for (int mask = 1; mask <= full; mask++) {
+            if ((mask & 0xFFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("settlement interrupted");
+            }
+            int low = Integer.numberOfTrailingZeros(mask);
+            sum[mask] = sum[mask & (mask - 1)] + left[live[low]];
+            int b = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int i = Integer.numberOfTrailingZeros(rest);
+                b = Math.max(b, best[mask ^ (1 << i)]);
+            }
+            best[mask] = (byte) (sum[mask] == 0 ? b + 1 : b);
+        }
+
+        // Walk back from the full set, cutting a group off each time the
+        // chain passes through a zero-sum subset.
+        List<int[]> groups = new ArrayList<>();
+        int mask = full, groupStart = full;
+        while (mask != 0) {
+            int next = -1;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int i = Integer.numberOfTrailingZeros(rest);
+                int m = mask ^ (1 << i);
+                if (next < 0 || best[m] > best[next]) next = m;
+            }
+            mask = next;
+            if (mask == 0 || sum[mask] == 0) {
+                groups.add(members(groupStart & ~mask, live));
+                groupStart = mask;
+            }
+        }
+        // the walk peels groups from the outside in; settle inner ones first
+        for (int g = groups.size() - 1; g >= 0; g--) {
+            LargestFirstSettlement.settle(names, left, groups.get(g), out);
+        }
+        return out;
+    }
+
+    private static int[] members(int mask, int[] live) {
+        int[] out = new int[Integer.bitCount(mask)];
+        int k = 0;
+        for (int rest = mask; rest != 0; rest &= rest - 1) {
+            out[k++] = live[Integer.numberOfTrailingZeros(rest)];
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "Fewest transfers";
+    }
+}
@@ -0,0 +1,145 @@
+package model;
+
+/**
+ * Money is a primitive {@code long} count of cents everywhere in the model.
+ * This class holds the conversions to and from text and the rule for
+ * splitting an amount into shares.
+ */
+public final class Money {
+    /** Slack in a split's ratios still counted as the whole amount, as the item dialog allows. */
+    public static final double WHOLE = 1e-3;
+
+    private Money() { }
+
+    /**
+     * Parses a decimal amount such as {@code "12"}, {@code "-3.5"} or
+     * {@code "$1,299.999"} into cents, rounding half away from zero.
+     * @throws NumberFormatException if {@code s} is not a number
+     */
+    public static long parse(CharSequence s) {
+        int i = 0, n = s.length();
+        while (i < n && Character.isWhitespace(s.charAt(i))) i++;
+        while (n > i && Character.isWhitespace(s.charAt(n - 1))) n--;
+        boolean neg = false;
+        if (i < n && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            neg = s.charAt(i) == '-';
+            i++;
+        }
+        if (i < n && s.charAt(i) == '$') i++;
+        long units = 0;
+        int digits = 0, fraction = -1;
+        boolean roundUp = false;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == ',' && fraction < 0) continue;
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Not an amount: \"" + s + "\"");
+            }
+            digits++;
+            if (fraction >= 2) {
+                if (fraction == 2) roundUp = c >= '5';
+                fraction++;
+                continue;
+            }
+            units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+            if (fraction >= 0) fraction++;
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not an amount: \"" + s + "\"");
+        }
+        for (int f = Math.max(fraction, 0); f < 2; f++) units = Math.multiplyExact(units, 10);
+        if (roundUp) units++;
+        return neg ? -units : units;
+    }
+
+    /** Formats cents as a plain decimal, e.g. {@code -1234 -> "-12.34"}. */
+    public static String format(long cents) {
+        return append(new StringBuilder(12), cents).toString();
+    }
+
+    /** Appends {@link #format}'s text without creating an intermediate String. */
+    public static StringBuilder append(StringBuilder sb, long cents) {
+        if (cents < 0) {
+            sb.append('-');
+            if (cents == Long.MIN_VALUE) {
+                // -MIN_VALUE overflows; peel off the last digit first
+                return sb.append(-(cents / 100)).append('.')
+                         .append((char) ('0' - cents % 100 / 10))
+                         .append((char) ('0' - cents % 10));
+            }
+            cents = -cents;
+        }
+        long frac = cents % 100;
+        return sb.append(cents / 100).append('.')
+                 .append((char) ('0' + frac / 10))
+                 .append((char) ('0' + frac % 10));
+    }
+
+    /** Nearest cent to a dollar amount held in a double (legacy data, JSON). */
+    public static long ofDouble(double dollars) {
+        return Math.round(dollars * 100);
+    }
+
+    /** Dollar value of {@code cents}, for JSON and display APIs that want doubles. */
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Adds tax at {@code rate} to {@code cents}: the tax is rounded to the
+     * nearest cent once, so the same inputs always give the same total.
+     */
+    public static long withTax(long cents, double rate) {
+        return cents + Math.round(cents * rate);
+    }
+
+    /**
+     * Splits {@code total} into shares proportional to {@code ratios} using
+     * the largest-remainder rule: everyone gets the floor of their exact
+     * share, then the leftover cents go one at a time to the largest
+     * fractional parts, ties to the lower index. Ratios adding up to 1
+     * within {@link #WHOLE} are treated as the whole amount and the shares
+     * add up to exactly {@code total}; otherwise (say a roommate's split was
+     * removed) they add up to {@code total * sum(ratios)} rounded to the cent.
+     */
+    public static long[] allocate(long total, double[] ratios) {
+        int n = ratios.length;
+        long[] out = new long[n];
+        if (n == 0 || total == 0) return out;
+        long abs = Math.abs(total);
+        double ratioSum = 0;
+        for (double r : ratios) ratioSum += r;
+        boolean whole = Math.abs(ratioSum - 1) <= WHOLE;
+        double scale = whole ? 1 / ratioSum : 1;
+        long target = whole ? abs : Math.round(abs * ratioSum);
+
+        double[] rem = new double[n];
+        long given = 0;
+        for (int i = 0; i < n; i++) {
+            double exact = abs * ratios[i] * scale;
+            out[i] = (long) Math.floor(exact);
+            rem[i] = exact - out[i];
+            given += out[i];
+        }
+        // at most n cents are left over; hand them out largest remainder first
+        for (long left = target - given; left > 0; ) {
+            double[] r = rem.clone();
+            for (int k = 0; k < n && left > 0; k++, left--) {
+                int best = 0;
+                for (int i = 1; i < n; i++) {
+                    if (r[i] > r[best]) best = i;
+                }
+                out[best]++;
+                r[best] = Double.NEGATIVE_INFINITY;
+            }
+        }
+        if (total < 0) {
+            for (int i = 0; i < n; i++) out[i] = -out[i];
+        }
+        return out;
+    }
+}
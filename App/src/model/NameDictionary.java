@@ -0,0 +1,52 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only mapping between roommate names and small int ids. Items
+ * keep their splits as id arrays against the dictionary of the
+ * PurchaseManager that holds them, so a split costs an int and a double
+ * instead of a hash entry and a boxed Double. Ids are never reused or
+ * reassigned, so arrays built against a dictionary stay valid.
+ */
+public final class NameDictionary {
+    /** Dictionary for items not (yet) held by a PurchaseManager. */
+    static final NameDictionary DETACHED = new NameDictionary();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[8];
+    private int size;
+
+    /** @return the id for {@code name}, assigning the next one if it is new */
+    public int id(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : assign(name);
+    }
+
+    private synchronized int assign(String name) {
+        Integer id = ids.get(name);
+        if (id != null) return id;
+        String[] n = names;
+        if (size == n.length) n = Arrays.copyOf(n, size * 2);
+        n[size] = name;
+        names = n; // volatile write publishes the new slot
+        ids.put(name, size);
+        return size++;
+    }
+
+    /** @return the id for {@code name}, or -1 if it was never assigned */
+    public int find(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -1,37 +1,55 @@
 package model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Represents a roommate Purchase made up of Items.
  * Must have a no-arg constructor for JSON deserialization.
+ * <p>
+ * The total is held in whole cents; {@link #getTotalCost()} and
+ * {@link #setTotalCost(double)} are the dollar view used for JSON.
  */
 public class Purchase implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private Long id;
+    /** Server version this copy was based on; 0 until it has been synced. */
+    private long version;
+    /** Names a create to the server, so it is stored once however often it is sent. */
+    private String clientKey;
     private String buyer;
     private String store;
     private Date date;
-    private double totalCost;
+    private long totalCents;
     private List<Item> items = new ArrayList<>();
+    private transient volatile Supplier<List<Item>> itemLoader;
 
     /** Jackson needs this. */
     public Purchase() { }
 
-    public Purchase(String buyer, String store, Date date, double totalCost) {
+    public Purchase(String buyer, String store, Date date, long totalCents) {
         this.buyer = buyer;
         this.store = store;
         this.date = date;
-        this.totalCost = totalCost;
+        this.totalCents = totalCents;
     }
 
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public String getClientKey() { return clientKey; }
+    public void setClientKey(String clientKey) { this.clientKey = clientKey; }
+
     public String getBuyer() { return buyer; }
     public void setBuyer(String buyer) { this.buyer = buyer; }
 
@@ -41,12 +59,62 @@ public class Purchase implements Serializable {
     public Date getDate() { return date; }
     public void setDate(Date date) { this.date = date; }
 
-    public double getTotalCost() { return totalCost; }
-    public void setTotalCost(double totalCost) { this.totalCost = totalCost; }
+    @JsonIgnore public long getTotalCents() { return totalCents; }
+    @JsonIgnore public void setTotalCents(long totalCents) { this.totalCents = totalCents; }
 
-    public List<Item> getItems() { return items; }
-    public void setItems(List<Item> items) { this.items = items; }
+    /** dollar view of the total, for JSON */
+    public double getTotalCost() { return Money.toDouble(totalCents); }
+    public void setTotalCost(double totalCost) { this.totalCents = Money.ofDouble(totalCost); }
 
-    public void addItem(Item item) { items.add(item); }
-    public void removeItem(Item item) { items.remove(item); }
+    public List<Item> getItems() {
+        if (itemLoader != null) loadItems();
+        return items;
+    }
+    public void setItems(List<Item> items) {
+        this.itemLoader = null;
+        this.items = items;
+    }
+
+    public void addItem(Item item) { getItems().add(item); }
+    public void removeItem(Item item) { getItems().remove(item); }
+
+    /**
+     * Defers decoding of the item list until something first asks for it.
+     * Used by the storage layer so loading a ledger only reads headers.
+     */
+    public void deferItems(Supplier<List<Item>> loader) {
+        this.itemLoader = loader;
+    }
+
+    /**
+     * Moves the splits of every loaded item onto {@code names}. Deferred
+     * items are left to their loader, which binds them when it decodes.
+     */
+    void bindNames(NameDictionary names) {
+        if (itemLoader != null) return;
+        for (Item it : items) it.bindNames(names);
+    }
+
+    private synchronized void loadItems() {
+        Supplier<List<Item>> loader = itemLoader;
+        if (loader != null) {
+            items = new ArrayList<>(loader.get());
+            itemLoader = null;
+        }
+    }
+
+    /** Reads files written when the total was a double named {@code totalCost}. */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField f = in.readFields();
+        id = (Long) f.get("id", null);
+        buyer = (String) f.get("buyer", null);
+        store = (String) f.get("store", null);
+        date = (Date) f.get("date", null);
+        totalCents = f.getObjectStreamClass().getField("totalCost") != null
+            ? Money.ofDouble(f.get("totalCost", 0.0))
+            : f.get("totalCents", 0L);
+        items = (List<Item>) f.get("items", null);
+        if (items == null) items = new ArrayList<>();
+    }
 }
@@ -0,0 +1,21 @@
+package model;
+
+/**
+ * Receives every mutation made through a PurchaseManager.
+ * All methods default to no-ops so listeners only override what they need.
+ */
+public interface PurchaseListener {
+    /** A purchase was appended at {@code index}. */
+    default void purchaseAdded(int index, Purchase p) { }
+
+    /** The purchase at {@code index} was replaced by {@code p}. */
+    default void purchaseUpdated(int index, Purchase old, Purchase p) { }
+
+    /** The purchase that used to sit at {@code index} was removed. */
+    default void purchaseRemoved(int index, Purchase p) { }
+
+    default void roommateAdded(String name) { }
+
+    /** Called after the roommate's splits have been stripped from every item. */
+    default void roommateRemoved(String name) { }
+}
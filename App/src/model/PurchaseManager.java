@@ -2,14 +2,25 @@ package model;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Manages all purchases and the list of roommates.
+ * Every mutation is reported to the registered {@link PurchaseListener}s.
  */
 public class PurchaseManager implements Serializable {
+    // Pinned to the value the JVM computed for the original class so that
+    // existing purchases.dat files keep deserializing.
+    private static final long serialVersionUID = 8346953907596884561L;
+
     private List<Purchase> purchases;
     private List<String> roommates;
+    private transient List<PurchaseListener> listeners;
+    private transient BalanceLedger ledger;
+    private transient NameDictionary names;
 
     public PurchaseManager() {
         purchases = new ArrayList<>();
@@ -21,16 +32,91 @@ public class PurchaseManager implements Serializable {
         roommates.add("Casey");
     }
 
+    /** Wraps lists supplied by a storage layer, e.g. a lazily decoded one. */
+    public PurchaseManager(List<Purchase> purchases, List<String> roommates) {
+        this(purchases, roommates, new NameDictionary());
+    }
+
+    /**
+     * As above, with the dictionary the storage layer already built the
+     * purchases' splits against.
+     */
+    public PurchaseManager(List<Purchase> purchases, List<String> roommates,
+                           NameDictionary names) {
+        this.purchases = purchases;
+        this.roommates = roommates;
+        this.names = names;
+    }
+
+    public void addListener(PurchaseListener l) {
+        listeners().add(l);
+    }
+
+    public void removeListener(PurchaseListener l) {
+        listeners().remove(l);
+    }
+
+    private List<PurchaseListener> listeners() {
+        if (listeners == null) {
+            // copy-on-write so a listener can be swapped from another thread
+            listeners = new CopyOnWriteArrayList<>();
+        }
+        return listeners;
+    }
+
+    /** @return the dictionary this manager's item splits refer to by id */
+    public NameDictionary getNames() {
+        if (names == null) {
+            // deserialized managers start without one
+            names = new NameDictionary();
+        }
+        return names;
+    }
+
+    /** @return running per-roommate balances, kept current as purchases change */
+    public BalanceLedger getLedger() {
+        if (ledger == null) {
+            ledger = new BalanceLedger(this);
+            addListener(ledger);
+        }
+        return ledger;
+    }
+
     public List<Purchase> getPurchases() {
         return purchases;
     }
 
     public void addPurchase(Purchase p) {
+        p.bindNames(getNames());
         purchases.add(p);
+        int index = purchases.size() - 1;
+        for (PurchaseListener l : listeners()) l.purchaseAdded(index, p);
+    }
+
+    /**
+     * Appends {@code batch} in order, e.g. from an import. Listeners hear
+     * about each purchase exactly as with {@link #addPurchase}.
+     */
+    public void addPurchases(Collection<Purchase> batch) {
+        if (purchases instanceof ArrayList) {
+            ((ArrayList<Purchase>) purchases).ensureCapacity(purchases.size() + batch.size());
+        }
+        for (Purchase p : batch) addPurchase(p);
+    }
+
+    /**
+     * Replaces the purchase at {@code index}. Edits go through here rather
+     * than mutating the stored Purchase so listeners see both versions.
+     */
+    public void setPurchase(int index, Purchase p) {
+        p.bindNames(getNames());
+        Purchase old = purchases.set(index, p);
+        for (PurchaseListener l : listeners()) l.purchaseUpdated(index, old, p);
     }
 
     public void removePurchase(int index) {
-        purchases.remove(index);
+        Purchase old = purchases.remove(index);
+        for (PurchaseListener l : listeners()) l.purchaseRemoved(index, old);
     }
 
     public List<String> getRoommates() {
@@ -40,16 +126,23 @@ public class PurchaseManager implements Serializable {
     public void addRoommate(String name) {
         if (!roommates.contains(name)) {
             roommates.add(name);
+            for (PurchaseListener l : listeners()) l.roommateAdded(name);
         }
     }
 
     public void removeRoommate(String name) {
         roommates.remove(name);
-        // Remove splits referencing removed roommate
+        // Remove splits referencing removed roommate, moving the ledger
+        // from each item's old shares to its redistributed ones
         for (Purchase p : purchases) {
             for (Item it : p.getItems()) {
-                it.getSplits().remove(name);
+                Map<String, Double> splits = it.getSplits();
+                if (!splits.containsKey(name)) continue;
+                if (ledger != null) ledger.applyItem(p, it, -1);
+                splits.remove(name);
+                if (ledger != null) ledger.applyItem(p, it, 1);
             }
         }
+        for (PurchaseListener l : listeners()) l.roommateRemoved(name);
     }
-}
\ No newline at end of file
+}
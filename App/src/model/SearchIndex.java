@@ -0,0 +1,112 @@
+package model;
+
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Inverted index from word to purchases, for as-you-type search.
+ * <p>
+ * A purchase is indexed under the words of its buyer, store, date
+ * ({@code yyyy-MM-dd}), total and every item description. A query
+ * matches a purchase when each of its words is the start of one of the
+ * purchase's words, so {@code "saf milk"} finds Safeway purchases with
+ * milk in them. Words are the lower-cased runs of letters and digits;
+ * digits joined by {@code - . /} stay one word, which keeps dates and
+ * amounts whole. Words are sorted, so a prefix is a range scan.
+ * <p>
+ * Purchases are compared by identity, matching how PurchaseManager
+ * replaces them on edit. Not thread-safe; confine an index to one thread.
+ */
+public final class SearchIndex {
+    private final NavigableMap<String, Set<Purchase>> postings = new TreeMap<>();
+    /** Words each purchase was indexed under, so removal doesn't re-read a purchase edited since. */
+    private final Map<Purchase, String[]> indexed = new IdentityHashMap<>();
+
+    public int size() {
+        return indexed.size();
+    }
+
+    public void add(Purchase p) {
+        if (indexed.containsKey(p)) return;
+        Set<String> words = new LinkedHashSet<>();
+        addWords(p.getBuyer(), words);
+        addWords(p.getStore(), words);
+        if (p.getDate() != null) {
+            addWords(p.getDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toString(), words);
+        }
+        addWords(Money.format(p.getTotalCents()), words);
+        for (Item it : p.getItems()) addWords(it.getDescription(), words);
+
+        String[] w = words.toArray(new String[0]);
+        indexed.put(p, w);
+        for (String word : w) postings.computeIfAbsent(word, k -> identitySet()).add(p);
+    }
+
+    public void remove(Purchase p) {
+        String[] words = indexed.remove(p);
+        if (words == null) return;
+        for (String word : words) {
+            Set<Purchase> posting = postings.get(word);
+            posting.remove(p);
+            if (posting.isEmpty()) postings.remove(word);
+        }
+    }
+
+    /**
+     * Purchases matching every word of {@code query}, or {@code null} when
+     * the query has no words and so should not filter anything.
+     */
+    public Set<Purchase> search(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        addWords(query, terms);
+        if (terms.isEmpty()) return null;
+        // longer words usually match less, so start with them
+        List<String> ordered = new ArrayList<>(terms);
+        ordered.sort(Comparator.comparingInt(String::length).reversed());
+        Set<Purchase> result = null;
+        for (String term : ordered) {
+            result = startingWith(term, result);
+            if (result.isEmpty()) break;
+        }
+        return result;
+    }
+
+    /** Purchases with a word starting with {@code prefix}, limited to {@code within} if given. */
+    private Set<Purchase> startingWith(String prefix, Set<Purchase> within) {
+        Set<Purchase> hits = identitySet();
+        for (Map.Entry<String, Set<Purchase>> e : postings.tailMap(prefix, true).entrySet()) {
+            if (!e.getKey().startsWith(prefix)) break;
+            if (within == null) {
+                hits.addAll(e.getValue());
+            } else {
+                for (Purchase p : e.getValue()) {
+                    if (within.contains(p)) hits.add(p);
+                }
+            }
+        }
+        return hits;
+    }
+
+    private static void addWords(String text, Set<String> out) {
+        if (text == null) return;
+        String s = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            char c = i < s.length() ? s.charAt(i) : ' ';
+            boolean part = Character.isLetterOrDigit(c)
+                || (c == '-' || c == '.' || c == '/') && start >= 0
+                    && Character.isDigit(s.charAt(i - 1))
+                    && i + 1 < s.length() && Character.isDigit(s.charAt(i + 1));
+            if (part) {
+                if (start < 0) start = i;
+            } else if (start >= 0) {
+                out.add(s.substring(start, i));
+                start = -1;
+            }
+        }
+    }
+
+    private static Set<Purchase> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
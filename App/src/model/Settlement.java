@@ -0,0 +1,36 @@
+package model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared settlement path for the Summary tab and the text export: turn
+ * balances into transfers with a {@link SettlementStrategy} and print them.
+ */
+public final class Settlement {
+    private Settlement() { }
+
+    /**
+     * Settles {@code balances} (in cents) with {@code strategy}, keeping the
+     * map's iteration order as the input order.
+     */
+    public static List<Transfer> settle(Map<String, Long> balances,
+                                        SettlementStrategy strategy) {
+        String[] names = new String[balances.size()];
+        long[] cents = new long[names.length];
+        int i = 0;
+        for (Map.Entry<String, Long> e : balances.entrySet()) {
+            names[i] = e.getKey();
+            cents[i] = e.getValue();
+            i++;
+        }
+        return strategy.settle(names, cents);
+    }
+
+    /** One "X pays Y $n.nn" line per transfer. */
+    public static String describe(List<Transfer> transfers) {
+        StringBuilder sb = new StringBuilder();
+        for (Transfer t : transfers) sb.append(t).append('\n');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Turns net balances into a list of payments that settles them.
+ * <p>
+ * Balances are in cents, positive for people who are owed money, and are
+ * given in a fixed order ({@code names[i]} owns {@code cents[i]}).
+ * Implementations must be deterministic: the same input always yields the
+ * same transfers in the same order. If the balances do not sum to zero,
+ * whatever cannot be matched is left unsettled.
+ */
+public interface SettlementStrategy {
+    SettlementStrategy GREEDY        = new GreedySettlement();
+    SettlementStrategy LARGEST_FIRST = new LargestFirstSettlement();
+    SettlementStrategy MIN_TRANSFERS = new MinTransfersSettlement();
+
+    List<Transfer> settle(String[] names, long[] cents);
+
+    /** @return all built-in strategies, for pickers and benchmarks */
+    static SettlementStrategy[] values() {
+        return new SettlementStrategy[] { MIN_TRANSFERS, LARGEST_FIRST, GREEDY };
+    }
+}
@@ -0,0 +1,25 @@
+package model;
+
+/**
+ * One settlement payment: {@code from} pays {@code to} an amount in cents.
+ */
+public final class Transfer {
+    private final String from;
+    private final String to;
+    private final long cents;
+
+    public Transfer(String from, String to, long cents) {
+        this.from = from;
+        this.to = to;
+        this.cents = cents;
+    }
+
+    public String getFrom() { return from; }
+    public String getTo() { return to; }
+    public long getCents() { return cents; }
+
+    @Override
+    public String toString() {
+        return from + " pays " + to + " $" + Money.format(cents);
+    }
+}
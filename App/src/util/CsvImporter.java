@@ -0,0 +1,528 @@
+package util;
+
+import model.Item;
+import model.Money;
+import model.NameDictionary;
+import model.Purchase;
+import model.PurchaseManager;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming CSV/TSV import of purchases, by default in the layout
+ * {@link ExportUtil#exportToCSV} writes.
+ * <p>
+ * The calling thread cuts the input into chunks of whole records (quoted
+ * fields may span lines), worker threads parse and validate the chunks in
+ * parallel, and the results are taken back in file order. Consecutive
+ * rows with the same date, buyer and store become one Purchase, and
+ * finished purchases are handed to a {@link Sink} in batches. Bad rows
+ * are skipped and reported with their line number.
+ */
+public final class CsvImporter {
+    /** Columns a {@link Mapping} can locate. */
+    public enum Field { DATE, BUYER, STORE, DESCRIPTION, COST, TAX_RATE, TOTAL, SPLITS }
+
+    /** Receives imported purchases, one batch at a time, in file order. */
+    public interface Sink {
+        void accept(List<Purchase> batch) throws IOException;
+    }
+
+    /** Told how far through the input the import is. */
+    public interface Progress {
+        void report(long charsRead, int rowsRead);
+    }
+
+    /** A row that could not be imported. */
+    public static final class RowError {
+        public final long line;
+        public final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + message;
+        }
+    }
+
+    /** Outcome of an import. Only the first {@link #MAX_ERRORS} errors are kept. */
+    public static final class Result {
+        public static final int MAX_ERRORS = 1000;
+
+        public int purchases;
+        public int items;
+        public int badRows;
+        public final List<RowError> errors = new ArrayList<>();
+
+        void error(RowError e) {
+            badRows++;
+            if (errors.size() < MAX_ERRORS) errors.add(e);
+        }
+    }
+
+    /**
+     * Where each field lives in the input. Columns are found by header
+     * name (case-insensitive); {@link Field#TOTAL} and {@link Field#SPLITS}
+     * are optional. Without a split column the buyer carries the item.
+     */
+    public static final class Mapping {
+        private final EnumMap<Field, String> headers = new EnumMap<>(Field.class);
+        private char delimiter = ',';
+        private DateTimeFormatter dates = DateTimeFormatter.ISO_LOCAL_DATE;
+
+        /** The layout exportToCSV writes. */
+        public static Mapping exportLayout() {
+            Mapping m = new Mapping();
+            m.headers.put(Field.DATE, "Date");
+            m.headers.put(Field.BUYER, "Buyer");
+            m.headers.put(Field.STORE, "Store");
+            m.headers.put(Field.DESCRIPTION, "Description");
+            m.headers.put(Field.COST, "Cost");
+            m.headers.put(Field.TAX_RATE, "TaxRate");
+            m.headers.put(Field.TOTAL, "Total");
+            m.headers.put(Field.SPLITS, "SplitMap");
+            return m;
+        }
+
+        /** Reads {@code field} from the column headed {@code header}; null drops it. */
+        public Mapping column(Field field, String header) {
+            if (header == null) headers.remove(field); else headers.put(field, header);
+            return this;
+        }
+
+        public Mapping delimiter(char delimiter) {
+            this.delimiter = delimiter;
+            return this;
+        }
+
+        /** Date format as a {@link DateTimeFormatter} pattern, e.g. {@code MM/dd/yyyy}. */
+        public Mapping datePattern(String pattern) {
+            this.dates = DateTimeFormatter.ofPattern(pattern);
+            return this;
+        }
+    }
+
+    private static final int CHUNK_ROWS = 4096;
+    private static final int BATCH_PURCHASES = 1000;
+
+    private final Mapping mapping;
+    private final int threads;
+
+    public CsvImporter(Mapping mapping) {
+        this(mapping, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CsvImporter(Mapping mapping, int threads) {
+        this.mapping = mapping;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Imports {@code file}: gzip-compressed if its name ends in {@code .gz},
+     * tab-separated if it (before any {@code .gz}) ends in {@code .tsv}.
+     */
+    public static Result importFile(File file, Sink sink, Progress progress)
+            throws IOException, InterruptedException {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) name = name.substring(0, name.length() - 3);
+        Mapping m = Mapping.exportLayout();
+        if (name.endsWith(".tsv")) m.delimiter('\t');
+        InputStream in = new FileInputStream(file);
+        try {
+            if (gzip) in = new GZIPInputStream(in, 1 << 16);
+            try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return new CsvImporter(m).run(r, sink, progress);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Bulk-adds each batch to {@code manager}. Call from the thread that owns it. */
+    public static Sink into(PurchaseManager manager) {
+        return manager::addPurchases;
+    }
+
+    /**
+     * Reads every record from {@code in}. Interrupting the calling thread
+     * stops the import between chunks with an InterruptedException; the
+     * batches already handed to {@code sink} stay delivered.
+     * @param progress may be null
+     */
+    public Result run(Reader in, Sink sink, Progress progress)
+            throws IOException, InterruptedException {
+        Result result = new Result();
+        RecordReader records = new RecordReader(in);
+        Chunk header = records.next(1);
+        if (header == null) return result;
+        int[] columns = resolve(header.fields(0, mapping.delimiter), header.lines[0]);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "CsvImporter-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Assembler out = new Assembler(sink, result);
+            ArrayDeque<Future<Parsed>> inFlight = new ArrayDeque<>();
+            int rows = 0;
+            Chunk chunk;
+            while ((chunk = records.next(CHUNK_ROWS)) != null) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                Chunk c = chunk;
+                inFlight.add(pool.submit(() -> parse(c, columns)));
+                rows += chunk.count;
+                if (inFlight.size() >= threads * 2) out.take(get(inFlight.poll()));
+                if (progress != null) progress.report(records.charsRead, rows);
+            }
+            while (!inFlight.isEmpty()) out.take(get(inFlight.poll()));
+            out.finish();
+            return result;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Parsed get(Future<Parsed> f) throws IOException, InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private int[] resolve(String[] header, long line) throws IOException {
+        int[] columns = new int[Field.values().length];
+        Arrays.fill(columns, -1);
+        for (Map.Entry<Field, String> e : mapping.headers.entrySet()) {
+            for (int i = 0; i < header.length; i++) {
+                if (header[i].trim().equalsIgnoreCase(e.getValue())) {
+                    columns[e.getKey().ordinal()] = i;
+                    break;
+                }
+            }
+        }
+        for (Field required : new Field[] {Field.DATE, Field.BUYER, Field.COST}) {
+            if (columns[required.ordinal()] < 0) {
+                throw new IOException("line " + line + ": no \""
+                    + mapping.headers.get(required) + "\" column for " + required);
+            }
+        }
+        return columns;
+    }
+
+    // ----------------------------------------------------------------
+    // Parsing (worker threads)
+    // ----------------------------------------------------------------
+    /** One validated row, or the error that rejected it. */
+    private static final class Row {
+        long line;
+        String error;
+        LocalDate date;
+        String buyer, store, description;
+        long costCents;
+        double taxRate;
+        String[] splitNames;
+        double[] splitRatios;
+    }
+
+    private static final class Parsed {
+        final Row[] rows;
+
+        Parsed(Row[] rows) {
+            this.rows = rows;
+        }
+    }
+
+    private Parsed parse(Chunk chunk, int[] col) {
+        Row[] rows = new Row[chunk.count];
+        for (int r = 0; r < chunk.count; r++) {
+            Row row = new Row();
+            row.line = chunk.lines[r];
+            try {
+                fill(row, chunk.fields(r, mapping.delimiter), col);
+            } catch (RuntimeException e) {
+                row.error = e.getMessage() != null ? e.getMessage() : e.toString();
+            }
+            rows[r] = row;
+        }
+        return new Parsed(rows);
+    }
+
+    private void fill(Row row, String[] f, int[] col) {
+        String date = get(f, col, Field.DATE);
+        try {
+            row.date = date.isEmpty() ? null : parseDate(date);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("bad date \"" + date + "\"");
+        }
+        row.buyer = get(f, col, Field.BUYER);
+        if (row.buyer.isEmpty()) throw new IllegalArgumentException("no buyer");
+        row.store = get(f, col, Field.STORE);
+        row.description = get(f, col, Field.DESCRIPTION);
+        row.costCents = amount(get(f, col, Field.COST), "cost");
+        String tax = get(f, col, Field.TAX_RATE);
+        try {
+            row.taxRate = tax.isEmpty() ? 0 : Double.parseDouble(tax);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad tax rate \"" + tax + "\"");
+        }
+        String total = get(f, col, Field.TOTAL);
+        if (!total.isEmpty()) {
+            long expected = Money.withTax(row.costCents, row.taxRate);
+            long given = amount(total, "total");
+            if (Math.abs(given - expected) > 1) {
+                throw new IllegalArgumentException("total " + Money.format(given)
+                    + " does not match cost plus tax " + Money.format(expected));
+            }
+        }
+        splits(row, get(f, col, Field.SPLITS));
+    }
+
+    private LocalDate parseDate(String s) {
+        if (mapping.dates == DateTimeFormatter.ISO_LOCAL_DATE && s.length() == 10
+                && s.charAt(4) == '-' && s.charAt(7) == '-') {
+            // the exported form; skip the general formatter
+            return LocalDate.of(digits(s, 0, 4), digits(s, 5, 7), digits(s, 8, 10));
+        }
+        return LocalDate.parse(s, mapping.dates);
+    }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') throw new DateTimeException("not a digit");
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static String get(String[] fields, int[] col, Field field) {
+        int i = col[field.ordinal()];
+        return i < 0 || i >= fields.length ? "" : fields[i].trim();
+    }
+
+    private static long amount(String s, String what) {
+        try {
+            return Money.parse(s);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("bad " + what + " \"" + s + "\"");
+        }
+    }
+
+    /** {@code {A=0.5, B=0.5}} as exported, or {@code A=0.5;B=0.5}; empty means the buyer. */
+    private static void splits(Row row, String s) {
+        if (s.startsWith("{") && s.endsWith("}")) s = s.substring(1, s.length() - 1).trim();
+        if (s.isEmpty()) {
+            row.splitNames = new String[] {row.buyer};
+            row.splitRatios = new double[] {1.0};
+            return;
+        }
+        String[] parts = s.split("[,;]");
+        row.splitNames = new String[parts.length];
+        row.splitRatios = new double[parts.length];
+        double sum = 0;
+        for (int i = 0; i < parts.length; i++) {
+            int eq = parts[i].lastIndexOf('=');
+            String name = eq < 0 ? "" : parts[i].substring(0, eq).trim();
+            if (name.isEmpty()) throw new IllegalArgumentException("bad split \"" + parts[i].trim() + "\"");
+            try {
+                row.splitRatios[i] = Double.parseDouble(parts[i].substring(eq + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bad split \"" + parts[i].trim() + "\"");
+            }
+            row.splitNames[i] = name;
+            sum += row.splitRatios[i];
+        }
+        if (Math.abs(sum - 1) > Money.WHOLE) {
+            throw new IllegalArgumentException("splits add up to " + sum + ", not 1");
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Grouping (calling thread, file order)
+    // ----------------------------------------------------------------
+    private static final class Assembler {
+        private final Sink sink;
+        private final Result result;
+        private final NameDictionary names = new NameDictionary();
+        private final ZoneId zone = ZoneId.systemDefault();
+        private List<Purchase> batch = new ArrayList<>(BATCH_PURCHASES);
+        private Purchase open;
+        private LocalDate openDate;
+
+        Assembler(Sink sink, Result result) {
+            this.sink = sink;
+            this.result = result;
+        }
+
+        void take(Parsed parsed) throws IOException {
+            for (Row row : parsed.rows) {
+                if (row.error != null) {
+                    result.error(new RowError(row.line, row.error));
+                    continue;
+                }
+                if (open == null || !Objects.equals(openDate, row.date)
+                        || !open.getBuyer().equals(row.buyer)
+                        || !Objects.equals(open.getStore(), row.store)) {
+                    close();
+                    openDate = row.date;
+                    open = new Purchase(row.buyer, row.store, row.date == null ? null
+                        : Date.from(row.date.atStartOfDay(zone).toInstant()), 0);
+                }
+                int[] ids = new int[row.splitNames.length];
+                for (int i = 0; i < ids.length; i++) ids[i] = names.id(row.splitNames[i]);
+                Item it = new Item(row.description, row.costCents, row.taxRate,
+                    names, ids, row.splitRatios);
+                open.addItem(it);
+                open.setTotalCents(open.getTotalCents() + it.getTotalCents());
+                result.items++;
+            }
+        }
+
+        void finish() throws IOException {
+            close();
+            if (!batch.isEmpty()) sink.accept(batch);
+        }
+
+        private void close() throws IOException {
+            if (open == null) return;
+            batch.add(open);
+            result.purchases++;
+            open = null;
+            if (batch.size() == BATCH_PURCHASES) {
+                sink.accept(batch);
+                batch = new ArrayList<>(BATCH_PURCHASES);
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Record splitting (calling thread)
+    // ----------------------------------------------------------------
+    /** Raw records: one shared char array plus each record's extent. */
+    private static final class Chunk {
+        final char[] data;
+        final int[] starts, ends;
+        final long[] lines;
+        final int count;
+
+        Chunk(char[] data, int[] starts, int[] ends, long[] lines, int count) {
+            this.data = data;
+            this.starts = starts;
+            this.ends = ends;
+            this.lines = lines;
+            this.count = count;
+        }
+
+        /** Splits record {@code r} into fields, undoing RFC 4180 quoting. */
+        String[] fields(int r, char delim) {
+            List<String> out = new ArrayList<>(8);
+            StringBuilder sb = new StringBuilder();
+            int i = starts[r], end = ends[r];
+            while (true) {
+                sb.setLength(0);
+                if (i < end && data[i] == '"') {
+                    i++;
+                    while (i < end) {
+                        char c = data[i++];
+                        if (c != '"') {
+                            sb.append(c);
+                        } else if (i < end && data[i] == '"') {
+                            sb.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    // tolerate stray text between the closing quote and the delimiter
+                    while (i < end && data[i] != delim) sb.append(data[i++]);
+                } else {
+                    while (i < end && data[i] != delim) sb.append(data[i++]);
+                }
+                out.add(sb.toString());
+                if (i >= end) break;
+                i++; // delimiter
+            }
+            return out.toArray(new String[0]);
+        }
+    }
+
+    /** Cuts the input at record ends, respecting quoted line breaks. */
+    private static final class RecordReader {
+        private final Reader in;
+        private final char[] buf = new char[1 << 16];
+        private int len, pos;
+        private long line = 1;
+        long charsRead;
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        /** @return up to {@code max} records, or null at end of input */
+        Chunk next(int max) throws IOException {
+            StringBuilder data = new StringBuilder(max * 64);
+            int[] starts = new int[max], ends = new int[max];
+            long[] lines = new long[max];
+            int n = 0;
+            while (n < max) {
+                int start = data.length();
+                long startLine = line;
+                boolean quoted = false, any = false;
+                int c;
+                while ((c = read()) >= 0) {
+                    any = true;
+                    if (c == '"') {
+                        quoted = !quoted;
+                    } else if (c == '\n') {
+                        line++;
+                        if (!quoted) break;
+                    }
+                    data.append((char) c);
+                }
+                if (!any) break;
+                int end = data.length();
+                if (end > start && data.charAt(end - 1) == '\r') end--;
+                if (end == start) continue; // blank line
+                starts[n] = start;
+                ends[n] = end;
+                lines[n] = startLine;
+                n++;
+            }
+            if (n == 0) return null;
+            char[] chars = new char[data.length()];
+            data.getChars(0, chars.length, chars, 0);
+            return new Chunk(chars, starts, ends, lines, n);
+        }
+
+        private int read() throws IOException {
+            if (pos == len) {
+                len = in.read(buf);
+                pos = 0;
+                if (len <= 0) {
+                    len = 0;
+                    return -1;
+                }
+                charsRead += len;
+            }
+            return buf[pos++];
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package util;
+
+import model.Money;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming RFC 4180 CSV writer. Fields are appended straight into one
+ * reused char buffer, which goes out in large chunks, and amounts in
+ * cents are written as digits without going through a String.
+ * <p>
+ * A field is quoted only when it holds a comma, quote, CR or LF, with
+ * embedded quotes doubled. Rows end in CRLF.
+ */
+public final class CsvWriter implements Closeable, Flushable {
+    private static final int BUFFER_CHARS = 1 << 16;
+
+    private final Writer out;
+    private final char[] buf = new char[BUFFER_CHARS];
+    private final StringBuilder scratch = new StringBuilder(32);
+    private int pos;
+    private boolean rowStarted;
+
+    /** Writes UTF-8 to {@code out}, which this writer closes. */
+    public CsvWriter(OutputStream out) {
+        this.out = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    /** Opens {@code file} for writing, gzip-compressed if {@code gzip}. */
+    public static CsvWriter open(File file, boolean gzip) throws IOException {
+        OutputStream os = new FileOutputStream(file);
+        try {
+            return new CsvWriter(gzip
+                ? new GZIPOutputStream(os, BUFFER_CHARS)
+                : new BufferedOutputStream(os, BUFFER_CHARS));
+        } catch (IOException e) {
+            os.close();
+            throw e;
+        }
+    }
+
+    /** Text field; null is written as an empty field. */
+    public CsvWriter field(CharSequence s) throws IOException {
+        separator();
+        if (s == null) return this;
+        int n = s.length();
+        boolean quote = false;
+        for (int i = 0; i < n && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            for (int i = 0; i < n; i++) put(s.charAt(i));
+            return this;
+        }
+        put('"');
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '"') put('"');
+            put(c);
+        }
+        put('"');
+        return this;
+    }
+
+    /** Amount in cents as a plain decimal, e.g. {@code 1234 -> 12.34}. */
+    public CsvWriter money(long cents) throws IOException {
+        separator();
+        scratch.setLength(0);
+        Money.append(scratch, cents);
+        return raw(scratch);
+    }
+
+    /** Shortest decimal that reads back as {@code v}. */
+    public CsvWriter number(double v) throws IOException {
+        separator();
+        scratch.setLength(0);
+        scratch.append(v);
+        return raw(scratch);
+    }
+
+    /** Calendar date as {@code yyyy-MM-dd}, for years 0 to 9999. */
+    public CsvWriter date(int year, int month, int day) throws IOException {
+        separator();
+        if (pos + 10 > buf.length) drain();
+        pos = digits(year, 4, pos);
+        buf[pos++] = '-';
+        pos = digits(month, 2, pos);
+        buf[pos++] = '-';
+        pos = digits(day, 2, pos);
+        return this;
+    }
+
+    /** Ends the current row. */
+    public CsvWriter endRow() throws IOException {
+        put('\r');
+        put('\n');
+        rowStarted = false;
+        return this;
+    }
+
+    /** Convenience for a row of text fields, e.g. a header. */
+    public CsvWriter row(String... fields) throws IOException {
+        for (String f : fields) field(f);
+        return endRow();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Internals
+    // ----------------------------------------------------------------
+    private void separator() throws IOException {
+        if (rowStarted) put(',');
+        rowStarted = true;
+    }
+
+    /** Appends text known to need no quoting. */
+    private CsvWriter raw(CharSequence s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) put(s.charAt(i));
+        return this;
+    }
+
+    private int digits(int v, int width, int at) {
+        int end = at + width;
+        for (int i = end - 1; i >= at; i--) {
+            buf[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return end;
+    }
+
+    private void put(char c) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = c;
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
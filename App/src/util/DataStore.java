@@ -1,27 +1,302 @@
 package util;
 
 import model.PurchaseManager;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * Handles loading and saving of PurchaseManager via serialization.
+ * Handles loading and saving of PurchaseManager.
+ * <p>
+ * State lives in a {@link LedgerCodec} snapshot ({@code purchases.dat})
+ * plus an append-only {@link Journal} ({@code purchases.journal}). Once a
+ * manager has been loaded, {@link #save} only appends the mutations made since the last
+ * call. A manager it did not load is taken on by {@link #attach}, on the
+ * thread that owns it. When the journal grows past {@link #COMPACT_THRESHOLD} it is
+ * rotated out to {@code purchases.journal.<generation>} and folded into a
+ * fresh snapshot on a background thread, working purely from the files on
+ * disk so the live manager is never read concurrently.
+ * <p>
+ * The loaded snapshot stays memory-mapped, and Windows refuses to replace
+ * a mapped file. A snapshot that can't replace {@code purchases.dat} is
+ * kept as {@code purchases.dat.next} instead, and the journals it covers
+ * are deleted all the same. Compaction builds on whichever of the two
+ * covers more generations, and load moves that one into place before
+ * mapping anything. So the rotated journals never outlive one compaction,
+ * and startup replays at most the edits made since the last one.
  */
 public class DataStore {
     private static final String FILE_NAME = "purchases.dat";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    static final long COMPACT_THRESHOLD = 1 << 20;
+
+    /** Working directory unless {@code -Droommate.data=DIR} says otherwise, e.g. for benchmarks. */
+    private static final Path DIR = Paths.get(System.getProperty("roommate.data", ""));
+    private static final Path SNAPSHOT = DIR.resolve(FILE_NAME);
+    /** A newer snapshot written while {@link #SNAPSHOT} could not be replaced. */
+    private static final Path STAGED = DIR.resolve(FILE_NAME + ".next");
+    private static final Path JOURNAL = DIR.resolve(FILE_NAME.replace(".dat", JOURNAL_SUFFIX));
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "DataStore-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Held while reading or replacing the snapshot and its rotated journals. */
+    private static final Object snapshotLock = new Object();
+
+    /** The manager returned by the last load or attach and the journal recording it. */
+    private static PurchaseManager attached;
+    private static Journal journal;
+    /** Snapshot encoded by {@link #attach} that the next save writes first. */
+    private static byte[] pendingSnapshot;
+
+    /**
+     * Writes what changed in {@code manager} since the last save. A manager
+     * this store isn't tracking is attached first, so call this on the
+     * thread that owns it, or attach it there beforehand.
+     */
+    public static synchronized void save(PurchaseManager manager) throws IOException {
+        if (manager != attached || journal == null) {
+            attach(manager);
+        }
+        if (pendingSnapshot != null) {
+            writeRebase();
+        }
+        if (journal.flush() >= COMPACT_THRESHOLD) {
+            rotate();
+        }
+    }
+
+    /**
+     * Makes {@code manager} the one this store tracks, if it isn't already
+     * (e.g. a brand new one): encodes a full snapshot of it and starts a
+     * journal recording it before returning, so no later mutation is
+     * missed. Both reach the disk on the next {@link #save}, which then
+     * never has to read the manager. Call on the thread that owns it.
+     */
+    public static synchronized void attach(PurchaseManager manager) throws IOException {
+        if (manager == attached && journal != null) return;
+        long gen = Files.exists(JOURNAL) ? Journal.readGeneration(JOURNAL) : 1;
+        // stay ahead of a staged snapshot, so load prefers this one
+        if (Files.exists(STAGED)) gen = Math.max(gen, LedgerCodec.readGeneration(STAGED) + 1);
+        detach();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        LedgerCodec.write(manager, gen, bytes);
+        pendingSnapshot = bytes.toByteArray();
+        journal = Journal.deferred(JOURNAL, gen + 1);
+        attached = manager;
+        manager.addListener(journal);
+    }
 
-    public static void save(PurchaseManager manager) throws IOException {
-        try (ObjectOutputStream out = new ObjectOutputStream(
-                new FileOutputStream(FILE_NAME))) {
-            out.writeObject(manager);
+    /**
+     * Loads the snapshot and replays the journals written after it. A
+     * missing file yields an empty manager; a file that exists but cannot
+     * be read is reported rather than silently replaced.
+     */
+    public static synchronized PurchaseManager load() throws IOException {
+        detach();
+        synchronized (snapshotLock) {
+            LedgerCodec.Decoded snap = readSnapshot(newestSnapshot(true), true);
+            PurchaseManager manager = snap.manager;
+            List<Path> rotated = rotatedJournals(snap.generation);
+            for (Path p : rotatedJournals(-1)) {
+                // left by a compaction that stopped before deleting them
+                if (!rotated.contains(p)) Files.deleteIfExists(p);
+            }
+            for (Path p : rotated) {
+                Journal.replay(p, manager);
+            }
+            if (Files.exists(JOURNAL) && Journal.readGeneration(JOURNAL) > snap.generation) {
+                Journal.replay(JOURNAL, manager);
+                journal = Journal.openForAppend(JOURNAL);
+            } else {
+                journal = Journal.create(JOURNAL, nextGeneration(snap.generation));
+            }
+            attached = manager;
+            manager.addListener(journal);
+            if (!rotated.isEmpty()) {
+                scheduleCompaction();
+            }
+            return manager;
         }
     }
 
-    public static PurchaseManager load() {
-        try (ObjectInputStream in = new ObjectInputStream(
-                new FileInputStream(FILE_NAME))) {
-            return (PurchaseManager) in.readObject();
-        } catch (Exception e) {
-            return new PurchaseManager();
+    // ----------------------------------------------------------------
+    // Journal lifecycle
+    // ----------------------------------------------------------------
+    private static void detach() throws IOException {
+        pendingSnapshot = null;
+        if (attached != null) {
+            attached.removeListener(journal);
+            attached = null;
+        }
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Writes the snapshot {@link #attach} encoded and drops the journals it
+     * replaces; the attached journal's file follows on the same save.
+     */
+    private static void writeRebase() throws IOException {
+        byte[] snapshot = pendingSnapshot;
+        synchronized (snapshotLock) {
+            writeSnapshot(out -> out.write(snapshot));
+            for (Path rotated : rotatedJournals(-1)) {
+                Files.deleteIfExists(rotated);
+            }
+        }
+        pendingSnapshot = null;
+    }
+
+    /** Moves the active journal aside and compacts it in the background. */
+    private static void rotate() throws IOException {
+        journal.rotate(rotatedName(journal.generation()));
+        scheduleCompaction();
+    }
+
+    private static void scheduleCompaction() {
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (Exception e) {
+                // The rotated journals stay on disk and are replayed by the
+                // next load, so nothing is lost; the next rotation retries.
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** Folds every rotated journal into a new snapshot. */
+    private static void compact() throws IOException {
+        synchronized (snapshotLock) {
+            LedgerCodec.Decoded snap = readSnapshot(newestSnapshot(false), false);
+            List<Path> rotated = rotatedJournals(snap.generation);
+            if (rotated.isEmpty()) return;
+            long newGen = snap.generation;
+            for (Path p : rotated) {
+                Journal.replay(p, snap.manager);
+                newGen = Journal.readGeneration(p);
+            }
+            long gen = newGen;
+            writeSnapshot(out -> LedgerCodec.write(snap.manager, gen, out));
+            for (Path p : rotated) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private static long nextGeneration(long snapshotGen) throws IOException {
+        long gen = snapshotGen;
+        for (Path p : rotatedJournals(snapshotGen)) {
+            gen = Math.max(gen, Journal.readGeneration(p));
+        }
+        return gen + 1;
+    }
+
+    private static Path rotatedName(long gen) {
+        return JOURNAL.resolveSibling(JOURNAL.getFileName() + "." + gen);
+    }
+
+    /** Rotated journals newer than {@code afterGen}, oldest first. */
+    private static List<Path> rotatedJournals(long afterGen) throws IOException {
+        List<Path> out = new ArrayList<>();
+        Path dir = JOURNAL.toAbsolutePath().getParent();
+        String prefix = JOURNAL.getFileName() + ".";
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path p : ds) {
+                String suffix = p.getFileName().toString().substring(prefix.length());
+                if (suffix.matches("\\d+") && Long.parseLong(suffix) > afterGen) {
+                    out.add(p);
+                }
+            }
+        }
+        out.sort((a, b) -> Long.compare(generationOf(a, prefix), generationOf(b, prefix)));
+        return out;
+    }
+
+    private static long generationOf(Path p, String prefix) {
+        return Long.parseLong(p.getFileName().toString().substring(prefix.length()));
+    }
+
+    // ----------------------------------------------------------------
+    // Snapshot file
+    // ----------------------------------------------------------------
+
+    /**
+     * The snapshot covering the most journal generations: {@link #SNAPSHOT}
+     * unless a staged one is newer. The loser is deleted when it can be.
+     *
+     * @param promote move a newer staged snapshot over {@link #SNAPSHOT},
+     *                as load does before mapping
+     */
+    private static Path newestSnapshot(boolean promote) throws IOException {
+        if (!Files.exists(STAGED)) return SNAPSHOT;
+        if (Files.exists(SNAPSHOT) && !LegacyConverter.isLegacy(SNAPSHOT)
+                && LedgerCodec.readGeneration(SNAPSHOT) >= LedgerCodec.readGeneration(STAGED)) {
+            Files.deleteIfExists(STAGED);
+            return SNAPSHOT;
+        }
+        if (!promote) return STAGED;
+        try {
+            Files.move(STAGED, SNAPSHOT,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return SNAPSHOT;
+        } catch (FileSystemException e) {
+            // a reload in a process that still maps the old one; read it where it is
+            return STAGED;
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link LedgerCodec}, or an empty one if
+     * there is none. A file still in the old Java serialization format is
+     * converted in place first.
+     *
+     * @param mapped memory-map the file and decode purchases on demand
+     *               rather than reading everything into the heap
+     */
+    private static LedgerCodec.Decoded readSnapshot(Path file, boolean mapped) throws IOException {
+        if (!Files.exists(file)) return new LedgerCodec.Decoded(0, new PurchaseManager());
+        if (LegacyConverter.isLegacy(file)) {
+            LegacyConverter.convert(file);
+        }
+        return mapped
+            ? LedgerCodec.map(file)
+            : LedgerCodec.read(ByteBuffer.wrap(Files.readAllBytes(file)));
+    }
+
+    private interface SnapshotWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes to a temp file and renames it over the old snapshot, or to
+     * {@link #STAGED} where the old one is mapped and can't be replaced.
+     */
+    private static void writeSnapshot(SnapshotWriter w) throws IOException {
+        Path tmp = SNAPSHOT.resolveSibling(FILE_NAME + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             BufferedOutputStream out = new BufferedOutputStream(fos, 1 << 16)) {
+            w.write(out);
+            out.flush();
+            fos.getFD().sync();
+        }
+        try {
+            Files.move(tmp, SNAPSHOT,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileSystemException e) {
+            Files.move(tmp, STAGED,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,95 +1,149 @@
 package util;
 
+import model.BalanceLedger;
 import model.PurchaseManager;
 import model.Purchase;
 import model.Item;
+import model.Money;
+import model.Settlement;
+import model.SettlementStrategy;
+import model.Transfer;
 import java.io.*;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
 
 /**
  * Utility for exporting data in CSV or summary text.
  */
 public class ExportUtil {
+    /** Purchases between progress reports and interrupt checks in a CSV export. */
+    private static final int REPORT_EVERY = 256;
+
+    /** Told how far through its purchases a CSV export is. */
+    public interface Progress {
+        void report(int purchasesWritten, int purchasesTotal);
+    }
+
     /**
-     * Exports purchases to a CSV file.
+     * Exports purchases to a CSV file, one row per item. A name ending in
+     * {@code .gz} is written gzip-compressed.
      */
     public static void exportToCSV(PurchaseManager mgr, File file) throws IOException {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
-            pw.println("Date,Buyer,Store,Description,Cost,TaxRate,Total,SplitMap");
-            SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-            for (Purchase p : mgr.getPurchases()) {
-                String date = df.format(p.getDate());
-                for (Item it : p.getItems()) {
-                    pw.printf(
-                        "%s,%s,%s,\"%s\",%.2f,%.2f,%.2f,\"%s\"%n",
-                        date,
-                        p.getBuyer(),
-                        p.getStore(),
-                        it.getDescription(),
-                        it.getCost(),
-                        it.getTaxRate(),
-                        it.getTotalCost(),
-                        it.getSplits().toString()
-                    );
-                }
-            }
+        exportToCSV(mgr, file, file.getName().endsWith(".gz"));
+    }
+
+    /**
+     * Exports purchases to a CSV file, one row per item.
+     */
+    public static void exportToCSV(PurchaseManager mgr, File file, boolean gzip) throws IOException {
+        try (CsvWriter csv = CsvWriter.open(file, gzip)) {
+            writeCSV(mgr.getPurchases(), csv, null);
         }
     }
 
     /**
-     * Exports settlement summary to a text file.
+     * Exports {@code purchases} to a CSV file (gzip if the name ends in
+     * {@code .gz}) from a background thread. The list must not change
+     * while this runs, so callers pass a copy. Interrupting the thread
+     * stops the export with an InterruptedIOException and deletes the
+     * partial file.
+     * @param progress may be null
      */
-    public static void exportSummary(PurchaseManager mgr, File file) throws IOException {
-        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
-        // Determine date range
-        Date from = null, to = null;
-        for (Purchase p : mgr.getPurchases()) {
-            if (from == null || p.getDate().before(from)) from = p.getDate();
-            if (to   == null || p.getDate().after(to))   to   = p.getDate();
+    public static void exportToCSV(List<Purchase> purchases, File file, Progress progress)
+            throws IOException {
+        boolean done = false;
+        try (CsvWriter csv = CsvWriter.open(file, file.getName().endsWith(".gz"))) {
+            writeCSV(purchases, csv, progress);
+            done = true;
+        } finally {
+            if (!done) file.delete();
+        }
+    }
+
+    /**
+     * Exports purchases as CSV to {@code out}, which is closed afterwards.
+     */
+    public static void exportToCSV(PurchaseManager mgr, OutputStream out) throws IOException {
+        try (CsvWriter csv = new CsvWriter(out)) {
+            writeCSV(mgr.getPurchases(), csv, null);
         }
-        // Compute net balances
-        Map<String, Double> net = new HashMap<>();
-        for (String r : mgr.getRoommates()) net.put(r, 0.0);
-        for (Purchase p : mgr.getPurchases()) {
+    }
+
+    private static void writeCSV(List<Purchase> purchases, CsvWriter csv, Progress progress)
+            throws IOException {
+        csv.row("Date", "Buyer", "Store", "Description", "Cost", "TaxRate", "Total", "SplitMap");
+        ZoneId zone = ZoneId.systemDefault();
+        StringBuilder splits = new StringBuilder(64);
+        int written = 0, total = purchases.size();
+        for (Purchase p : purchases) {
+            if (written++ % REPORT_EVERY == 0) {
+                if (Thread.interrupted()) throw new InterruptedIOException("Export cancelled");
+                if (progress != null) progress.report(written - 1, total);
+            }
+            // one date conversion per purchase, not per row
+            LocalDate day = p.getDate() == null
+                ? null : p.getDate().toInstant().atZone(zone).toLocalDate();
             for (Item it : p.getItems()) {
-                for (Map.Entry<String, Double> e : it.getSplits().entrySet()) {
-                    String name = e.getKey();
-                    double share = e.getValue() * it.getTotalCost();
-                    net.put(name, net.get(name) - share);
+                if (day != null) {
+                    csv.date(day.getYear(), day.getMonthValue(), day.getDayOfMonth());
+                } else {
+                    csv.field(null);
+                }
+                csv.field(p.getBuyer())
+                   .field(p.getStore())
+                   .field(it.getDescription())
+                   .money(it.getCostCents())
+                   .number(it.getTaxRate())
+                   .money(it.getTotalCents());
+                // same text as the Map.toString() this column always held
+                splits.setLength(0);
+                splits.append('{');
+                for (int i = 0; i < it.splitCount(); i++) {
+                    if (i > 0) splits.append(", ");
+                    splits.append(it.splitName(i)).append('=').append(it.splitRatio(i));
                 }
+                splits.append('}');
+                csv.field(splits).endRow();
             }
-            net.put(
-                p.getBuyer(),
-                net.get(p.getBuyer()) + p.getTotalCost()
-            );
-        }
-        // Separate debtors and creditors
-        List<String> debtors   = new ArrayList<>();
-        List<String> creditors = new ArrayList<>();
-        for (Map.Entry<String, Double> e : net.entrySet()) {
-            if      (e.getValue() < -1e-2) debtors.add(e.getKey());
-            else if (e.getValue() >  1e-2) creditors.add(e.getKey());
         }
+    }
+
+    /**
+     * Exports settlement summary to a text file.
+     */
+    public static void exportSummary(PurchaseManager mgr, File file) throws IOException {
+        exportSummary(mgr, file, SettlementStrategy.MIN_TRANSFERS);
+    }
+
+    /**
+     * Exports settlement summary to a text file, settling with {@code strategy}.
+     */
+    public static void exportSummary(PurchaseManager mgr, File file,
+                                     SettlementStrategy strategy) throws IOException {
+        // Date range and net balances come straight from the running ledger
+        BalanceLedger ledger = mgr.getLedger();
+        exportSummary(ledger.getBalances(), ledger.getFirstDate(), ledger.getLastDate(),
+            strategy, file);
+    }
+
+    /**
+     * Settles {@code balances} (cents, for {@code from..to}) and writes the
+     * summary. Takes no manager, so it can run off the EDT on balances
+     * read there.
+     */
+    public static void exportSummary(Map<String, Long> balances, Date from, Date to,
+                                     SettlementStrategy strategy, File file) throws IOException {
+        SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+        List<Transfer> transfers = Settlement.settle(balances, strategy);
         // Write file
         try (PrintWriter pw = new PrintWriter(new FileWriter(file))) {
             pw.println("Settlement Summary");
             pw.printf("Date range: %s to %s%n",
                 df.format(from), df.format(to)
             );
-            int i = 0, j = 0;
-            while (i < debtors.size() && j < creditors.size()) {
-                String d = debtors.get(i);
-                String c = creditors.get(j);
-                double owe = -net.get(d);
-                double cred = net.get(c);
-                double amt = Math.min(owe, cred);
-                pw.printf("%s pays %s $%.2f%n", d, c, amt);
-                net.put(d, net.get(d) + amt);
-                net.put(c, net.get(c) - amt);
-                if (Math.abs(net.get(d)) < 1e-2) i++;
-                if (Math.abs(net.get(c)) < 1e-2) j++;
-            }
+            for (Transfer t : transfers) pw.println(t);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,417 @@
+package util;
+
+import model.Item;
+import model.Money;
+import model.NameDictionary;
+import model.Purchase;
+import model.PurchaseListener;
+import model.PurchaseManager;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of PurchaseManager mutations.
+ * <p>
+ * Each change is encoded into a framed record (length, CRC32, payload) as
+ * soon as the listener hears about it, and {@link #flush()} writes every
+ * pending record with a single gathering write. The file header carries a
+ * generation number so a snapshot knows which journals it already covers.
+ * <p>
+ * Version 3 stores amounts as whole cents and each purchase's server
+ * version and client key. Older files, version 2 without the sync fields
+ * and version 1 with double amounts as well, are still replayed, and one
+ * reopened for appending keeps its own format until the next rotation
+ * starts a version 3 file.
+ */
+final class Journal implements PurchaseListener, Closeable {
+    private static final int MAGIC = 0x524D4A4C; // "RMJL"
+    private static final short VERSION = 3;
+    private static final short NO_SYNC_STATE = 2;
+    private static final short DOUBLE_AMOUNTS = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 8;
+    private static final int FRAME_BYTES = 4 + 4;
+
+    private static final byte PURCHASE_ADDED   = 1;
+    private static final byte PURCHASE_UPDATED = 2;
+    private static final byte PURCHASE_REMOVED = 3;
+    private static final byte ROOMMATE_ADDED   = 4;
+    private static final byte ROOMMATE_REMOVED = 5;
+
+    private final Path file;
+    private final List<ByteBuffer> pending = new ArrayList<>();
+    private long generation;
+    /** Format of the open file; records are encoded to match it. Guarded by pending. */
+    private short version;
+    private FileChannel channel;
+
+    private Journal(Path file, long generation, short version, FileChannel channel) {
+        this.file = file;
+        this.generation = generation;
+        this.version = version;
+        this.channel = channel;
+    }
+
+    /** Creates (or truncates) a journal file holding only a header. */
+    static Journal create(Path file, long generation) throws IOException {
+        return new Journal(file, generation, VERSION, createFile(file, generation));
+    }
+
+    /**
+     * A journal whose file is only created by the first {@link #flush()}.
+     * It records from now on, but no file on disk claims its generation
+     * before the snapshot it follows has been written.
+     */
+    static Journal deferred(Path file, long generation) {
+        return new Journal(file, generation, VERSION, null);
+    }
+
+    private static FileChannel createFile(Path file, long generation) throws IOException {
+        FileChannel ch = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putShort(VERSION).putLong(generation).flip();
+        while (header.hasRemaining()) ch.write(header);
+        ch.force(true);
+        return ch;
+    }
+
+    /**
+     * Opens an existing journal for appending. A torn record left behind by
+     * a crash is cut off so new records follow the last intact one.
+     */
+    static Journal openForAppend(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        long gen = readHeader(buf, file);
+        short version = buf.getShort(4);
+        int end = scan(buf, null, version, null);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE);
+        ch.truncate(end);
+        ch.position(end);
+        return new Journal(file, gen, version, ch);
+    }
+
+    /** Reads just the generation number out of a journal header. */
+    static long readGeneration(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), HEADER_BYTES))) {
+            byte[] header = new byte[HEADER_BYTES];
+            in.readFully(header);
+            return readHeader(ByteBuffer.wrap(header), file);
+        }
+    }
+
+    /** Applies every intact record in {@code file} to {@code manager}. */
+    static void replay(Path file, PurchaseManager manager) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        readHeader(buf, file);
+        scan(buf, manager, buf.getShort(4), file);
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Flushes, moves the current file to {@code aside} and carries on in a
+     * fresh file one generation later. The journal stays registered with
+     * its manager throughout, so no mutation goes unrecorded, and records
+     * queued meanwhile land in the new file.
+     * <p>
+     * The listener methods share the {@code pending} lock and run on the
+     * EDT, so it is only held to switch formats, never across file I/O.
+     */
+    synchronized void rotate(Path aside) throws IOException {
+        // switch once nothing encoded for the old file is left queued;
+        // each pass writes whatever arrived during the last one
+        while (true) {
+            flush();
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    version = VERSION;
+                    break;
+                }
+            }
+        }
+        // flush() can't run until this returns, so new records wait in pending
+        channel.close();
+        Files.move(file, aside, StandardCopyOption.ATOMIC_MOVE);
+        generation++;
+        channel = createFile(file, generation);
+    }
+
+    // ----------------------------------------------------------------
+    // PurchaseListener: encode each mutation into a pending record
+    // ----------------------------------------------------------------
+    @Override public void purchaseAdded(int index, Purchase p) {
+        append(out -> {
+            out.writeByte(PURCHASE_ADDED);
+            writePurchase(out, p, version);
+        });
+    }
+
+    @Override public void purchaseUpdated(int index, Purchase old, Purchase p) {
+        append(out -> {
+            out.writeByte(PURCHASE_UPDATED);
+            out.writeInt(index);
+            writePurchase(out, p, version);
+        });
+    }
+
+    @Override public void purchaseRemoved(int index, Purchase p) {
+        append(out -> {
+            out.writeByte(PURCHASE_REMOVED);
+            out.writeInt(index);
+        });
+    }
+
+    @Override public void roommateAdded(String name) {
+        append(out -> {
+            out.writeByte(ROOMMATE_ADDED);
+            out.writeUTF(name);
+        });
+    }
+
+    @Override public void roommateRemoved(String name) {
+        append(out -> {
+            out.writeByte(ROOMMATE_REMOVED);
+            out.writeUTF(name);
+        });
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(RecordWriter w) {
+        // encoded under the lock so the record matches the file it lands in
+        synchronized (pending) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(0); // length, patched below
+                out.writeInt(0); // crc, patched below
+                w.write(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); // cannot happen in memory
+            }
+            ByteBuffer rec = ByteBuffer.wrap(bytes.toByteArray());
+            int len = rec.capacity() - FRAME_BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(rec.array(), FRAME_BYTES, len);
+            rec.putInt(0, len).putInt(4, (int) crc.getValue());
+            pending.add(rec);
+        }
+    }
+
+    /**
+     * Writes all pending records and forces them to disk. If the write
+     * fails the file is cut back and the records stay queued for a retry.
+     * @return the journal's size in bytes afterwards
+     */
+    synchronized long flush() throws IOException {
+        if (channel == null) channel = createFile(file, generation);
+        ByteBuffer[] batch;
+        synchronized (pending) {
+            batch = pending.toArray(new ByteBuffer[0]);
+        }
+        if (batch.length > 0) {
+            long start = channel.position();
+            try {
+                long remaining = 0;
+                for (ByteBuffer b : batch) remaining += b.remaining();
+                while (remaining > 0) remaining -= channel.write(batch);
+                channel.force(false);
+            } catch (IOException e) {
+                for (ByteBuffer b : batch) b.rewind();
+                try {
+                    channel.truncate(start);
+                    channel.position(start);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            synchronized (pending) {
+                pending.subList(0, batch.length).clear();
+            }
+        }
+        return channel.size();
+    }
+
+    /** A deferred journal that was never flushed is dropped without a file. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Reading
+    // ----------------------------------------------------------------
+    private static long readHeader(ByteBuffer buf, Path file) throws IOException {
+        if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) {
+            throw new IOException("Not a journal file: " + file);
+        }
+        short version = buf.getShort();
+        if (version != VERSION && version != NO_SYNC_STATE && version != DOUBLE_AMOUNTS) {
+            throw new IOException("Unsupported journal version " + version + ": " + file);
+        }
+        return buf.getLong();
+    }
+
+    /**
+     * Walks the records after the header, applying each to {@code manager}
+     * when one is given. Stops at the first truncated or corrupt record.
+     * @return offset just past the last intact record
+     */
+    private static int scan(ByteBuffer buf, PurchaseManager manager, short version,
+                            Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        while (buf.remaining() >= FRAME_BYTES) {
+            int start = buf.position();
+            int len = buf.getInt();
+            int sum = buf.getInt();
+            if (len <= 0 || len > buf.remaining()) {
+                buf.position(start);
+                break;
+            }
+            crc.reset();
+            crc.update(buf.array(), buf.position(), len);
+            if ((int) crc.getValue() != sum) {
+                buf.position(start);
+                break;
+            }
+            if (manager != null) {
+                DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(buf.array(), buf.position(), len));
+                apply(in, manager, version, file);
+            }
+            buf.position(buf.position() + len);
+        }
+        return buf.position();
+    }
+
+    private static void apply(DataInputStream in, PurchaseManager m, short version,
+                              Path file) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case PURCHASE_ADDED:
+                m.addPurchase(readPurchase(in, version, m.getNames()));
+                break;
+            case PURCHASE_UPDATED:
+                m.setPurchase(in.readInt(), readPurchase(in, version, m.getNames()));
+                break;
+            case PURCHASE_REMOVED: m.removePurchase(in.readInt()); break;
+            case ROOMMATE_ADDED:   m.addRoommate(in.readUTF()); break;
+            case ROOMMATE_REMOVED: m.removeRoommate(in.readUTF()); break;
+            default:
+                throw new IOException("Unknown journal record " + type + ": " + file);
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Purchase encoding
+    // ----------------------------------------------------------------
+    private static void writePurchase(DataOutput out, Purchase p, short version)
+            throws IOException {
+        writeId(out, p.getId());
+        if (version == VERSION) {
+            out.writeLong(p.getVersion());
+            writeString(out, p.getClientKey());
+        }
+        writeString(out, p.getBuyer());
+        writeString(out, p.getStore());
+        out.writeLong(p.getDate() == null ? Long.MIN_VALUE : p.getDate().getTime());
+        writeAmount(out, p.getTotalCents(), version);
+        out.writeInt(p.getItems().size());
+        for (Item it : p.getItems()) {
+            writeId(out, it.getId());
+            writeString(out, it.getDescription());
+            writeAmount(out, it.getCostCents(), version);
+            out.writeDouble(it.getTaxRate());
+            out.writeInt(it.splitCount());
+            for (int i = 0; i < it.splitCount(); i++) {
+                out.writeUTF(it.splitName(i));
+                out.writeDouble(it.splitRatio(i));
+            }
+        }
+    }
+
+    private static Purchase readPurchase(DataInput in, short version, NameDictionary names)
+            throws IOException {
+        Long id = readId(in);
+        long serverVersion = 0;
+        String key = null;
+        if (version == VERSION) {
+            serverVersion = in.readLong();
+            key = readString(in);
+        }
+        String buyer = readString(in);
+        String store = readString(in);
+        long millis = in.readLong();
+        long total = readAmount(in, version);
+        Purchase p = new Purchase(buyer, store,
+            millis == Long.MIN_VALUE ? null : new Date(millis), total);
+        p.setId(id);
+        p.setVersion(serverVersion);
+        p.setClientKey(key);
+        int items = in.readInt();
+        for (int i = 0; i < items; i++) {
+            Long itemId = readId(in);
+            String desc = readString(in);
+            long cost = readAmount(in, version);
+            double tax = in.readDouble();
+            int n = in.readInt();
+            int[] ids = new int[n];
+            double[] ratios = new double[n];
+            for (int s = 0; s < n; s++) {
+                ids[s] = names.id(in.readUTF());
+                ratios[s] = in.readDouble();
+            }
+            Item it = new Item(desc, cost, tax, names, ids, ratios);
+            it.setId(itemId);
+            p.addItem(it);
+        }
+        return p;
+    }
+
+    private static void writeAmount(DataOutput out, long cents, short version)
+            throws IOException {
+        if (version == DOUBLE_AMOUNTS) out.writeDouble(Money.toDouble(cents));
+        else out.writeLong(cents);
+    }
+
+    private static long readAmount(DataInput in, short version) throws IOException {
+        return version == DOUBLE_AMOUNTS ? Money.ofDouble(in.readDouble()) : in.readLong();
+    }
+
+    private static void writeId(DataOutput out, Long id) throws IOException {
+        out.writeBoolean(id != null);
+        if (id != null) out.writeLong(id);
+    }
+
+    private static Long readId(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,324 @@
+package util;
+
+import model.Item;
+import model.NameDictionary;
+import model.Purchase;
+import model.PurchaseManager;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Versioned binary encoding of a PurchaseManager.
+ * <pre>
+ * header     i32 magic "RMLD", u16 version, i64 journal generation
+ * strings    i32 count, then count x string
+ * roommates  i32 count, then count x i32 string index
+ * purchases  i32 count, then count x (i32 record length, record)
+ * record     u8 flags, [i64 id], i64 server version, [string client key],
+ *            i32 buyer, i32 store, i32 epoch day, i64 total cents,
+ *            i32 item count, items
+ * item       u8 flags, [i64 id], string description, i64 cost cents,
+ *            f64 tax rate, i32 split count, split count x (i32 name, f64 ratio)
+ * string     i32 UTF-8 byte length (-1 for null), bytes
+ * </pre>
+ * Roommate, buyer, store and split names are written once into the string
+ * table and referenced by index (-1 for null). Every purchase record is
+ * length-prefixed so a reader can skip records without decoding them.
+ * Version 1 records have no server version or client key; they are still
+ * read, as never synced.
+ */
+final class LedgerCodec {
+    static final int MAGIC = 0x524D4C44; // "RMLD"
+    static final short VERSION = 2;
+    private static final short NO_SYNC_STATE = 1;
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_KEY = 2;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private LedgerCodec() { }
+
+    /** Result of decoding a file: the manager plus the journal generation it covers. */
+    static final class Decoded {
+        final long generation;
+        final PurchaseManager manager;
+
+        Decoded(long generation, PurchaseManager manager) {
+            this.generation = generation;
+            this.manager = manager;
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Writing
+    // ----------------------------------------------------------------
+    static void write(PurchaseManager m, long generation, OutputStream os) throws IOException {
+        Map<String, Integer> table = new LinkedHashMap<>();
+        for (String r : m.getRoommates()) intern(table, r);
+        for (Purchase p : m.getPurchases()) {
+            intern(table, p.getBuyer());
+            intern(table, p.getStore());
+            for (Item it : p.getItems()) {
+                for (int i = 0; i < it.splitCount(); i++) intern(table, it.splitName(i));
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(generation);
+
+        out.writeInt(table.size());
+        for (String s : table.keySet()) writeString(out, s);
+
+        out.writeInt(m.getRoommates().size());
+        for (String r : m.getRoommates()) out.writeInt(table.get(r));
+
+        out.writeInt(m.getPurchases().size());
+        ByteArrayOutputStream rec = new ByteArrayOutputStream(256);
+        DataOutputStream recOut = new DataOutputStream(rec);
+        for (Purchase p : m.getPurchases()) {
+            rec.reset();
+            writePurchase(recOut, p, table);
+            out.writeInt(rec.size());
+            rec.writeTo(out);
+        }
+        out.flush();
+    }
+
+    private static void intern(Map<String, Integer> table, String s) {
+        if (s != null) table.putIfAbsent(s, table.size());
+    }
+
+    private static int ref(Map<String, Integer> table, String s) {
+        return s == null ? -1 : table.get(s);
+    }
+
+    private static void writePurchase(DataOutputStream out, Purchase p,
+                                      Map<String, Integer> table) throws IOException {
+        out.writeByte((p.getId() != null ? HAS_ID : 0) | (p.getClientKey() != null ? HAS_KEY : 0));
+        if (p.getId() != null) out.writeLong(p.getId());
+        out.writeLong(p.getVersion());
+        if (p.getClientKey() != null) writeString(out, p.getClientKey());
+        out.writeInt(ref(table, p.getBuyer()));
+        out.writeInt(ref(table, p.getStore()));
+        out.writeInt(p.getDate() == null ? NO_DATE : (int) toEpochDay(p.getDate()));
+        out.writeLong(p.getTotalCents());
+        out.writeInt(p.getItems().size());
+        for (Item it : p.getItems()) {
+            out.writeByte(it.getId() != null ? HAS_ID : 0);
+            if (it.getId() != null) out.writeLong(it.getId());
+            writeString(out, it.getDescription());
+            out.writeLong(it.getCostCents());
+            out.writeDouble(it.getTaxRate());
+            out.writeInt(it.splitCount());
+            for (int i = 0; i < it.splitCount(); i++) {
+                out.writeInt(table.get(it.splitName(i)));
+                out.writeDouble(it.splitRatio(i));
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    // ----------------------------------------------------------------
+    // Reading
+    // ----------------------------------------------------------------
+    /** Reads just the journal generation out of a file's header. */
+    static long readGeneration(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 14))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a purchase ledger file: " + file);
+            }
+            in.readShort();
+            return in.readLong();
+        }
+    }
+
+    /** Decodes the whole file into an ordinary in-memory manager. */
+    static Decoded read(ByteBuffer buf) throws IOException {
+        return decode(buf, false);
+    }
+
+    /**
+     * Memory-maps {@code file} and returns a manager whose purchase list
+     * decodes records on demand (see {@link MappedPurchaseList}). Only the
+     * header, string table and record offsets are read up front.
+     */
+    static Decoded map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException("Ledger file too large to map: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            return decode(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), true);
+        }
+    }
+
+    private static Decoded decode(ByteBuffer buf, boolean lazy) throws IOException {
+        try {
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("Not a purchase ledger file");
+            }
+            short version = buf.getShort();
+            if (version != VERSION && version != NO_SYNC_STATE) {
+                throw new IOException("Unsupported ledger version " + version
+                    + " (this build reads version " + VERSION + ")");
+            }
+            long generation = buf.getLong();
+
+            String[] table = new String[buf.getInt()];
+            for (int i = 0; i < table.length; i++) table[i] = readString(buf);
+
+            List<String> roommates = new ArrayList<>();
+            NameDictionary names = new NameDictionary();
+            int roommateCount = buf.getInt();
+            for (int i = 0; i < roommateCount; i++) {
+                roommates.add(table[buf.getInt()]);
+                names.id(roommates.get(i));
+            }
+
+            int count = buf.getInt();
+            List<Purchase> purchases;
+            if (lazy) {
+                int[] offsets = new int[count];
+                for (int i = 0; i < count; i++) {
+                    int len = buf.getInt();
+                    if (len < 0 || len > buf.remaining()) {
+                        throw new IOException("Purchase record " + i + " has a bad length");
+                    }
+                    offsets[i] = buf.position();
+                    buf.position(buf.position() + len);
+                }
+                purchases = new MappedPurchaseList(buf, table, names, offsets, version);
+            } else {
+                purchases = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int len = buf.getInt();
+                    int end = buf.position() + len;
+                    purchases.add(readPurchase(buf, table, names, version));
+                    if (buf.position() != end) {
+                        throw new IOException("Purchase record " + i + " has a bad length");
+                    }
+                }
+            }
+            return new Decoded(generation, new PurchaseManager(purchases, roommates, names));
+        } catch (RuntimeException e) {
+            // BufferUnderflow, bad string index, ...: the file is damaged
+            throw new IOException("Corrupt purchase ledger file", e);
+        }
+    }
+
+    /**
+     * Decodes the purchase record at {@code offset} without moving
+     * {@code mapped}'s position. Items are left for the Purchase to decode
+     * on first access.
+     */
+    static Purchase readPurchaseLazily(ByteBuffer mapped, int offset, String[] table,
+                                       NameDictionary names, short version) {
+        ByteBuffer buf = mapped.duplicate();
+        buf.position(offset);
+        Purchase p = readHeader(buf, table, version);
+        int items = buf.getInt();
+        int itemsAt = buf.position();
+        p.deferItems(() -> {
+            ByteBuffer in = mapped.duplicate();
+            in.position(itemsAt);
+            return readItems(in, table, names, items);
+        });
+        return p;
+    }
+
+    private static Purchase readPurchase(ByteBuffer buf, String[] table, NameDictionary names,
+                                         short version) {
+        Purchase p = readHeader(buf, table, version);
+        int items = buf.getInt();
+        p.setItems(readItems(buf, table, names, items));
+        return p;
+    }
+
+    private static Purchase readHeader(ByteBuffer buf, String[] table, short version) {
+        int flags = buf.get();
+        Long id = (flags & HAS_ID) != 0 ? buf.getLong() : null;
+        long serverVersion = 0;
+        String key = null;
+        if (version != NO_SYNC_STATE) {
+            serverVersion = buf.getLong();
+            if ((flags & HAS_KEY) != 0) key = readString(buf);
+        }
+        String buyer = lookup(table, buf.getInt());
+        String store = lookup(table, buf.getInt());
+        int day = buf.getInt();
+        long total = buf.getLong();
+        Purchase p = new Purchase(buyer, store,
+            day == NO_DATE ? null : fromEpochDay(day), total);
+        p.setId(id);
+        p.setVersion(serverVersion);
+        p.setClientKey(key);
+        return p;
+    }
+
+    private static List<Item> readItems(ByteBuffer buf, String[] table, NameDictionary names,
+                                        int count) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Long itemId = (buf.get() & HAS_ID) != 0 ? buf.getLong() : null;
+            String desc = readString(buf);
+            long cost = buf.getLong();
+            double tax = buf.getDouble();
+            int n = buf.getInt();
+            int[] ids = new int[n];
+            double[] ratios = new double[n];
+            for (int s = 0; s < n; s++) {
+                ids[s] = names.id(table[buf.getInt()]);
+                ratios[s] = buf.getDouble();
+            }
+            Item it = new Item(desc, cost, tax, names, ids, ratios);
+            it.setId(itemId);
+            items.add(it);
+        }
+        return items;
+    }
+
+    private static String lookup(String[] table, int idx) {
+        return idx < 0 ? null : table[idx];
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0) return null;
+        byte[] b = new byte[len];
+        buf.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // ----------------------------------------------------------------
+    // Value conversions
+    // ----------------------------------------------------------------
+    static long toEpochDay(Date d) {
+        return d.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    static Date fromEpochDay(long day) {
+        return Date.from(LocalDate.ofEpochDay(day)
+            .atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
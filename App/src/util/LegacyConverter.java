@@ -0,0 +1,75 @@
+package util;
+
+import model.PurchaseManager;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * Converts purchases.dat files written with Java serialization into the
+ * {@link LedgerCodec} format. The original is kept next to the new file
+ * with a {@code .bak} suffix.
+ * <p>
+ * Usage: {@code java -cp "lib/*:bin" util.LegacyConverter [purchases.dat]}
+ */
+public class LegacyConverter {
+    private static final int STREAM_MAGIC = 0xACED;
+
+    /** @return true if the file starts with the Java serialization header */
+    public static boolean isLegacy(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readUnsignedShort() == STREAM_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a serialized manager. Files may start with the Long journal
+     * generation that DataStore briefly wrote ahead of the manager; plain
+     * files count as generation 0.
+     */
+    static LedgerCodec.Decoded read(Path file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            Object first = in.readObject();
+            if (first instanceof Long) {
+                return new LedgerCodec.Decoded((Long) first, (PurchaseManager) in.readObject());
+            }
+            return new LedgerCodec.Decoded(0, (PurchaseManager) first);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable legacy purchases file: " + file, e);
+        }
+    }
+
+    /**
+     * Rewrites {@code file} in the codec format, keeping the original as
+     * {@code file.bak}. Returns the decoded contents.
+     */
+    public static PurchaseManager convert(Path file) throws IOException {
+        LedgerCodec.Decoded legacy = read(file);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             BufferedOutputStream out = new BufferedOutputStream(fos, 1 << 16)) {
+            LedgerCodec.write(legacy.manager, legacy.generation, out);
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.copy(file, file.resolveSibling(file.getFileName() + ".bak"),
+            StandardCopyOption.REPLACE_EXISTING);
+        Files.move(tmp, file,
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return legacy.manager;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "purchases.dat");
+        if (!isLegacy(file)) {
+            System.out.println(file + " is already in the current format");
+            return;
+        }
+        PurchaseManager m = convert(file);
+        System.out.println("Converted " + m.getPurchases().size()
+            + " purchases in " + file);
+    }
+}
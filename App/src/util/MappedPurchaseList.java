@@ -0,0 +1,99 @@
+package util;
+
+import model.NameDictionary;
+import model.Purchase;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Purchase list backed by a memory-mapped {@link LedgerCodec} file.
+ * <p>
+ * Loading only records where each purchase starts; a Purchase is decoded
+ * the first time {@link #get} reaches it, and its items are deferred
+ * further until {@link Purchase#getItems()} is called. Purchases added or
+ * replaced later simply live in memory alongside the mapped ones.
+ */
+final class MappedPurchaseList extends AbstractList<Purchase> implements RandomAccess {
+    private static final int NOT_MAPPED = -1;
+
+    private final ByteBuffer mapped;
+    private final String[] table;
+    private final NameDictionary names;
+    /** {@link LedgerCodec} format the mapped records are in. */
+    private final short version;
+
+    private Purchase[] purchases;
+    private int[] offsets;
+    private int size;
+
+    MappedPurchaseList(ByteBuffer mapped, String[] table, NameDictionary names, int[] offsets,
+                       short version) {
+        this.mapped = mapped;
+        this.table = table;
+        this.names = names;
+        this.version = version;
+        this.offsets = offsets;
+        this.purchases = new Purchase[Math.max(offsets.length, 10)];
+        this.size = offsets.length;
+    }
+
+    @Override
+    public synchronized Purchase get(int index) {
+        checkIndex(index, size);
+        Purchase p = purchases[index];
+        if (p == null) {
+            p = LedgerCodec.readPurchaseLazily(mapped, offsets[index], table, names, version);
+            purchases[index] = p;
+        }
+        return p;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized Purchase set(int index, Purchase p) {
+        Purchase old = get(index);
+        purchases[index] = p;
+        offsets[index] = NOT_MAPPED;
+        return old;
+    }
+
+    @Override
+    public synchronized void add(int index, Purchase p) {
+        checkIndex(index, size + 1);
+        if (size == purchases.length || size == offsets.length) {
+            int cap = Math.max(size + (size >> 1), 10);
+            purchases = Arrays.copyOf(purchases, cap);
+            offsets = Arrays.copyOf(offsets, cap);
+        }
+        System.arraycopy(purchases, index, purchases, index + 1, size - index);
+        System.arraycopy(offsets, index, offsets, index + 1, size - index);
+        purchases[index] = p;
+        offsets[index] = NOT_MAPPED;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public synchronized Purchase remove(int index) {
+        Purchase old = get(index);
+        int tail = size - index - 1;
+        System.arraycopy(purchases, index + 1, purchases, index, tail);
+        System.arraycopy(offsets, index + 1, offsets, index, tail);
+        purchases[--size] = null;
+        modCount++;
+        return old;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package util;
+
+import model.PurchaseManager;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+
+/**
+ * Saves a PurchaseManager on a single background writer thread.
+ * <p>
+ * {@link #requestSave()} never blocks: if a save is already queued the
+ * caller just shares its future, so a burst of edits becomes one write.
+ * The write itself is {@link DataStore#save}, which only flushes the
+ * journal records the manager produced while handling each edit. A
+ * manager DataStore didn't load is attached by the constructor, on the
+ * thread that owns it, which encodes its first snapshot there; so the
+ * writer thread never reads the live model.
+ */
+public class PersistenceService {
+    private final PurchaseManager manager;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "PersistenceService-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /** Save queued but not yet started; later requests piggyback on it. */
+    private CompletableFuture<Void> queued;
+
+    /**
+     * Call on the thread that owns {@code manager}.
+     * @throws IOException if DataStore cannot start tracking it
+     */
+    public PersistenceService(PurchaseManager manager) throws IOException {
+        this.manager = manager;
+        DataStore.attach(manager);
+    }
+
+    /**
+     * Schedules a save covering every mutation made so far.
+     * @return completes when the data is on disk, or exceptionally with
+     *         the IOException that stopped it
+     */
+    public synchronized CompletableFuture<Void> requestSave() {
+        if (queued != null) {
+            return queued;
+        }
+        CompletableFuture<Void> f = new CompletableFuture<>();
+        queued = f;
+        writer.execute(() -> {
+            synchronized (this) {
+                // anything requested from here on needs another write
+                queued = null;
+            }
+            try {
+                DataStore.save(manager);
+                f.complete(null);
+            } catch (IOException | RuntimeException e) {
+                f.completeExceptionally(e);
+            }
+        });
+        return f;
+    }
+
+    /** @return true while a requested save has not started yet */
+    public synchronized boolean isPending() {
+        return queued != null;
+    }
+
+    /** Writes everything outstanding and waits for it, e.g. on window close. */
+    public void flush(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        CompletableFuture<Void> last = requestSave();
+        try {
+            last.get(timeout, unit);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException
+                ? (IOException) cause
+                : new IOException(cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Timed out waiting for the last save", e);
+        }
+    }
+}
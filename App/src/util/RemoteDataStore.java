@@ -1,20 +1,1003 @@
 package util;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import model.Purchase;
+import model.PurchaseListener;
 import model.PurchaseManager;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
- * Plain wrapper that just uses the local DataStore.
+ * Keeps a PurchaseManager in sync with roommate-service.
+ * <p>
+ * The manager is backed by a local replica ({@code purchases.replica.json})
+ * so the app starts, and keeps working, without the server. Local edits
+ * are queued for the server as state: purchases without a server id
+ * are creates, {@code dirty} holds ids edited since their last push, and
+ * {@code deleted} ids removed locally. Each create gets a client key when
+ * it is added, and the server stores a key only once; so a bulk create
+ * whose response was lost can simply be sent again.
+ * <p>
+ * The replica file is not rewritten per edit. Every change, local or from
+ * the server, is appended as one line to {@code purchases.replica.log}
+ * ({@link ReplicaLog}), and {@link #load()} replays the log over the
+ * replica. Once the log passes {@link DataStore#COMPACT_THRESHOLD} the io
+ * thread folds it into a new replica, working from the two files alone,
+ * so the manager is never read off its owner thread.
+ * <p>
+ * {@link #sync()} pushes the queue
+ * (all creates in one bulk call, edits and deletes concurrently) and then
+ * pulls only the server changes after the last change-log position it
+ * saw, one page at a time. {@link #listen} also applies changes as the
+ * server pushes them.
+ * <p>
+ * The manager is owned by one thread (the EDT in the app), given as the
+ * {@code owner} executor: every read or write of it and of the queue runs
+ * there, while HTTP and file writes run elsewhere. On a conflict the
+ * server wins; the pull that follows brings its copy.
  */
-public class RemoteDataStore {
-    /** Load from the local file. */
-    public static PurchaseManager load() {
-        return DataStore.load();
+public class RemoteDataStore implements PurchaseListener {
+    static final String REPLICA_NAME = "purchases.replica.json";
+    /** Change-log rows per pull request; the server's maximum. */
+    static final int PAGE = 1000;
+    /** Purchases per bulk create call; the server takes at most 10,000. */
+    static final int CREATE_BATCH = 5000;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    /** Wait before reopening a dropped change stream; doubles while it keeps failing. */
+    static final int RECONNECT_SECONDS = 10;
+    /** Longest wait between reconnect attempts. */
+    static final int MAX_RECONNECT_SECONDS = 320;
+
+    /** What one sync did. */
+    public static final class SyncResult {
+        public final int pushed;
+        public final int pulled;
+        public final int conflicts;
+
+        SyncResult(int pushed, int pulled, int conflicts) {
+            this.pushed = pushed;
+            this.pulled = pulled;
+            this.conflicts = conflicts;
+        }
+
+        @Override
+        public String toString() {
+            return "Synced: " + pushed + " sent, " + pulled + " received"
+                + (conflicts > 0 ? ", " + conflicts + " overwritten by newer server edits" : "");
+        }
+    }
+
+    /** On-disk form of the replica. */
+    static final class Replica {
+        public String server;
+        /** Bumped by each compaction; the log names the one it follows. */
+        public long generation;
+        public long cursor;
+        public List<String> roommates;
+        public List<Purchase> purchases = new ArrayList<>();
+        public List<Long> dirty = new ArrayList<>();
+        public List<Long> deleted = new ArrayList<>();
+        public List<String> unconfirmed = new ArrayList<>();
+    }
+
+    /**
+     * One line of the replica log. {@code add}, {@code set} and
+     * {@code remove} are replayed through the manager, finding rows by id
+     * or else client key; {@code state} restores the queue and cursor a
+     * sync or server page left behind.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static final class Entry {
+        public String op;
+        /** Came from the server, so replaying it queues nothing. */
+        public Boolean server;
+        public Purchase purchase;
+        public Long id;
+        public String key;
+        public String name;
+        public Long cursor;
+        public List<Long> dirty;
+        public List<Long> deleted;
+        public List<String> unconfirmed;
+    }
+
+    /** One page of {@code GET /api/purchases/changes}. */
+    static final class Changes {
+        public List<Purchase> upserts = new ArrayList<>();
+        public List<Long> deleted = new ArrayList<>();
+        public long cursor;
+        public boolean more;
+    }
+
+    private final URI base;
+    private final Path replicaFile;
+    private final Path logFile;
+    private final Executor owner;
+    private final HttpClient http;
+    private final ObjectMapper json = mapper();
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "RemoteDataStore-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // ---- owned by the io thread once loaded ----
+    private ReplicaLog log;
+    private long generation;
+
+    // ---- owned by the owner thread ----
+    private PurchaseManager manager;
+    private volatile long cursor;
+    /** Edited since last pushed: id -> edit stamp, so a push only clears what it sent. */
+    private final Map<Long, Long> dirty = new LinkedHashMap<>();
+    private final Set<Long> deleted = new LinkedHashSet<>();
+    /**
+     * Keys of creates sent without an answer. The server may hold an older
+     * copy than the one resent, which it answers with, so once the id is
+     * known the purchase is pushed again as an edit.
+     */
+    private final Set<String> unconfirmed = new HashSet<>();
+    /** Creates in flight: the purchase sent -> its current copy, null once removed. */
+    private final Map<Purchase, Purchase> creating = new IdentityHashMap<>();
+    private long stamp;
+    private boolean applying;
+    /** Set while the log is replayed, so replayed changes aren't logged again. */
+    private boolean replaying;
+    /** Replay's row lookup; dropped whenever a removal shifts rows. */
+    private Map<Long, Integer> rowsById;
+    private Map<String, Integer> rowsByKey;
+
+    private CompletableFuture<SyncResult> running;
+
+    // ---- change stream ----
+    private volatile boolean closed;
+    private volatile EventStream stream;
+    private volatile CompletableFuture<?> streamCall;
+    /** Reconnects in a row that got no events. */
+    private volatile int streamFailures;
+
+    /**
+     * @param base  service root, e.g. {@code http://localhost:8080/}
+     * @param owner runs tasks on the thread that owns the manager
+     */
+    public RemoteDataStore(URI base, Path replicaFile, Executor owner) {
+        // one client for the app's lifetime: it pools keep-alive connections
+        this(base, replicaFile, owner, HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build());
+    }
+
+    private RemoteDataStore(URI base, Path replicaFile, Executor owner, HttpClient http) {
+        this.base = base.toString().endsWith("/") ? base : URI.create(base + "/");
+        this.replicaFile = replicaFile;
+        this.logFile = replicaFile.resolveSibling(
+            replicaFile.getFileName().toString().replace(".json", "") + ".log");
+        this.owner = owner;
+        this.http = http;
+    }
+
+    /** Replica next to the local data files. */
+    public static RemoteDataStore forServer(String url, Executor owner) {
+        return new RemoteDataStore(URI.create(url), Paths.get(REPLICA_NAME), owner);
+    }
+
+    // ----------------------------------------------------------------
+    // Replica
+    // ----------------------------------------------------------------
+
+    /**
+     * Loads the replica and replays its log, or an empty manager the first
+     * time. Call on the owner thread; the returned manager belongs to it.
+     */
+    public PurchaseManager load() throws IOException {
+        read();
+        boolean keyed = false;
+        for (Purchase p : manager.getPurchases()) {
+            if (p.getId() == null && p.getClientKey() == null) {
+                // a create queued before creates had keys
+                p.setClientKey(newKey());
+                keyed = true;
+            }
+        }
+        if (keyed) {
+            // the log can't name rows that had no key, so start from a new replica
+            generation++;
+            write(encode());
+            log = ReplicaLog.create(logFile, generation);
+        } else {
+            log = ReplicaLog.open(logFile, generation);
+        }
+        return manager;
+    }
+
+    /** Builds the manager and queue from the replica file and its log. */
+    private void read() throws IOException {
+        Replica r = Files.exists(replicaFile)
+            ? json.readValue(replicaFile.toFile(), Replica.class)
+            : new Replica();
+        if (r.server != null && !r.server.equals(base.toString())) {
+            throw new IOException(replicaFile + " is a replica of " + r.server + ", not " + base);
+        }
+        List<String> roommates = r.roommates != null
+            ? new ArrayList<>(r.roommates)
+            : new PurchaseManager().getRoommates();
+        manager = new PurchaseManager(new ArrayList<>(r.purchases.size()), roommates);
+        manager.addPurchases(r.purchases);
+        generation = r.generation;
+        cursor = r.cursor;
+        for (Long id : r.dirty) dirty.put(id, ++stamp);
+        deleted.addAll(r.deleted);
+        unconfirmed.addAll(r.unconfirmed);
+        manager.addListener(this);
+        replaying = true;
+        try {
+            for (byte[] line : ReplicaLog.read(logFile, generation)) {
+                replay(json.readValue(line, Entry.class));
+            }
+        } finally {
+            replaying = false;
+            rowsById = null;
+            rowsByKey = null;
+        }
+    }
+
+    /** Gets every change made so far onto disk, in the background. */
+    public CompletableFuture<Void> save() {
+        return CompletableFuture.runAsync(this::flushLog, io);
+    }
+
+    /** Saves and waits, e.g. on exit. */
+    public void saveNow() throws IOException {
+        try {
+            save().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving " + replicaFile, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    /** Saves, then syncs. Call on the owner thread. */
+    public CompletableFuture<SyncResult> saveAndSync() {
+        return save().thenCompose(v -> sync());
+    }
+
+    /** Local changes not yet on the server. Call on the owner thread. */
+    public int pendingChanges() {
+        int creates = 0;
+        for (Purchase p : manager.getPurchases()) {
+            if (p.getId() == null) creates++;
+        }
+        return creates + dirty.size() + deleted.size();
+    }
+
+    private byte[] encode() {
+        Replica r = new Replica();
+        r.server = base.toString();
+        r.generation = generation;
+        r.cursor = cursor;
+        r.roommates = manager.getRoommates();
+        r.purchases = manager.getPurchases();
+        r.dirty = new ArrayList<>(dirty.keySet());
+        r.deleted = new ArrayList<>(deleted);
+        r.unconfirmed = new ArrayList<>(unconfirmed);
+        try {
+            return json.writeValueAsBytes(r);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Replica log
+    // ----------------------------------------------------------------
+
+    /** Queues an entry for the log. Call on the owner thread. */
+    private void record(Entry e) {
+        if (replaying) return;
+        byte[] line;
+        try {
+            line = json.writeValueAsBytes(e);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        io.execute(() -> log.add(line));
+    }
+
+    private void record(String op, Purchase p) {
+        record(op, p, applying);
+    }
+
+    private void record(String op, Purchase p, boolean server) {
+        Entry e = new Entry();
+        e.op = op;
+        if (server) e.server = true;
+        e.purchase = p;
+        record(e);
+    }
+
+    /** Logs the queue and cursor as a sync or server page left them. */
+    private void recordState() {
+        Entry e = new Entry();
+        e.op = "state";
+        e.cursor = cursor;
+        e.dirty = new ArrayList<>(dirty.keySet());
+        e.deleted = new ArrayList<>(deleted);
+        e.unconfirmed = new ArrayList<>(unconfirmed);
+        record(e);
+    }
+
+    private void replay(Entry e) {
+        boolean server = Boolean.TRUE.equals(e.server);
+        applying = server;
+        try {
+            switch (e.op) {
+                case "add":
+                    manager.addPurchase(e.purchase);
+                    if (rowsById != null) indexRow(manager.getPurchases().size() - 1);
+                    break;
+                case "set": {
+                    int row = rowOf(e.purchase.getId(), e.purchase.getClientKey());
+                    if (row < 0) {
+                        manager.addPurchase(e.purchase);
+                        row = manager.getPurchases().size() - 1;
+                    } else {
+                        manager.setPurchase(row, e.purchase);
+                    }
+                    indexRow(row);
+                    break;
+                }
+                case "remove": {
+                    int row = rowOf(e.id, e.key);
+                    if (row >= 0) {
+                        manager.removePurchase(row);
+                        rowsById = null;
+                        rowsByKey = null;
+                    }
+                    break;
+                }
+                case "roommateAdded":   manager.addRoommate(e.name); break;
+                case "roommateRemoved": manager.removeRoommate(e.name); break;
+                case "state":
+                    cursor = e.cursor;
+                    dirty.clear();
+                    for (Long id : e.dirty) dirty.put(id, ++stamp);
+                    deleted.clear();
+                    deleted.addAll(e.deleted);
+                    unconfirmed.clear();
+                    unconfirmed.addAll(e.unconfirmed);
+                    break;
+                default:
+                    throw new UncheckedIOException(new IOException(
+                        "Unknown replica log entry " + e.op + " in " + logFile));
+            }
+        } finally {
+            applying = false;
+        }
+    }
+
+    private int rowOf(Long id, String key) {
+        if (rowsById == null) {
+            rowsById = new HashMap<>();
+            rowsByKey = new HashMap<>();
+            for (int i = 0; i < manager.getPurchases().size(); i++) indexRow(i);
+        }
+        Integer row = id == null ? null : rowsById.get(id);
+        if (row == null && key != null) row = rowsByKey.get(key);
+        return row == null ? -1 : row;
+    }
+
+    private void indexRow(int row) {
+        if (rowsById == null) return;
+        Purchase p = manager.getPurchases().get(row);
+        if (p.getId() != null) rowsById.put(p.getId(), row);
+        if (p.getClientKey() != null) rowsByKey.put(p.getClientKey(), row);
+    }
+
+    /** Writes queued log entries, compacting once the log is big enough. On the io thread. */
+    private void flushLog() {
+        try {
+            if (log.flush() >= DataStore.COMPACT_THRESHOLD) compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Folds the log into a new replica. Rebuilds the state from the files
+     * rather than reading the live manager, which belongs to its owner
+     * thread. On the io thread, with the log just flushed.
+     */
+    private void compact() throws IOException {
+        RemoteDataStore folded = new RemoteDataStore(base, replicaFile, Runnable::run, http);
+        folded.read();
+        folded.generation = generation + 1;
+        // a crash between the two leaves an old log the new replica ignores
+        write(folded.encode());
+        log.close();
+        generation = folded.generation;
+        log = ReplicaLog.create(logFile, generation);
+    }
+
+    private static String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    private void write(byte[] bytes) {
+        try {
+            Path tmp = replicaFile.resolveSibling(replicaFile.getFileName() + ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, replicaFile,
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // Sync
+    // ----------------------------------------------------------------
+
+    /**
+     * Pushes queued local changes, then pulls remote ones and saves the
+     * replica. Calls made while a sync is running share it. Fails, leaving
+     * the queue in place, when the server cannot be reached.
+     */
+    public synchronized CompletableFuture<SyncResult> sync() {
+        if (running != null && !running.isDone()) return running;
+        running = CompletableFuture.supplyAsync(this::beginPush, owner)
+            .thenCompose(this::push)
+            .thenApplyAsync(this::finishPush, owner)
+            .thenCompose(push -> pull(0).thenApply(pulled ->
+                new SyncResult(push.sent(), pulled, push.conflicts)))
+            .thenComposeAsync(result -> save().thenApply(v -> result), owner);
+        return running;
+    }
+
+    /** Snapshot of the queue taken on the owner thread, plus what the server said. */
+    private final class Push {
+        final List<List<Purchase>> creates = new ArrayList<>();
+        final List<byte[]> createBodies = new ArrayList<>();
+        final List<List<Long>> createdIds = new ArrayList<>();
+        final Map<Long, byte[]> updates = new LinkedHashMap<>();
+        final Map<Long, Long> updateStamps = new HashMap<>();
+        final List<Long> deletes = new ArrayList<>();
+
+        final Map<Long, Long> newVersions = new ConcurrentHashMap<>();
+        final Set<Long> dropped = ConcurrentHashMap.newKeySet();
+        final Set<Long> deletedOk = ConcurrentHashMap.newKeySet();
+        volatile Throwable failure;
+        int conflicts;
+
+        int sent() {
+            int n = newVersions.size() + deletedOk.size();
+            for (List<Long> ids : createdIds) n += ids == null ? 0 : ids.size();
+            return n;
+        }
+    }
+
+    private Push beginPush() {
+        Push push = new Push();
+        Map<Long, Purchase> byId = new HashMap<>();
+        List<Purchase> batch = new ArrayList<>();
+        for (Purchase p : manager.getPurchases()) {
+            if (p.getId() != null) {
+                byId.put(p.getId(), p);
+                continue;
+            }
+            creating.put(p, p);
+            batch.add(p);
+            if (batch.size() == CREATE_BATCH) {
+                push.creates.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) push.creates.add(batch);
+        try {
+            for (List<Purchase> b : push.creates) {
+                push.createBodies.add(json.writeValueAsBytes(b));
+                push.createdIds.add(null);
+            }
+            for (Map.Entry<Long, Long> e : dirty.entrySet()) {
+                Purchase p = byId.get(e.getKey());
+                if (p == null) continue;
+                push.updates.put(e.getKey(), json.writeValueAsBytes(p));
+                push.updateStamps.put(e.getKey(), e.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        push.deletes.addAll(deleted);
+        return push;
+    }
+
+    /**
+     * Sends everything at once; each call's outcome is kept even if another
+     * fails. The log is flushed first, so a create is never sent under a
+     * key a restart wouldn't resend it with.
+     */
+    private CompletableFuture<Push> push(Push push) {
+        return save().thenCompose(v -> sendAll(push));
+    }
+
+    private CompletableFuture<Push> sendAll(Push push) {
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+        for (int i = 0; i < push.createBodies.size(); i++) {
+            int batch = i;
+            calls.add(send(request("api/purchases/bulk")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(push.createBodies.get(i)))
+                    .header("Content-Type", "application/json"))
+                .thenAccept(r -> push.createdIds.set(batch, read(expect(r, 200), LONG_LIST))));
+        }
+        push.updates.forEach((id, body) -> calls.add(send(request("api/purchases/" + id)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Content-Type", "application/json"))
+            .thenAccept(r -> {
+                if (r.statusCode() == 409 || r.statusCode() == 404) {
+                    push.dropped.add(id);
+                } else {
+                    push.newVersions.put(id, read(expect(r, 200), Purchase.class).getVersion());
+                }
+            })));
+        for (Long id : push.deletes) {
+            calls.add(send(request("api/purchases/" + id).DELETE())
+                .thenAccept(r -> {
+                    // already gone is as good as deleted
+                    if (r.statusCode() != 404) expect(r, 200);
+                    push.deletedOk.add(id);
+                }));
+        }
+        for (int i = 0; i < calls.size(); i++) {
+            calls.set(i, calls.get(i).exceptionally(ex -> {
+                push.failure = ex;
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).thenApply(v -> push);
+    }
+
+    private Push finishPush(Push push) {
+        for (int b = 0; b < push.creates.size(); b++) {
+            List<Purchase> sent = push.creates.get(b);
+            List<Long> ids = push.createdIds.get(b);
+            for (int i = 0; i < sent.size(); i++) {
+                Purchase current = creating.remove(sent.get(i));
+                String key = sent.get(i).getClientKey();
+                // a failed batch stays queued as creates for the next sync,
+                // and may have been stored all the same
+                if (ids == null) {
+                    // unless the change stream already adopted it
+                    if (current != null && current.getId() == null) unconfirmed.add(key);
+                    continue;
+                }
+                long id = ids.get(i);
+                if (current == null) {
+                    deleted.add(id);
+                } else if (current.getId() != null) {
+                    // the change stream or a pull adopted it first
+                } else {
+                    current.setId(id);
+                    current.setVersion(0);
+                    if (current != sent.get(i) || unconfirmed.contains(key)) dirty.put(id, ++stamp);
+                    record("set", current, true);
+                }
+                unconfirmed.remove(key);
+            }
+        }
+        if (!push.newVersions.isEmpty()) {
+            for (Purchase p : manager.getPurchases()) {
+                Long v = p.getId() == null ? null : push.newVersions.get(p.getId());
+                if (v != null) {
+                    p.setVersion(v);
+                    record("set", p, true);
+                }
+            }
+        }
+        push.newVersions.keySet().forEach(id -> dirty.remove(id, push.updateStamps.get(id)));
+        for (Long id : push.dropped) {
+            dirty.remove(id);
+            push.conflicts++;
+        }
+        deleted.removeAll(push.deletedOk);
+        recordState();
+        if (push.failure != null) {
+            throw new CompletionException(push.failure);
+        }
+        return push;
+    }
+
+    private CompletableFuture<Integer> pull(int pulled) {
+        long from = cursor;
+        return send(request("api/purchases/changes?since=" + from + "&limit=" + PAGE).GET())
+            .thenApply(r -> read(expect(r, 200), Changes.class))
+            .thenApplyAsync(page -> apply(from, page) ? page : null, owner)
+            .thenCompose(page -> {
+                // null: the live stream applied it first; go on from there
+                if (page == null) return pull(pulled);
+                int n = pulled + page.upserts.size() + page.deleted.size();
+                return page.more ? pull(n) : CompletableFuture.completedFuture(n);
+            });
+    }
+
+    /**
+     * Applies one page of server changes to the manager, unless the cursor
+     * has moved off {@code from} since it was requested.
+     *
+     * @return whether it was applied
+     */
+    private boolean apply(long from, Changes page) {
+        if (cursor != from) return false;
+        applying = true;
+        try {
+            Map<Long, Integer> index = indexById();
+            List<Integer> gone = new ArrayList<>();
+            for (Long id : page.deleted) {
+                Integer row = index.get(id);
+                if (row != null) gone.add(row);
+                dirty.remove(id);
+            }
+            if (!gone.isEmpty()) {
+                // bottom up, so earlier rows keep their index
+                gone.sort(Collections.reverseOrder());
+                for (int row : gone) manager.removePurchase(row);
+                index = indexById();
+            }
+            Map<String, Integer> unsent = null;
+            for (Purchase s : page.upserts) {
+                Integer row = index.get(s.getId());
+                if (row == null && s.getClientKey() != null) {
+                    if (unsent == null) unsent = indexByClientKey();
+                    Integer mine = unsent.remove(s.getClientKey());
+                    if (mine != null) {
+                        adopt(mine, s);
+                        continue;
+                    }
+                }
+                if (row == null) {
+                    // removed here and not pushed yet: the delete goes out next sync
+                    if (!deleted.contains(s.getId())) manager.addPurchase(s);
+                    continue;
+                }
+                Purchase local = manager.getPurchases().get(row);
+                // our own push coming back while a newer local edit waits
+                if (dirty.containsKey(s.getId()) && s.getVersion() <= local.getVersion()) continue;
+                dirty.remove(s.getId());
+                manager.setPurchase(row, s);
+            }
+            cursor = page.cursor;
+            recordState();
+        } finally {
+            applying = false;
+        }
+        return true;
+    }
+
+    /**
+     * One of our creates, stored by the server before we learned its id: its
+     * own push still in flight, or a batch that failed after the server
+     * committed it. The row takes the server's id and version; if it was
+     * edited since it was sent, or may differ from what the server kept, it
+     * goes out again as an edit, otherwise the server's copy replaces it.
+     */
+    private void adopt(int row, Purchase s) {
+        Purchase local = manager.getPurchases().get(row);
+        boolean edited = unconfirmed.remove(s.getClientKey()) | creating.get(local) != local;
+        if (edited) {
+            local.setId(s.getId());
+            local.setVersion(s.getVersion());
+            dirty.put(s.getId(), ++stamp);
+            record("set", local);
+        } else {
+            manager.setPurchase(row, s);
+            retarget(local, s);
+        }
+    }
+
+    private Map<Long, Integer> indexById() {
+        List<Purchase> all = manager.getPurchases();
+        Map<Long, Integer> index = new HashMap<>(all.size() * 2);
+        for (int i = 0; i < all.size(); i++) {
+            Long id = all.get(i).getId();
+            if (id != null) index.put(id, i);
+        }
+        return index;
+    }
+
+    /** Rows of creates that were sent but have no id yet, by client key. */
+    private Map<String, Integer> indexByClientKey() {
+        List<Purchase> all = manager.getPurchases();
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < all.size(); i++) {
+            Purchase p = all.get(i);
+            if (p.getId() == null && p.getClientKey() != null) index.put(p.getClientKey(), i);
+        }
+        return index;
+    }
+
+    // ----------------------------------------------------------------
+    // Live updates
+    // ----------------------------------------------------------------
+
+    /**
+     * Subscribes to the server's change stream and applies each pushed page
+     * as it arrives, then runs {@code changed} on the owner thread. The
+     * stream is reopened from the current cursor whenever it drops, after
+     * {@link #RECONNECT_SECONDS}, doubling up to {@link #MAX_RECONNECT_SECONDS}
+     * while attempts keep failing, until {@link #close()}. Pages that no
+     * longer follow on from the cursor, because a pull moved it, fall back
+     * to a sync.
+     */
+    public void listen(Runnable changed) {
+        connect(changed);
+    }
+
+    /** Stops the change stream and any pending reconnect. Queued changes stay in the replica. */
+    public void close() {
+        closed = true;
+        EventStream events = stream;
+        if (events != null) events.cancel();
+        CompletableFuture<?> call = streamCall;
+        if (call != null) call.cancel(true);
+    }
+
+    private void connect(Runnable changed) {
+        if (closed) return;
+        EventStream events = new EventStream(cursor, changed);
+        HttpRequest req = HttpRequest.newBuilder(base.resolve("api/purchases/stream?since=" + cursor))
+            .header("Accept", "text/event-stream")
+            .build();
+        stream = events;
+        HttpResponse.BodyHandler<Void> lines = HttpResponse.BodyHandlers.fromLineSubscriber(events);
+        streamCall = http.sendAsync(req, info -> {
+                events.accepted = info.statusCode() == 200;
+                return lines.apply(info);
+            })
+            .whenComplete((r, ex) -> {
+                if (closed) return;
+                // a stream that was accepted and delivered something was healthy; start over
+                int failures = events.accepted && events.received ? 0 : Math.min(streamFailures + 1, 6);
+                streamFailures = failures;
+                long delay = Math.min((long) RECONNECT_SECONDS << Math.max(failures - 1, 0), MAX_RECONNECT_SECONDS);
+                CompletableFuture.delayedExecutor(delay, TimeUnit.SECONDS).execute(() -> connect(changed));
+            });
+        // close() ran between the check and the call
+        if (closed) close();
+    }
+
+    /** Reads {@code text/event-stream} lines on the client's thread; applies on the owner's. */
+    private final class EventStream implements Flow.Subscriber<String> {
+        private final Runnable changed;
+        /** Cursor the next event follows on from. */
+        private long from;
+        private String id, name;
+        private final StringBuilder data = new StringBuilder();
+        private volatile Flow.Subscription subscription;
+        /** Whether the server answered 200, and whether any line then arrived. */
+        volatile boolean accepted, received;
+
+        EventStream(long from, Runnable changed) {
+            this.from = from;
+            this.changed = changed;
+        }
+
+        @Override public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+            s.request(Long.MAX_VALUE);
+        }
+
+        void cancel() {
+            Flow.Subscription s = subscription;
+            if (s != null) s.cancel();
+        }
+
+        @Override public void onNext(String line) {
+            received = true;
+            if (line.isEmpty()) {
+                dispatch();
+            } else if (line.startsWith("id:")) {
+                id = line.substring(3).trim();
+            } else if (line.startsWith("event:")) {
+                name = line.substring(6).trim();
+            } else if (line.startsWith("data:")) {
+                if (data.length() > 0) data.append('\n');
+                data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+            }
+        }
+
+        private void dispatch() {
+            if ("changes".equals(name) && id != null && data.length() > 0) {
+                long start = from;
+                Changes page;
+                try {
+                    page = json.readValue(data.toString(), Changes.class);
+                } catch (IOException e) {
+                    page = null;
+                }
+                Long next = cursorOf(id);
+                // without a position the page can't be placed; a sync finds it
+                if (next == null) page = null;
+                else from = next;
+                Changes p = page;
+                owner.execute(() -> {
+                    if (p != null && apply(start, p)) {
+                        changed.run();
+                    } else {
+                        sync().thenAcceptAsync(r -> { if (r.pulled > 0) changed.run(); }, owner);
+                    }
+                });
+            }
+            name = null;
+            data.setLength(0);
+        }
+
+        private Long cursorOf(String id) {
+            try {
+                return Long.valueOf(id);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override public void onError(Throwable t) { }
+        @Override public void onComplete() { }
+    }
+
+    // ----------------------------------------------------------------
+    // Local edits
+    // ----------------------------------------------------------------
+
+    @Override
+    public void purchaseAdded(int index, Purchase p) {
+        if (!applying && p.getId() == null && p.getClientKey() == null) p.setClientKey(newKey());
+        record("add", p);
+    }
+
+    @Override
+    public void purchaseUpdated(int index, Purchase old, Purchase p) {
+        if (!applying) {
+            if (p.getId() == null) p.setId(old.getId());
+            // an edited create is still the same create
+            if (p.getClientKey() == null) p.setClientKey(old.getClientKey());
+            if (Objects.equals(p.getId(), old.getId()) && p.getVersion() < old.getVersion()) {
+                p.setVersion(old.getVersion());
+            }
+            if (p.getId() != null) {
+                dirty.put(p.getId(), ++stamp);
+            } else {
+                retarget(old, p);
+            }
+        }
+        record("set", p);
+    }
+
+    @Override
+    public void purchaseRemoved(int index, Purchase p) {
+        if (!applying) {
+            if (p.getId() != null) {
+                dirty.remove(p.getId());
+                deleted.add(p.getId());
+            } else {
+                retarget(p, null);
+            }
+        }
+        Entry e = new Entry();
+        e.op = "remove";
+        if (applying) e.server = true;
+        e.id = p.getId();
+        e.key = p.getClientKey();
+        record(e);
+    }
+
+    @Override
+    public void roommateAdded(String name) {
+        Entry e = new Entry();
+        e.op = "roommateAdded";
+        e.name = name;
+        record(e);
+    }
+
+    /** Splits were stripped from items in place, so any purchase may have changed. */
+    @Override
+    public void roommateRemoved(String name) {
+        for (Purchase p : manager.getPurchases()) {
+            if (p.getId() != null) dirty.put(p.getId(), ++stamp);
+        }
+        Entry e = new Entry();
+        e.op = "roommateRemoved";
+        e.name = name;
+        record(e);
+    }
+
+    /** Keeps an in-flight create pointing at the purchase that replaced it. */
+    private void retarget(Purchase from, Purchase to) {
+        for (Map.Entry<Purchase, Purchase> e : creating.entrySet()) {
+            if (e.getValue() == from) {
+                e.setValue(to);
+                return;
+            }
+        }
+    }
+
+    // ----------------------------------------------------------------
+    // HTTP and JSON
+    // ----------------------------------------------------------------
+
+    private static final JavaType LONG_LIST =
+        new ObjectMapper().getTypeFactory().constructCollectionType(List.class, Long.class);
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(base.resolve(path))
+            .timeout(TIMEOUT)
+            .header("Accept", "application/json");
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(HttpRequest.Builder req) {
+        return http.sendAsync(req.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static HttpResponse<byte[]> expect(HttpResponse<byte[]> r, int status) {
+        if (r.statusCode() != status) {
+            throw new CompletionException(new IOException(
+                r.request().method() + " " + r.uri().getPath() + " returned " + r.statusCode()));
+        }
+        return r;
+    }
+
+    private <T> T read(HttpResponse<byte[]> r, Class<T> type) {
+        return read(r, json.getTypeFactory().constructType(type));
+    }
+
+    private <T> T read(HttpResponse<byte[]> r, JavaType type) {
+        try {
+            return json.readValue(r.body(), type);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static IOException unwrap(Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException
+                || t instanceof UncheckedIOException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t instanceof IOException ? (IOException) t : new IOException(t);
     }
 
-    /** Save to the local file. */
-    public static void save(PurchaseManager manager) throws IOException {
-        DataStore.save(manager);
+    /** Dates travel as local calendar days, {@code yyyy-MM-dd}, as the server stores them. */
+    private static ObjectMapper mapper() {
+        SimpleModule days = new SimpleModule();
+        days.addSerializer(Date.class, new JsonSerializer<Date>() {
+            @Override public void serialize(Date d, JsonGenerator g, SerializerProvider sp) throws IOException {
+                g.writeString(d.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toString());
+            }
+        });
+        days.addDeserializer(Date.class, new JsonDeserializer<Date>() {
+            @Override public Date deserialize(JsonParser p, DeserializationContext ctx) throws IOException {
+                // a full timestamp also starts with its yyyy-MM-dd
+                String s = p.getValueAsString();
+                LocalDate day = LocalDate.parse(s.length() > 10 ? s.substring(0, 10) : s);
+                return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+            }
+        });
+        return new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .registerModule(days);
     }
 }
@@ -0,0 +1,145 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only companion to a {@link RemoteDataStore} replica file: one
+ * record per line, each a change made since the replica was written.
+ * <p>
+ * The first line names the replica generation the log follows, so a log
+ * whose records a newer replica already holds is recognised and ignored.
+ * A last line cut short by a crash has no newline and is dropped. Not
+ * thread-safe; the store only touches it from its io thread.
+ */
+final class ReplicaLog implements Closeable {
+    private static final String HEADER = "replica-log ";
+
+    private final List<ByteBuffer> pending = new ArrayList<>();
+    private final FileChannel channel;
+
+    private ReplicaLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /** Starts an empty log following replica {@code generation}, replacing any old one. */
+    static ReplicaLog create(Path file, long generation) throws IOException {
+        FileChannel ch = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.wrap(
+            (HEADER + generation + "\n").getBytes(StandardCharsets.US_ASCII));
+        while (header.hasRemaining()) ch.write(header);
+        ch.force(true);
+        return new ReplicaLog(ch);
+    }
+
+    /**
+     * Appends to the log in {@code file} if it follows replica
+     * {@code generation}, cutting off a torn last line; otherwise starts a
+     * new one.
+     */
+    static ReplicaLog open(Path file, long generation) throws IOException {
+        if (!Files.exists(file)) return create(file, generation);
+        byte[] bytes = Files.readAllBytes(file);
+        int end = endOfRecords(bytes, generation);
+        if (end < 0) return create(file, generation);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE);
+        ch.truncate(end);
+        ch.position(end);
+        return new ReplicaLog(ch);
+    }
+
+    /** The intact records in {@code file}, or none if it follows another generation. */
+    static List<byte[]> read(Path file, long generation) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        if (!Files.exists(file)) return records;
+        byte[] bytes = Files.readAllBytes(file);
+        int end = endOfRecords(bytes, generation);
+        if (end < 0) return records;
+        int start = indexOf(bytes, 0) + 1;
+        while (start < end) {
+            int nl = indexOf(bytes, start);
+            records.add(Arrays.copyOfRange(bytes, start, nl));
+            start = nl + 1;
+        }
+        return records;
+    }
+
+    /**
+     * Offset just past the last complete line, or -1 if the header is
+     * missing or names a different generation.
+     */
+    private static int endOfRecords(byte[] bytes, long generation) {
+        int nl = indexOf(bytes, 0);
+        if (nl < 0) return -1;
+        String header = new String(bytes, 0, nl, StandardCharsets.US_ASCII);
+        if (!header.equals(HEADER + generation)) return -1;
+        int end = nl + 1;
+        for (int i = end; i < bytes.length; i++) {
+            if (bytes[i] == '\n') end = i + 1;
+        }
+        return end;
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    /** Queues one record; it reaches the file on the next {@link #flush()}. */
+    void add(byte[] record) {
+        ByteBuffer line = ByteBuffer.allocate(record.length + 1);
+        line.put(record).put((byte) '\n').flip();
+        pending.add(line);
+    }
+
+    /**
+     * Writes the queued records and forces them to disk. If the write
+     * fails the file is cut back and the records stay queued for a retry.
+     * @return the log's size in bytes afterwards
+     */
+    long flush() throws IOException {
+        if (!pending.isEmpty()) {
+            ByteBuffer[] batch = pending.toArray(new ByteBuffer[0]);
+            long start = channel.position();
+            try {
+                long remaining = 0;
+                for (ByteBuffer b : batch) remaining += b.remaining();
+                while (remaining > 0) remaining -= channel.write(batch);
+                channel.force(false);
+            } catch (IOException e) {
+                for (ByteBuffer b : batch) b.rewind();
+                try {
+                    channel.truncate(start);
+                    channel.position(start);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            pending.clear();
+        }
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}